@@ -0,0 +1,53 @@
+package com.book.management.benchmark;
+
+import com.book.management.dto.request.AddBookRequest;
+import org.openjdk.jmh.annotations.*;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import javax.validation.ValidatorFactory;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+//bean validation done on every @Valid AddBookRequest body
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AddBookRequestValidationBenchmark {
+
+  ValidatorFactory validatorFactory;
+  Validator validator;
+  AddBookRequest validRequest;
+  AddBookRequest invalidRequest;
+
+  @Setup
+  public void setUp() {
+    validatorFactory = Validation.buildDefaultValidatorFactory();
+    validator = validatorFactory.getValidator();
+    validRequest = AddBookRequest.builder()
+            .isbn(9780439708180L)
+            .bookTitle("Harry Potter and the Sorcerer's Stone (#1)")
+            .bookAuthor("J.K. Rowling")
+            .build();
+    invalidRequest = AddBookRequest.builder().build();
+  }
+
+  @TearDown
+  public void tearDown() {
+    validatorFactory.close();
+  }
+
+  @Benchmark
+  public Set<ConstraintViolation<AddBookRequest>> validRequest() {
+    return validator.validate(validRequest);
+  }
+
+  @Benchmark
+  public Set<ConstraintViolation<AddBookRequest>> invalidRequest() {
+    return validator.validate(invalidRequest);
+  }
+}
@@ -0,0 +1,81 @@
+package com.book.management.benchmark;
+
+import com.book.management.converter.BookProtobufHttpMessageConverter;
+import com.book.management.dto.response.BookResponse;
+import com.book.management.dto.response.DataResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//encode time of the list payload in each response format; the payload size is the payload.size secondary result,
+//reported when PayloadSizeProfiler is on as it is in the jmh profile
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookEncodingBenchmark {
+
+  @Param({"json", "cbor", "smile", "protobuf"})
+  String format;
+
+  @Param({"10000"})
+  int rows;
+
+  ObjectMapper objectMapper;
+  DataResponse<Object> dataResponse;
+  ByteArrayOutputStream outputStream;
+
+  @Setup
+  public void setUp() {
+    switch (format) {
+      case "cbor":
+        objectMapper = Jackson2ObjectMapperBuilder.json().factory(new CBORFactory()).build();
+        break;
+      case "smile":
+        objectMapper = Jackson2ObjectMapperBuilder.json().factory(new SmileFactory()).build();
+        break;
+      default:
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    }
+    List<BookResponse> bookResponses = new ArrayList<>(rows);
+    for (int i = 0; i < rows; i++) {
+      bookResponses.add(BookResponse.builder()
+              .bookId(i + 1)
+              .isbn(9780000000000L + i)
+              .bookTitle("Harry Potter and the Sorcerer's Stone (#" + i + ")")
+              .bookAuthor("J.K. Rowling")
+              .build());
+    }
+    dataResponse = DataResponse.builder()
+            .data(bookResponses)
+            .build();
+    outputStream = new ByteArrayOutputStream(rows * 128);
+  }
+
+  //the buffer is reused so the measured allocation is the encoder's own
+  @Benchmark
+  public int encode() throws IOException {
+    outputStream.reset();
+    if ("protobuf".equals(format)) {
+      BookProtobufHttpMessageConverter.writeTo(dataResponse, outputStream);
+    } else {
+      objectMapper.writeValue(outputStream, dataResponse);
+    }
+    return outputStream.size();
+  }
+
+  @TearDown(Level.Iteration)
+  public void recordSize() {
+    PayloadSizeProfiler.record(outputStream.size());
+  }
+}
@@ -0,0 +1,127 @@
+package com.book.management.benchmark;
+
+import com.book.management.BookApplication;
+import com.book.management.entity.Book;
+import com.book.management.repository.BookRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+//BookRepository on the embedded memory-mapped log against jpa on postgres. The jpa case never touches the tables the
+//application uses: it runs in the book_benchmark schema of the configured database (or of -Dspring.datasource.url),
+//with sql init off and the schema rebuilt by the fixture in setUp
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookRepositoryBenchmark {
+
+  static final String JPA_SCHEMA = "book_benchmark";
+
+  @Param({"embedded", "jpa"})
+  String storage;
+
+  @Param({"10000"})
+  int rows;
+
+  ConfigurableApplicationContext context;
+  BookRepository bookRepository;
+  Path dataDir;
+  int[] bookIds;
+  //isbn for inserted book, well away from the preloaded range
+  AtomicLong nextIsbn = new AtomicLong(9790000000000L);
+
+  @Setup
+  public void setUp() throws IOException {
+    dataDir = Files.createTempDirectory("book-benchmark");
+    SpringApplicationBuilder builder = new SpringApplicationBuilder(BookApplication.class)
+            .web(WebApplicationType.NONE);
+    if ("embedded".equals(storage)) {
+      builder.profiles("embedded")
+              .properties("book.embedded.path=" + dataDir.resolve("books.log"));
+    } else {
+      //every pooled connection has only the benchmark schema on its search_path; the schema is in place once the
+      //context is started, before the ready event has the indexes read the book table
+      builder.properties("spring.sql.init.mode=never", "spring.datasource.hikari.schema=" + JPA_SCHEMA)
+              .listeners(new ApplicationListener<ApplicationStartedEvent>() {
+                @Override
+                public void onApplicationEvent(ApplicationStartedEvent event) {
+                  createJpaSchema(event.getApplicationContext().getBean(DataSource.class));
+                }
+              });
+    }
+    context = builder.run();
+    bookRepository = context.getBean(BookRepository.class);
+
+    bookIds = new int[rows];
+    for (int i = 0; i < rows; i++) {
+      bookIds[i] = bookRepository.insertIfAbsent(9780000000000L + i,
+              "Harry Potter and the Sorcerer's Stone (#" + i + ")", "Author " + i % 100).orElseThrow();
+    }
+  }
+
+  //drops and recreates the application schema inside book_benchmark, checking first that the drops cannot reach
+  //any other schema
+  static void createJpaSchema(DataSource dataSource) {
+    JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+    jdbcTemplate.execute("CREATE SCHEMA IF NOT EXISTS " + JPA_SCHEMA);
+    String searchPath = jdbcTemplate.queryForObject("SHOW search_path", String.class);
+    if (!JPA_SCHEMA.equals(searchPath)) {
+      throw new IllegalStateException("benchmark connection search_path is " + searchPath + ", not " + JPA_SCHEMA);
+    }
+    new ResourceDatabasePopulator(new ClassPathResource("Schema.sql")).execute(dataSource);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    context.close();
+    try (var paths = Files.walk(dataDir)) {
+      paths.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  @Benchmark
+  public Optional<Book> findById() {
+    return bookRepository.findById(bookIds[ThreadLocalRandom.current().nextInt(rows)]);
+  }
+
+  @Benchmark
+  public Object findAllBooksFromAuthor() {
+    return bookRepository.findAllBooksFromAuthor("Author " + ThreadLocalRandom.current().nextInt(100));
+  }
+
+  @Benchmark
+  public Optional<Integer> insertIfAbsent() {
+    return bookRepository.insertIfAbsent(nextIsbn.getAndIncrement(), "The Alchemist", "Paulo Coelho");
+  }
+
+  @Benchmark
+  public Optional<Book> updateBook() {
+    int bookId = bookIds[ThreadLocalRandom.current().nextInt(rows)];
+    return bookRepository.updateBook(bookId, null, null, "Updated " + bookId, null);
+  }
+
+  @Benchmark
+  public List<Long> findExistingIsbns() {
+    long isbn = 9780000000000L + ThreadLocalRandom.current().nextInt(rows);
+    return bookRepository.findExistingIsbns(List.of(isbn, isbn + 1, isbn + rows));
+  }
+}
@@ -0,0 +1,57 @@
+package com.book.management.benchmark;
+
+import com.book.management.dto.response.BookResponse;
+import com.book.management.dto.response.DataResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//jackson encoding of the list endpoints payload, with the same defaults spring boot applies
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookSerializationBenchmark {
+
+  @Param({"1", "1000", "100000"})
+  int rows;
+
+  ObjectMapper objectMapper;
+  DataResponse<Object> dataResponse;
+
+  @Setup
+  public void setUp() {
+    objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    List<BookResponse> bookResponses = new ArrayList<>(rows);
+    for (int i = 0; i < rows; i++) {
+      bookResponses.add(BookResponse.builder()
+              .bookId(i + 1)
+              .isbn(9780000000000L + i)
+              .bookTitle("Harry Potter and the Sorcerer's Stone (#" + i + ")")
+              .bookAuthor("J.K. Rowling")
+              .build());
+    }
+    dataResponse = DataResponse.builder()
+            .data(bookResponses)
+            .build();
+  }
+
+  @Benchmark
+  public byte[] writeValueAsBytes() throws IOException {
+    return objectMapper.writeValueAsBytes(dataResponse);
+  }
+
+  //streamed to the socket, as the message converter does, without the final byte[] copy
+  @Benchmark
+  public void writeValueToStream() throws IOException {
+    objectMapper.writeValue(OutputStream.nullOutputStream(), dataResponse);
+  }
+}
@@ -0,0 +1,44 @@
+package com.book.management.benchmark;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+import java.util.Collection;
+import java.util.List;
+
+//reports the payload size a benchmark recorded during the iteration as the payload.size secondary result, averaged
+//over iterations next to the timing; benchmarks that record nothing get no result
+public class PayloadSizeProfiler implements InternalProfiler {
+
+  private static volatile long payloadBytes = -1;
+
+  //called from a benchmark's iteration teardown, which runs before afterIteration
+  static void record(long bytes) {
+    payloadBytes = bytes;
+  }
+
+  @Override
+  public String getDescription() {
+    return "payload size in bytes recorded by the benchmark";
+  }
+
+  @Override
+  public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {
+    payloadBytes = -1;
+  }
+
+  @Override
+  public Collection<? extends Result> afterIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams,
+                                                     IterationResult result) {
+    long bytes = payloadBytes;
+    if (bytes < 0) {
+      return List.of();
+    }
+    return List.of(new ScalarResult("payload.size", bytes, "bytes", AggregationPolicy.AVG));
+  }
+}
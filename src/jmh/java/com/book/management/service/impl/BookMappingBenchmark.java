@@ -0,0 +1,53 @@
+package com.book.management.service.impl;
+
+import com.book.management.dto.response.BookResponse;
+import com.book.management.entity.Book;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//Book -> BookResponse builder copy done by every BookServiceImpl read method
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookMappingBenchmark {
+
+  @Param({"1", "1000"})
+  int rows;
+
+  List<Book> books;
+
+  @Setup
+  public void setUp() {
+    books = new ArrayList<>(rows);
+    for (int i = 0; i < rows; i++) {
+      books.add(Book.builder()
+              .createdDate(LocalDateTime.now())
+              .updatedDate(LocalDateTime.now())
+              .bookId(i + 1)
+              .isbn(9780000000000L + i)
+              .bookTitle("Harry Potter and the Sorcerer's Stone (#" + i + ")")
+              .bookAuthor("J.K. Rowling")
+              .build());
+    }
+  }
+
+  @Benchmark
+  public List<BookResponse> mapBooks() {
+    List<BookResponse> bookResponses = new ArrayList<>();
+    books.forEach(data -> bookResponses.add(BookServiceImpl.toBookResponse(data)));
+    return bookResponses;
+  }
+
+  @Benchmark
+  public void mapSingleBook(Blackhole blackhole) {
+    blackhole.consume(BookServiceImpl.toBookResponse(books.get(0)));
+  }
+}
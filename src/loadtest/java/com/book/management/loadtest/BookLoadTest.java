@@ -0,0 +1,398 @@
+package com.book.management.loadtest;
+
+import com.book.management.BookApplication;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-model HTTP load test of every BookController route.
+ * Requests are fired on a fixed schedule regardless of how fast responses come back and latency is
+ * measured from the intended send time, so a slow server shows up in the percentiles instead of
+ * silently lowering the offered load (no coordinated omission).
+ *
+ * With concurrency above zero it switches to a closed model instead: that many virtual threads each keep one
+ * request outstanding over their own connection, and throughput is the result rather than the input.
+ *
+ * Arguments are key=value pairs, see {@link #DEFAULTS}. Without base-url the application is booted
+ * in-process on a random port against the datasource from application.properties (Schema.sql
+ * recreates the book table on every start) and seeded with seed-size books through /api/book/bulk.
+ */
+public class BookLoadTest {
+
+  static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+  static {
+    DEFAULTS.put("base-url", "");
+    DEFAULTS.put("seed-size", "10000");
+    DEFAULTS.put("rate", "200");
+    DEFAULTS.put("warmup", "10");
+    DEFAULTS.put("duration", "60");
+    DEFAULTS.put("max-in-flight", "2000");
+    DEFAULTS.put("concurrency", "0");
+    DEFAULTS.put("mix", "id=50,list=5,author=15,ordered-isbn=2,add=15,update=10,delete=3");
+    DEFAULTS.put("list-limit", "100");
+    DEFAULTS.put("spring-args", "");
+  }
+
+  private static final long HIGHEST_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(5);
+  private static final int AUTHORS = 1000;
+
+  private final Map<String, String> config;
+  private final ObjectMapper mapper = new ObjectMapper();
+  private final HttpClient client = HttpClient.newBuilder()
+          .version(HttpClient.Version.HTTP_1_1)
+          .connectTimeout(Duration.ofSeconds(5))
+          .executor(Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()))
+          .build();
+  private final Map<String, EndpointStats> stats = new LinkedHashMap<>();
+  private final BookIdPool bookIds = new BookIdPool();
+  private final AtomicLong nextIsbn = new AtomicLong(9790000000000L + ThreadLocalRandom.current().nextInt(1_000_000) * 1000L);
+  private final LongAdder dropped = new LongAdder();
+  private String baseUrl;
+
+  BookLoadTest(Map<String, String> config) {
+    this.config = config;
+  }
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> config = new LinkedHashMap<>(DEFAULTS);
+    for (String arg : args) {
+      int separator = arg.indexOf('=');
+      if (separator < 0 || !DEFAULTS.containsKey(arg.substring(0, separator))) {
+        throw new IllegalArgumentException("unknown argument " + arg + ", expected one of " + DEFAULTS.keySet());
+      }
+      config.put(arg.substring(0, separator), arg.substring(separator + 1));
+    }
+
+    ConfigurableApplicationContext context = null;
+    BookLoadTest loadTest = new BookLoadTest(config);
+    try {
+      if (config.get("base-url").isEmpty()) {
+        List<String> springArgs = new ArrayList<>(List.of("--server.port=0"));
+        if (!config.get("spring-args").isBlank()) {
+          springArgs.addAll(List.of(config.get("spring-args").trim().split("\\s+")));
+        }
+        context = SpringApplication.run(BookApplication.class, springArgs.toArray(new String[0]));
+        loadTest.baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+      } else {
+        loadTest.baseUrl = config.get("base-url");
+      }
+      loadTest.seed();
+      if (Integer.parseInt(config.get("concurrency")) > 0) {
+        loadTest.runClosed();
+      } else {
+        loadTest.run();
+      }
+      loadTest.report(System.out);
+      loadTest.reportServerMetrics(System.out);
+    } finally {
+      if (context != null) {
+        context.close();
+      }
+      System.exit(0);
+    }
+  }
+
+  void seed() throws Exception {
+    int seedSize = Integer.parseInt(config.get("seed-size"));
+    long startTime = System.nanoTime();
+    for (int offset = 0; offset < seedSize; offset += 1000) {
+      List<Map<String, Object>> books = new ArrayList<>();
+      for (int i = offset; i < Math.min(seedSize, offset + 1000); i++) {
+        books.add(newBookBody());
+      }
+      HttpResponse<byte[]> response = client.send(post("/api/book/bulk", Map.of("books", books)),
+              HttpResponse.BodyHandlers.ofByteArray());
+      if (response.statusCode() != 200) {
+        throw new IllegalStateException("seeding failed with status " + response.statusCode());
+      }
+      for (JsonNode book : mapper.readTree(response.body()).path("data").path("books")) {
+        bookIds.add(book.path("bookId").asInt());
+      }
+    }
+    System.out.printf("Seeded %d books in %d ms%n", bookIds.size(),
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+  }
+
+  void run() throws InterruptedException {
+    double rate = Double.parseDouble(config.get("rate"));
+    long warmupNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(config.get("warmup")));
+    long durationNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(config.get("duration")));
+    Semaphore inFlight = new Semaphore(Integer.parseInt(config.get("max-in-flight")));
+    String[] schedule = weightedSchedule(config.get("mix"));
+    Random random = new Random();
+
+    long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+    long startTime = System.nanoTime();
+    long measureFrom = startTime + warmupNanos;
+    long endTime = measureFrom + durationNanos;
+    System.out.printf("Offering %.0f req/s for %ds after %ds warmup against %s%n", rate,
+            TimeUnit.NANOSECONDS.toSeconds(durationNanos), TimeUnit.NANOSECONDS.toSeconds(warmupNanos), baseUrl);
+
+    for (long i = 0; ; i++) {
+      long intendedStart = startTime + i * intervalNanos;
+      if (intendedStart >= endTime) {
+        break;
+      }
+      long now;
+      while ((now = System.nanoTime()) < intendedStart) {
+        LockSupport.parkNanos(intendedStart - now);
+      }
+
+      String endpoint = schedule[random.nextInt(schedule.length)];
+      boolean measured = intendedStart >= measureFrom;
+      if (!inFlight.tryAcquire()) {
+        if (measured) {
+          dropped.increment();
+        }
+        continue;
+      }
+      HttpRequest request = buildRequest(endpoint, random);
+      if (request == null) {
+        inFlight.release();
+        continue;
+      }
+      client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+              .whenComplete((response, error) -> {
+                long latencyMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intendedStart);
+                afterResponse(endpoint, response);
+                if (measured) {
+                  stats.get(endpoint).record(latencyMicros, error == null && response.statusCode() < 500);
+                }
+                inFlight.release();
+              });
+    }
+    //let in-flight requests finish so their latency is recorded
+    inFlight.acquire(Integer.parseInt(config.get("max-in-flight")));
+  }
+
+  void runClosed() {
+    int concurrency = Integer.parseInt(config.get("concurrency"));
+    long warmupNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(config.get("warmup")));
+    long durationNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(config.get("duration")));
+    String[] schedule = weightedSchedule(config.get("mix"));
+    long measureFrom = System.nanoTime() + warmupNanos;
+    long endTime = measureFrom + durationNanos;
+    System.out.printf("Running %d concurrent connections for %ds after %ds warmup against %s%n", concurrency,
+            TimeUnit.NANOSECONDS.toSeconds(durationNanos), TimeUnit.NANOSECONDS.toSeconds(warmupNanos), baseUrl);
+
+    //closing the executor waits for every worker to pass the end time
+    try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (int worker = 0; worker < concurrency; worker++) {
+        workers.submit(() -> {
+          Random random = new Random();
+          long startTime;
+          while ((startTime = System.nanoTime()) < endTime) {
+            String endpoint = schedule[random.nextInt(schedule.length)];
+            HttpRequest request = buildRequest(endpoint, random);
+            if (request == null) {
+              continue;
+            }
+            HttpResponse<byte[]> response;
+            try {
+              response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            } catch (IOException e) {
+              response = null;
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+              return;
+            }
+            long latencyMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startTime);
+            afterResponse(endpoint, response);
+            if (startTime >= measureFrom) {
+              stats.get(endpoint).record(latencyMicros, response != null && response.statusCode() < 500);
+            }
+          }
+        });
+      }
+    }
+  }
+
+  //platform threads and memory of the server, only meaningful on its own when base-url points at a separate process
+  void reportServerMetrics(PrintStream out) {
+    out.printf("%nserver metrics%n");
+    Map<String, String> metrics = new LinkedHashMap<>();
+    metrics.put("threads live", "jvm.threads.live");
+    metrics.put("threads peak", "jvm.threads.peak");
+    metrics.put("heap used MB", "jvm.memory.used?tag=area:heap");
+    metrics.put("heap committed MB", "jvm.memory.committed?tag=area:heap");
+    metrics.put("non-heap used MB", "jvm.memory.used?tag=area:nonheap");
+    metrics.put("process cpu", "process.cpu.usage");
+    metrics.forEach((label, metric) -> {
+      try {
+        HttpResponse<byte[]> response = client.send(get("/actuator/metrics/" + metric),
+                HttpResponse.BodyHandlers.ofByteArray());
+        double value = mapper.readTree(response.body()).path("measurements").path(0).path("value").asDouble();
+        out.printf("%-18s %12.2f%n", label, label.endsWith("MB") ? value / (1024 * 1024) : value);
+      } catch (Exception e) {
+        out.printf("%-18s %12s%n", label, "n/a");
+      }
+    });
+  }
+
+  void report(PrintStream out) {
+    long durationSeconds = Long.parseLong(config.get("duration"));
+    out.printf("%n%-14s %9s %7s %9s %9s %9s %10s %9s%n",
+            "endpoint", "count", "errors", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+    Histogram total = new Histogram(HIGHEST_LATENCY_MICROS, 3);
+    long totalErrors = 0;
+    for (Map.Entry<String, EndpointStats> entry : stats.entrySet()) {
+      EndpointStats endpointStats = entry.getValue();
+      total.add(endpointStats.histogram);
+      totalErrors += endpointStats.errors.sum();
+      printRow(out, entry.getKey(), endpointStats.histogram, endpointStats.errors.sum(), durationSeconds);
+    }
+    printRow(out, "all", total, totalErrors, durationSeconds);
+    out.printf("dropped (max-in-flight reached): %d%n", dropped.sum());
+  }
+
+  private void printRow(PrintStream out, String name, Histogram histogram, long errors, long durationSeconds) {
+    out.printf("%-14s %9d %7d %9.1f %9.2f %9.2f %10.2f %9.2f%n", name, histogram.getTotalCount(), errors,
+            (double) histogram.getTotalCount() / durationSeconds,
+            histogram.getValueAtPercentile(50) / 1000.0,
+            histogram.getValueAtPercentile(99) / 1000.0,
+            histogram.getValueAtPercentile(99.9) / 1000.0,
+            histogram.getMaxValue() / 1000.0);
+  }
+
+  private String[] weightedSchedule(String mix) {
+    List<String> schedule = new ArrayList<>();
+    for (String part : mix.split(",")) {
+      String[] weight = part.trim().split("=");
+      stats.put(weight[0], new EndpointStats());
+      for (int i = 0; i < Integer.parseInt(weight[1]); i++) {
+        schedule.add(weight[0]);
+      }
+    }
+    return schedule.toArray(new String[0]);
+  }
+
+  private HttpRequest buildRequest(String endpoint, Random random) {
+    switch (endpoint) {
+      case "id":
+        return get("/api/book/id/" + bookIds.random(random));
+      case "list":
+        return get("/api/book/list?limit=" + config.get("list-limit"));
+      case "author":
+        return post("/api/book/author", Map.of("bookAuthor", "Author " + random.nextInt(AUTHORS)));
+      case "ordered-isbn":
+        return get("/api/book/ordered-isbn");
+      case "add":
+        return post("/api/book/add", newBookBody());
+      case "update": {
+        Map<String, Object> body = newBookBody();
+        body.put("bookId", bookIds.random(random));
+        return request("/api/book/update", "PUT", body);
+      }
+      case "delete": {
+        Integer bookId = bookIds.removeRandom(random);
+        return bookId == null ? null
+                : HttpRequest.newBuilder(URI.create(baseUrl + "/api/book/delete/" + bookId)).DELETE().build();
+      }
+      default:
+        throw new IllegalArgumentException("unknown endpoint " + endpoint + " in mix");
+    }
+  }
+
+  private void afterResponse(String endpoint, HttpResponse<byte[]> response) {
+    if (response == null || response.statusCode() != 200 || !"add".equals(endpoint)) {
+      return;
+    }
+    try {
+      JsonNode bookId = mapper.readTree(response.body()).path("data").path("bookId");
+      if (bookId.isInt()) {
+        bookIds.add(bookId.asInt());
+      }
+    } catch (Exception e) {
+      //body is not needed for the measurement
+    }
+  }
+
+  private Map<String, Object> newBookBody() {
+    Map<String, Object> body = new HashMap<>();
+    long isbn = nextIsbn.incrementAndGet();
+    body.put("isbn", isbn);
+    body.put("bookTitle", "Load Test Book " + isbn);
+    body.put("bookAuthor", "Author " + ThreadLocalRandom.current().nextInt(AUTHORS));
+    return body;
+  }
+
+  private HttpRequest get(String path) {
+    return HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build();
+  }
+
+  private HttpRequest post(String path, Object body) {
+    return request(path, "POST", body);
+  }
+
+  private HttpRequest request(String path, String method, Object body) {
+    try {
+      return HttpRequest.newBuilder(URI.create(baseUrl + path))
+              .header("Content-Type", "application/json")
+              .method(method, HttpRequest.BodyPublishers.ofByteArray(mapper.writeValueAsBytes(body)))
+              .build();
+    } catch (Exception e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  static final class EndpointStats {
+    final Histogram histogram = new ConcurrentHistogram(HIGHEST_LATENCY_MICROS, 3);
+    final LongAdder errors = new LongAdder();
+
+    void record(long latencyMicros, boolean success) {
+      histogram.recordValue(Math.min(latencyMicros, HIGHEST_LATENCY_MICROS));
+      if (!success) {
+        errors.increment();
+      }
+    }
+  }
+
+  //ids known to exist, shared between the scheduler and response callbacks
+  static final class BookIdPool {
+    private int[] ids = new int[1024];
+    private int size;
+
+    synchronized void add(int bookId) {
+      if (size == ids.length) {
+        ids = Arrays.copyOf(ids, size * 2);
+      }
+      ids[size++] = bookId;
+    }
+
+    synchronized Integer random(Random random) {
+      return size == 0 ? null : ids[random.nextInt(size)];
+    }
+
+    synchronized Integer removeRandom(Random random) {
+      if (size == 0) {
+        return null;
+      }
+      int index = random.nextInt(size);
+      int bookId = ids[index];
+      ids[index] = ids[--size];
+      return bookId;
+    }
+
+    synchronized int size() {
+      return size;
+    }
+  }
+}
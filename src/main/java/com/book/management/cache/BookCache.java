@@ -0,0 +1,99 @@
+package com.book.management.cache;
+
+import com.book.management.dto.response.BookResponse;
+import com.book.management.event.BookChangedEvent;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded in-process cache of {@link BookResponse} by bookId in front of getBook, plus the book updatedDate
+ * in front of conditional requests.
+ * Entries are evicted once the transaction that changed the book has committed,
+ * hit/miss/eviction counts are published as cache.* metrics under the name "books".
+ */
+@Slf4j
+@Component
+public class BookCache implements MeterBinder {
+
+  private final Cache<Integer, BookResponse> cache;
+  private final Cache<Integer, LocalDateTime> updatedDates;
+
+  //bumped on every invalidation so a load that raced with a write does not put a stale value back
+  private final AtomicLong invalidations = new AtomicLong();
+
+  public BookCache(@Value("${book.cache.maximum-size:10000}") long maximumSize,
+                   @Value("${book.cache.expire-after-write:10m}") Duration expireAfterWrite) {
+    this.cache = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(expireAfterWrite)
+            .recordStats()
+            .build();
+    this.updatedDates = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(expireAfterWrite)
+            .recordStats()
+            .build();
+  }
+
+  public BookResponse get(Integer bookId) {
+    return cache.getIfPresent(bookId);
+  }
+
+  public LocalDateTime getUpdatedDate(Integer bookId) {
+    return updatedDates.getIfPresent(bookId);
+  }
+
+  public long stamp() {
+    return invalidations.get();
+  }
+
+  //an invalidation landing between the check and the put is caught by the second check, which undoes the put
+  public void putIfUnchanged(long stamp, BookResponse bookResponse) {
+    if (invalidations.get() == stamp) {
+      cache.put(bookResponse.getBookId(), bookResponse);
+      if (invalidations.get() != stamp) {
+        cache.invalidate(bookResponse.getBookId());
+      }
+    }
+  }
+
+  public void putUpdatedDateIfUnchanged(long stamp, Integer bookId, LocalDateTime updatedDate) {
+    if (invalidations.get() == stamp) {
+      updatedDates.put(bookId, updatedDate);
+      if (invalidations.get() != stamp) {
+        updatedDates.invalidate(bookId);
+      }
+    }
+  }
+
+  public void evict(Integer bookId) {
+    invalidations.incrementAndGet();
+    cache.invalidate(bookId);
+    updatedDates.invalidate(bookId);
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onBookChanged(BookChangedEvent event) {
+    if (event.getType() != BookChangedEvent.Type.ADDED) {
+      log.debug("Evicting bookId {} from cache", event.getBookId());
+      evict(event.getBookId());
+    }
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    CaffeineCacheMetrics.monitor(registry, cache, "books");
+    CaffeineCacheMetrics.monitor(registry, updatedDates, "book-versions");
+  }
+}
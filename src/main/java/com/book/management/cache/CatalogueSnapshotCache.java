@@ -0,0 +1,282 @@
+package com.book.management.cache;
+
+import com.book.management.datasource.ReplicaRoutingContext;
+import com.book.management.dto.response.BookResponse;
+import com.book.management.dto.response.CatalogueSnapshot;
+import com.book.management.dto.response.DataResponse;
+import com.book.management.event.BookChangedEvent;
+import com.book.management.repository.BookRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Pre-encoded json, plain and gzip, of the whole-catalogue responses of /list and /ordered-isbn, served without a query
+ * or any serialization. Built on first use, then rebuilt off the request path once book changes have been quiet for
+ * the debounce. Changes committed elsewhere (another instance, another stack, plain sql) are found by polling the
+ * change version of the database every half staleness bound. A snapshot missing changes older than the bound, or not
+ * checked against the database for that long, is not served, callers fall back to the database. Rebuild time and current staleness are published as book.catalogue.snapshot.* metrics.
+ */
+@Slf4j
+@Component
+public class CatalogueSnapshotCache implements MeterBinder, AutoCloseable {
+
+  private final boolean enabled;
+  private final Duration debounce;
+  private final Duration maxStaleness;
+  private final ScheduledExecutorService rebuilder;
+
+  private final Map<CatalogueSnapshot.View, CatalogueSnapshot> snapshots = new ConcurrentHashMap<>();
+  //nothing is built or tracked until a route first asks for a snapshot
+  private final AtomicBoolean active = new AtomicBoolean();
+
+  //guarded by this
+  private String builtVersion;
+  private long changes;
+  private ScheduledFuture<?> pendingRebuild;
+  private long rebuildDeadline;
+  //System.nanoTime of the oldest change not in the snapshots yet, 0 when they are current
+  private volatile long dirtySince;
+  //System.nanoTime the snapshots were last known to hold every change, by a rebuild or a poll
+  private volatile long verifiedAt;
+
+  private volatile Timer rebuildTimer;
+  private volatile Counter staleFallbacks;
+
+  @Autowired
+  private BookRepository bookRepository;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  public CatalogueSnapshotCache(@Value("${book.catalogue-snapshot.enabled:true}") boolean enabled,
+                                @Value("${book.catalogue-snapshot.debounce:200ms}") Duration debounce,
+                                @Value("${book.catalogue-snapshot.max-staleness:5s}") Duration maxStaleness) {
+    this.enabled = enabled;
+    this.debounce = debounce;
+    this.maxStaleness = maxStaleness;
+    this.rebuilder = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "catalogue-snapshot");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  //null while the first build runs or when the snapshot is staler than the bound
+  public CatalogueSnapshot get(CatalogueSnapshot.View view) {
+    if (!enabled) {
+      return null;
+    }
+    if (!active.get() && active.compareAndSet(false, true)) {
+      synchronized (this) {
+        dirtySince = System.nanoTime();
+        pendingRebuild = rebuilder.schedule(this::rebuild, 0, TimeUnit.NANOSECONDS);
+      }
+      long pollInterval = maxStaleness.toNanos() / 2;
+      if (pollInterval > 0) {
+        rebuilder.scheduleWithFixedDelay(this::poll, pollInterval, pollInterval, TimeUnit.NANOSECONDS);
+      }
+      return null;
+    }
+    CatalogueSnapshot catalogueSnapshot = snapshots.get(view);
+    long since = dirtySince == 0 ? verifiedAt : dirtySince;
+    if (catalogueSnapshot != null && System.nanoTime() - since > maxStaleness.toNanos()) {
+      if (staleFallbacks != null) {
+        staleFallbacks.increment();
+      }
+      return null;
+    }
+    return catalogueSnapshot;
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onBookChanged(BookChangedEvent event) {
+    if (!active.get()) {
+      return;
+    }
+    markChanged(System.nanoTime());
+  }
+
+  //a change the snapshots miss since the given System.nanoTime; schedules the debounced rebuild
+  private synchronized void markChanged(long since) {
+    changes++;
+    long now = System.nanoTime();
+    if (dirtySince == 0) {
+      dirtySince = since;
+    }
+    //every change pushes the rebuild back by the debounce, but never past half the staleness bound
+    if (pendingRebuild == null || pendingRebuild.isDone()) {
+      rebuildDeadline = dirtySince + maxStaleness.toNanos() / 2;
+    } else {
+      pendingRebuild.cancel(false);
+    }
+    long delay = Math.max(0, Math.min(debounce.toNanos(), rebuildDeadline - now));
+    pendingRebuild = rebuilder.schedule(this::rebuild, delay, TimeUnit.NANOSECONDS);
+  }
+
+  //one cheap query every half staleness bound; also numbers the outbox, so a commit that landed after a later
+  //change_id moves the version as well
+  void poll() {
+    long pollStart = System.nanoTime();
+    String version;
+    try {
+      version = ReplicaRoutingContext.callOnPrimary(() -> {
+        bookRepository.sequenceChanges();
+        return bookRepository.findChangeVersion();
+      });
+    } catch (RuntimeException e) {
+      log.warn("Catalogue change poll failed, the snapshot stops being served {} after its last check", maxStaleness, e);
+      return;
+    }
+    synchronized (this) {
+      //still building, or a rebuild is already pending
+      if (builtVersion == null || dirtySince != 0) {
+        return;
+      }
+      if (version.equals(builtVersion)) {
+        verifiedAt = pollStart;
+        return;
+      }
+    }
+    log.info("Catalogue changed outside this instance, rebuilding the snapshot");
+    markChanged(verifiedAt);
+  }
+
+  void rebuild() {
+    long startTime = System.nanoTime();
+    long seenChanges;
+    synchronized (this) {
+      seenChanges = changes;
+    }
+    Map<CatalogueSnapshot.View, CatalogueSnapshot> rebuilt = new EnumMap<>(CatalogueSnapshot.View.class);
+    String version;
+    try {
+      //read before the catalogue, a change in between makes the next poll rebuild once more rather than never
+      version = ReplicaRoutingContext.callOnPrimary(() -> bookRepository.findChangeVersion());
+      //read from the primary, a lagging replica could miss changes that would then be marked as applied
+      rebuilt.put(CatalogueSnapshot.View.ALL_BOOKS,
+              encode(ReplicaRoutingContext.callOnPrimary(() -> bookRepository.findAllBookResponses())));
+      rebuilt.put(CatalogueSnapshot.View.ORDERED_BY_ISBN,
+              encode(ReplicaRoutingContext.callOnPrimary(() -> bookRepository.findAllBooksOrderByIsbn())));
+    } catch (RuntimeException | IOException e) {
+      log.warn("Catalogue snapshot rebuild failed, retrying in {}", maxStaleness, e);
+      synchronized (this) {
+        pendingRebuild = rebuilder.schedule(this::rebuild, maxStaleness.toNanos(), TimeUnit.NANOSECONDS);
+      }
+      return;
+    }
+    long rebuildTime = System.nanoTime() - startTime;
+    synchronized (this) {
+      //changes that arrived while the queries ran may be missing, they count as stale from the rebuild start
+      dirtySince = changes == seenChanges ? 0 : startTime;
+      verifiedAt = startTime;
+      builtVersion = version;
+      snapshots.putAll(rebuilt);
+    }
+    if (rebuildTimer != null) {
+      rebuildTimer.record(rebuildTime, TimeUnit.NANOSECONDS);
+    }
+    log.info("Catalogue snapshot of {} book rebuilt in {} ms",
+            rebuilt.get(CatalogueSnapshot.View.ALL_BOOKS).getBookCount(), TimeUnit.NANOSECONDS.toMillis(rebuildTime));
+  }
+
+  double stalenessSeconds() {
+    long since = dirtySince;
+    return since == 0 ? 0 : (System.nanoTime() - since) / 1e9;
+  }
+
+  private CatalogueSnapshot encode(List<BookResponse> bookResponses) throws IOException {
+    byte[] json = objectMapper.writeValueAsBytes(DataResponse.builder()
+            .data(bookResponses)
+            .build());
+    //encoded once per rebuild, so the slowest and smallest level is worth it
+    ByteArrayOutputStream gzipped = new ByteArrayOutputStream(json.length / 4 + 64);
+    try (GZIPOutputStream gzip = new GZIPOutputStream(gzipped) {
+      {
+        def.setLevel(Deflater.BEST_COMPRESSION);
+      }
+    }) {
+      gzip.write(json);
+    }
+    return CatalogueSnapshot.builder()
+            .etag("\"s" + contentHash(json) + "\"")
+            .json(json)
+            .gzip(gzipped.toByteArray())
+            .bookCount(bookResponses.size())
+            .builtAt(Instant.now())
+            .build();
+  }
+
+  //a content hash keeps the etag stable across restarts and instances serving the same catalogue
+  private static String contentHash(byte[] json) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(json);
+      return HexFormat.of().formatHex(digest, 0, 8);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    rebuildTimer = Timer.builder("book.catalogue.snapshot.rebuild")
+            .description("time to query and encode every catalogue snapshot")
+            .register(registry);
+    staleFallbacks = Counter.builder("book.catalogue.snapshot.stale")
+            .description("requests served from the database because the snapshot exceeded the staleness bound")
+            .register(registry);
+    Gauge.builder("book.catalogue.snapshot.staleness", this, CatalogueSnapshotCache::stalenessSeconds)
+            .description("age of the oldest change not in the snapshot yet")
+            .baseUnit("seconds")
+            .register(registry);
+    Gauge.builder("book.catalogue.snapshot.staleness.bound", maxStaleness, bound -> bound.toMillis() / 1000.0)
+            .baseUnit("seconds")
+            .register(registry);
+    for (CatalogueSnapshot.View view : CatalogueSnapshot.View.values()) {
+      String viewTag = view.name().toLowerCase(Locale.ROOT);
+      Gauge.builder("book.catalogue.snapshot.size", snapshots,
+                      map -> map.containsKey(view) ? map.get(view).getJson().length : 0)
+              .tags("view", viewTag, "encoding", "identity")
+              .baseUnit("bytes")
+              .register(registry);
+      Gauge.builder("book.catalogue.snapshot.size", snapshots,
+                      map -> map.containsKey(view) ? map.get(view).getGzip().length : 0)
+              .tags("view", viewTag, "encoding", "gzip")
+              .baseUnit("bytes")
+              .register(registry);
+    }
+  }
+
+  @Override
+  public void close() {
+    rebuilder.shutdownNow();
+  }
+}
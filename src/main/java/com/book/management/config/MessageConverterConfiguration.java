@@ -0,0 +1,46 @@
+package com.book.management.config;
+
+import com.book.management.converter.BookProtobufHttpMessageConverter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Binary response formats chosen by the Accept header: application/cbor, application/x-jackson-smile and
+ * application/x-protobuf. JSON stays first in the list so it is still picked for a missing or wildcard Accept.
+ */
+@Configuration
+public class MessageConverterConfiguration implements WebMvcConfigurer {
+
+  private final ObjectProvider<Jackson2ObjectMapperBuilder> objectMapperBuilder;
+
+  public MessageConverterConfiguration(ObjectProvider<Jackson2ObjectMapperBuilder> objectMapperBuilder) {
+    this.objectMapperBuilder = objectMapperBuilder;
+  }
+
+  //spring registers cbor and smile after json once the dataformats are on the classpath, they are rebuilt here
+  //from the boot configured builder so they encode exactly the fields json does
+  @Override
+  public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+    converters.replaceAll(converter -> {
+      if (converter instanceof MappingJackson2CborHttpMessageConverter) {
+        return new MappingJackson2CborHttpMessageConverter(
+                objectMapperBuilder.getObject().factory(new CBORFactory()).build());
+      }
+      if (converter instanceof MappingJackson2SmileHttpMessageConverter) {
+        return new MappingJackson2SmileHttpMessageConverter(
+                objectMapperBuilder.getObject().factory(new SmileFactory()).build());
+      }
+      return converter;
+    });
+    converters.add(new BookProtobufHttpMessageConverter());
+  }
+}
@@ -1,25 +1,56 @@
 package com.book.management.controller;
 
+import com.book.management.converter.BookProtobufHttpMessageConverter;
+import com.book.management.datasource.ReplicaRoutingContext;
 import com.book.management.dto.request.AddBookRequest;
+import com.book.management.dto.request.BatchBookRequest;
+import com.book.management.dto.request.BulkAddBookRequest;
 import com.book.management.dto.request.FindAllBooksFromAuthorRequest;
+import com.book.management.dto.request.MultiGetBookRequest;
+import com.book.management.dto.request.PatchBookRequest;
 import com.book.management.dto.request.UpdateBookRequest;
+import com.book.management.dto.response.CatalogueSnapshot;
 import com.book.management.dto.response.DataResponse;
+import com.book.management.dto.response.ResourceVersion;
 import com.book.management.service.BookService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
 
 
 @Slf4j
 @RestController
+@Profile("!reactive")
 @Tag(name = "BOOK API", description = "CRUD book data")
 @RequestMapping(value = "/api/book")
 public class BookController {
 
+  //shared caches may store the responses but must revalidate them with the etag on every use
+  private static final CacheControl REVALIDATE = CacheControl.noCache().cachePublic();
+
+  //each binary encoding is its own representation, so its strong etag must differ from the json one
+  private static final Map<MediaType, String> BINARY_REPRESENTATIONS = Map.of(
+          MediaType.APPLICATION_CBOR, "cbor",
+          new MediaType("application", "x-jackson-smile"), "smile",
+          BookProtobufHttpMessageConverter.APPLICATION_PROTOBUF, "protobuf");
+
   @Autowired
   private BookService bookService;
 
@@ -30,18 +61,60 @@ public class BookController {
     return bookService.addBook(addBookRequest);
   }
 
+  @PostMapping("/bulk")
+  @Operation(summary = "Add many books in one batch", operationId = "Bulk Add Books")
+  public DataResponse<Object> bulkAddBook(@Valid @RequestBody BulkAddBookRequest bulkAddBookRequest) {
+    log.info("Invoking post on /api/book/bulk route");
+    return bookService.bulkAddBook(bulkAddBookRequest);
+  }
+
+  @PostMapping("/batch")
+  @Operation(summary = "Apply ordered add, update and delete operations in one transaction", operationId = "Batch Books")
+  public DataResponse<Object> applyBatch(@Valid @RequestBody BatchBookRequest batchBookRequest) {
+    log.info("Invoking post on /api/book/batch route");
+    return bookService.applyBatch(batchBookRequest);
+  }
+
   @GetMapping("/list")
   @Operation(summary = "Get all books", operationId = "Get All Books")
-  public DataResponse<Object> getAllBooks() {
+  public ResponseEntity<?> getAllBooks(@RequestParam(value = "limit", required = false) Integer limit,
+                                       @RequestParam(value = "after", required = false) String after,
+                                       WebRequest webRequest) {
     log.info("Invoking get on /api/book/list route");
-    return bookService.getAllBooks();
+    if (limit == null && after == null) {
+      ResponseEntity<byte[]> snapshot = snapshot(webRequest, CatalogueSnapshot.View.ALL_BOOKS);
+      if (snapshot != null) {
+        return snapshot;
+      }
+      return current(webRequest, bookService.getCatalogueVersion(), () -> bookService.getAllBooks());
+    }
+    //a keyset page costs the same whatever the catalogue size, it gets no catalogue version
+    return ResponseEntity.ok()
+            .varyBy(HttpHeaders.ACCEPT)
+            .body(bookService.getAllBooks(limit, after));
   }
 
   @GetMapping("/id/{bookId}")
   @Operation(summary = "Get book from bookId", operationId = "Get Book")
-  public DataResponse<Object> getBook(@PathVariable(value="bookId") Integer bookId) {
+  public ResponseEntity<DataResponse<Object>> getBook(@PathVariable(value="bookId") Integer bookId,
+                                                      WebRequest webRequest) {
     log.info("Invoking get on /api/book/id/{bookId} route");
-    return bookService.getBook(bookId);
+    return conditional(webRequest, bookService.getBookVersion(bookId), () -> bookService.getBook(bookId));
+  }
+
+  @GetMapping("/changes")
+  @Operation(summary = "Get book adds, updates and deletes after a change feed position", operationId = "Get Book Changes")
+  public DataResponse<Object> getChanges(@RequestParam(value = "since", required = false) Long since,
+                                         @RequestParam(value = "limit", required = false) Integer limit) {
+    log.info("Invoking get on /api/book/changes route");
+    return bookService.getChanges(since, limit);
+  }
+
+  @PostMapping("/multi-get")
+  @Operation(summary = "Get up to 100 books from bookIds and isbns in one call", operationId = "Multi Get Books")
+  public DataResponse<Object> multiGetBooks(@Valid @RequestBody MultiGetBookRequest multiGetBookRequest) {
+    log.info("Invoking post on /api/book/multi-get route");
+    return bookService.multiGetBooks(multiGetBookRequest);
   }
 
   @PutMapping("/update")
@@ -51,11 +124,20 @@ public class BookController {
     return bookService.updateBook(bookRequest);
   }
 
+  @PatchMapping("/update/{bookId}")
+  @Operation(summary = "Update only the given fields of a book from bookId", operationId = "Patch Book")
+  public DataResponse<Object> patchBook(@PathVariable(value="bookId") Integer bookId,
+                                        @Valid @RequestBody PatchBookRequest patchBookRequest) {
+    log.info("Invoking patch on api/book/update/{bookId} route");
+    return bookService.patchBook(bookId, patchBookRequest);
+  }
+
   @DeleteMapping("/delete/{bookId}")
   @Operation(summary = "Delete book from bookId", operationId = "Delete Book")
-  public DataResponse<Object> deleteBook(@PathVariable(value="bookId") Integer bookId) {
+  public DataResponse<Object> deleteBook(@PathVariable(value="bookId") Integer bookId,
+                                         @RequestParam(value = "version", required = false) Integer version) {
     log.info("Invoking delete on /api/book/delete/{bookId} route");
-    return bookService.deleteBook(bookId);
+    return bookService.deleteBook(bookId, version);
   }
 
   @PostMapping("/author")
@@ -65,10 +147,166 @@ public class BookController {
     return bookService.findAllBooksFromAuthor(findAllBooksFromAuthorRequest);
   }
 
+  @GetMapping("/author")
+  @Operation(summary = "Get all books from author name, cacheable", operationId = "Get All Books From Author Name Cacheable")
+  public ResponseEntity<DataResponse<Object>> findAllBooksFromAuthor(@RequestParam(value = "name") String bookAuthor,
+                                                                     WebRequest webRequest) {
+    log.info("Invoking get on /api/book/author route");
+    if (bookAuthor.isBlank()) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "name must not be blank");
+    }
+    FindAllBooksFromAuthorRequest findAllBooksFromAuthorRequest = FindAllBooksFromAuthorRequest.builder()
+            .bookAuthor(bookAuthor)
+            .build();
+    return current(webRequest, bookService.getCatalogueVersion(),
+            () -> bookService.findAllBooksFromAuthor(findAllBooksFromAuthorRequest));
+  }
+
   @GetMapping("/ordered-isbn")
   @Operation(summary = "Get all books orber by isbn", operationId = "Get All Books Order By ISBN")
-  public DataResponse<Object> findAllBooksOrderByIsbn() {
+  public ResponseEntity<?> findAllBooksOrderByIsbn(WebRequest webRequest) {
     log.info("Invoking get on /api/book/ordered-isbn route");
-    return bookService.findAllBooksOrderByIsbn();
+    ResponseEntity<byte[]> snapshot = snapshot(webRequest, CatalogueSnapshot.View.ORDERED_BY_ISBN);
+    if (snapshot != null) {
+      return snapshot;
+    }
+    return current(webRequest, bookService.getCatalogueVersion(), () -> bookService.findAllBooksOrderByIsbn());
+  }
+
+  @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+  @Operation(summary = "Stream all books order by isbn as ndjson", operationId = "Export All Books")
+  public ResponseEntity<StreamingResponseBody> exportBooks() {
+    log.info("Invoking get on /api/book/export route");
+    StreamingResponseBody body = outputStream -> bookService.exportBooks(outputStream);
+    return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_NDJSON)
+            .body(body);
+  }
+
+  @GetMapping("/search")
+  @Operation(summary = "Search books by title or author words", operationId = "Search Books")
+  public DataResponse<Object> searchBooks(@RequestParam(value = "q") String query,
+                                          @RequestParam(value = "limit", required = false) Integer limit) {
+    log.info("Invoking get on /api/book/search route");
+    return bookService.searchBooks(query, limit);
+  }
+
+  @GetMapping("/stats")
+  @Operation(summary = "Get book totals and books per author", operationId = "Get Book Stats")
+  public DataResponse<Object> getStats(@RequestParam(value = "top", required = false) Integer top,
+                                       @RequestParam(value = "author", required = false) String bookAuthor) {
+    log.info("Invoking get on /api/book/stats route");
+    return bookService.getStats(top, bookAuthor);
+  }
+
+  //answers If-None-Match / If-Modified-Since from the version alone, the body is only built for a stale client copy
+  private ResponseEntity<DataResponse<Object>> conditional(WebRequest webRequest, ResourceVersion resourceVersion,
+                                                           Supplier<DataResponse<Object>> body) {
+    if (resourceVersion == null) {
+      return ResponseEntity.ok()
+              .varyBy(HttpHeaders.ACCEPT)
+              .body(body.get());
+    }
+    String etag = withRepresentation(resourceVersion.getEtag(), webRequest.getHeader(HttpHeaders.ACCEPT));
+    boolean notModified = resourceVersion.getLastModified() == null
+            ? webRequest.checkNotModified(etag)
+            : webRequest.checkNotModified(etag, resourceVersion.getLastModified().toEpochMilli());
+    if (notModified) {
+      return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+              .varyBy(HttpHeaders.ACCEPT)
+              .cacheControl(REVALIDATE)
+              .build();
+    }
+    ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+            .eTag(etag)
+            .varyBy(HttpHeaders.ACCEPT)
+            .cacheControl(REVALIDATE);
+    if (resourceVersion.getLastModified() != null) {
+      response.lastModified(resourceVersion.getLastModified());
+    }
+    return response.body(body.get());
+  }
+
+  //the catalogue version is ahead of any replica, a body read from a lagging one would be cached under it for good
+  private ResponseEntity<DataResponse<Object>> current(WebRequest webRequest, ResourceVersion resourceVersion,
+                                                       Supplier<DataResponse<Object>> body) {
+    return conditional(webRequest, resourceVersion, () -> ReplicaRoutingContext.callOnPrimary(body));
+  }
+
+  //the pre-encoded json of the whole catalogue, written as is; null when json is not wanted or there is no fresh snapshot
+  private ResponseEntity<byte[]> snapshot(WebRequest webRequest, CatalogueSnapshot.View view) {
+    if (binaryRepresentation(webRequest.getHeader(HttpHeaders.ACCEPT)) != null) {
+      return null;
+    }
+    CatalogueSnapshot catalogueSnapshot = bookService.getCatalogueSnapshot(view);
+    if (catalogueSnapshot == null) {
+      return null;
+    }
+    boolean gzip = acceptsGzip(webRequest.getHeader(HttpHeaders.ACCEPT_ENCODING));
+    String etag = gzip ? withSuffix(catalogueSnapshot.getEtag(), "gzip") : catalogueSnapshot.getEtag();
+    if (webRequest.checkNotModified(etag)) {
+      return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+              .varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING)
+              .cacheControl(REVALIDATE)
+              .build();
+    }
+    byte[] body = gzip ? catalogueSnapshot.getGzip() : catalogueSnapshot.getJson();
+    ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+            .eTag(etag)
+            .varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING)
+            .cacheControl(REVALIDATE)
+            .contentType(MediaType.APPLICATION_JSON)
+            .contentLength(body.length);
+    if (gzip) {
+      response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+    }
+    return response.body(body);
+  }
+
+  private static boolean acceptsGzip(String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return false;
+    }
+    for (String coding : acceptEncoding.split(",")) {
+      String[] parameters = coding.split(";");
+      if (parameters[0].trim().equalsIgnoreCase("gzip")) {
+        return parameters.length == 1 || !parameters[1].trim().matches("q=0(\\.0*)?");
+      }
+    }
+    return false;
+  }
+
+  //suffixes the etag with the binary format the Accept header prefers, json (also the wildcard answer) keeps it as is
+  private static String withRepresentation(String etag, String accept) {
+    String representation = binaryRepresentation(accept);
+    return representation == null ? etag : withSuffix(etag, representation);
+  }
+
+  private static String binaryRepresentation(String accept) {
+    if (accept == null) {
+      return null;
+    }
+    List<MediaType> mediaTypes;
+    try {
+      mediaTypes = MediaType.parseMediaTypes(accept);
+    } catch (InvalidMediaTypeException e) {
+      return null;
+    }
+    MediaType.sortBySpecificityAndQuality(mediaTypes);
+    for (MediaType mediaType : mediaTypes) {
+      if (mediaType.isCompatibleWith(MediaType.APPLICATION_JSON)) {
+        return null;
+      }
+      for (Map.Entry<MediaType, String> representation : BINARY_REPRESENTATIONS.entrySet()) {
+        if (representation.getKey().equalsTypeAndSubtype(mediaType)) {
+          return representation.getValue();
+        }
+      }
+    }
+    return null;
+  }
+
+  private static String withSuffix(String etag, String suffix) {
+    return etag.substring(0, etag.length() - 1) + "-" + suffix + "\"";
   }
 }
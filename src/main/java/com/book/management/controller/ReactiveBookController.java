@@ -0,0 +1,108 @@
+package com.book.management.controller;
+
+import com.book.management.dto.request.AddBookRequest;
+import com.book.management.dto.request.BulkAddBookRequest;
+import com.book.management.dto.request.FindAllBooksFromAuthorRequest;
+import com.book.management.dto.request.UpdateBookRequest;
+import com.book.management.dto.response.BookResponse;
+import com.book.management.dto.response.DataResponse;
+import com.book.management.service.ReactiveBookService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.validation.Valid;
+
+/**
+ * WebFlux twin of {@link BookController} for the reactive profile.
+ * /list, /author and /ordered-isbn stream a json array of books (or ndjson when asked for) instead of a DataResponse.
+ */
+@Slf4j
+@RestController
+@Profile("reactive")
+@Tag(name = "BOOK API", description = "CRUD book data")
+@RequestMapping(value = "/api/book")
+public class ReactiveBookController {
+
+  @Autowired
+  private ReactiveBookService reactiveBookService;
+
+  @PostMapping("/add")
+  @Operation(summary = "Add one book", operationId = "Add One Book")
+  public Mono<DataResponse<Object>> addBook(@Valid @RequestBody AddBookRequest addBookRequest) {
+    log.info("Invoking post on /api/book/add route");
+    return reactiveBookService.addBook(addBookRequest);
+  }
+
+  @PostMapping("/bulk")
+  @Operation(summary = "Add many books in one batch", operationId = "Bulk Add Books")
+  public Mono<DataResponse<Object>> bulkAddBook(@Valid @RequestBody BulkAddBookRequest bulkAddBookRequest) {
+    log.info("Invoking post on /api/book/bulk route");
+    return reactiveBookService.bulkAddBook(bulkAddBookRequest);
+  }
+
+  @GetMapping(value = "/list", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+  @Operation(summary = "Get all books", operationId = "Get All Books")
+  public Flux<BookResponse> getAllBooks(@RequestParam(value = "limit", required = false) Integer limit,
+                                       @RequestParam(value = "after", required = false) String after) {
+    log.info("Invoking get on /api/book/list route");
+    return reactiveBookService.getAllBooks(limit, after);
+  }
+
+  @GetMapping("/id/{bookId}")
+  @Operation(summary = "Get book from bookId", operationId = "Get Book")
+  public Mono<DataResponse<Object>> getBook(@PathVariable(value="bookId") Integer bookId) {
+    log.info("Invoking get on /api/book/id/{bookId} route");
+    return reactiveBookService.getBook(bookId);
+  }
+
+  @PutMapping("/update")
+  @Operation(summary = "Update book from bookId", operationId = "Update Book")
+  public Mono<DataResponse<Object>> updateBook(@Valid @RequestBody UpdateBookRequest bookRequest) {
+    log.info("Invoking put on api/book/update route");
+    return reactiveBookService.updateBook(bookRequest);
+  }
+
+  @DeleteMapping("/delete/{bookId}")
+  @Operation(summary = "Delete book from bookId", operationId = "Delete Book")
+  public Mono<DataResponse<Object>> deleteBook(@PathVariable(value="bookId") Integer bookId,
+                                               @RequestParam(value = "version", required = false) Integer version) {
+    log.info("Invoking delete on /api/book/delete/{bookId} route");
+    return reactiveBookService.deleteBook(bookId, version);
+  }
+
+  @PostMapping(value = "/author", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+  @Operation(summary = "Get all books from author name", operationId = "Get All Books From Author Name")
+  public Flux<BookResponse> findAllBooksFromAuthor(@Valid @RequestBody FindAllBooksFromAuthorRequest findAllBooksFromAuthorRequest) {
+    log.info("Invoking post on /api/book/author route");
+    return reactiveBookService.findAllBooksFromAuthor(findAllBooksFromAuthorRequest);
+  }
+
+  @GetMapping(value = "/ordered-isbn", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+  @Operation(summary = "Get all books orber by isbn", operationId = "Get All Books Order By ISBN")
+  public Flux<BookResponse> findAllBooksOrderByIsbn() {
+    log.info("Invoking get on /api/book/ordered-isbn route");
+    return reactiveBookService.findAllBooksOrderByIsbn();
+  }
+
+  @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+  @Operation(summary = "Stream all books order by isbn as ndjson", operationId = "Export All Books")
+  public Flux<BookResponse> exportBooks() {
+    log.info("Invoking get on /api/book/export route");
+    return reactiveBookService.findAllBooksOrderByIsbn();
+  }
+
+  @GetMapping("/search")
+  @Operation(summary = "Search books by title or author words", operationId = "Search Books")
+  public Mono<DataResponse<Object>> searchBooks(@RequestParam(value = "q") String query,
+                                                @RequestParam(value = "limit", required = false) Integer limit) {
+    log.info("Invoking get on /api/book/search route");
+    return reactiveBookService.searchBooks(query, limit);
+  }
+}
@@ -0,0 +1,259 @@
+package com.book.management.converter;
+
+import com.book.management.dto.response.AuthorCountResponse;
+import com.book.management.dto.response.BatchBookResponse;
+import com.book.management.dto.response.BatchOperationResponse;
+import com.book.management.dto.response.BookChangePageResponse;
+import com.book.management.dto.response.BookChangeResponse;
+import com.book.management.dto.response.BookPageResponse;
+import com.book.management.dto.response.BookResponse;
+import com.book.management.dto.response.BookStatsResponse;
+import com.book.management.dto.response.BulkAddBookResponse;
+import com.book.management.dto.response.DataResponse;
+import com.book.management.dto.response.MultiGetBookResponse;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Writes {@link DataResponse} as the BookDataResponse message of src/main/proto/book.proto.
+ * The wire format is encoded by hand, the schema is small enough that generated classes and the protobuf
+ * runtime would only add a copy of every book. Write only, requests stay json.
+ */
+public class BookProtobufHttpMessageConverter extends AbstractHttpMessageConverter<DataResponse<?>> {
+
+  public static final MediaType APPLICATION_PROTOBUF = new MediaType("application", "x-protobuf");
+
+  private static final int WIRE_VARINT = 0;
+  private static final int WIRE_LENGTH_DELIMITED = 2;
+
+  public BookProtobufHttpMessageConverter() {
+    super(APPLICATION_PROTOBUF);
+  }
+
+  @Override
+  protected boolean supports(Class<?> clazz) {
+    return DataResponse.class.isAssignableFrom(clazz);
+  }
+
+  @Override
+  public boolean canRead(Class<?> clazz, MediaType mediaType) {
+    return false;
+  }
+
+  @Override
+  protected DataResponse<?> readInternal(Class<? extends DataResponse<?>> clazz, HttpInputMessage inputMessage) {
+    throw new HttpMessageNotReadableException("protobuf request bodies are not supported", inputMessage);
+  }
+
+  @Override
+  protected void writeInternal(DataResponse<?> dataResponse, HttpOutputMessage outputMessage) throws IOException {
+    //406 rather than a 500: the client asked for a representation this data has none of, json still works
+    Object data = dataResponse.getData();
+    if (!isWritable(data)) {
+      throw new ResponseStatusException(HttpStatus.NOT_ACCEPTABLE,
+              data.getClass().getSimpleName() + " has no protobuf representation");
+    }
+    writeTo(dataResponse, outputMessage.getBody());
+  }
+
+  public static void writeTo(DataResponse<?> dataResponse, OutputStream outputStream) throws IOException {
+    Object data = dataResponse.getData();
+    //checked before any byte goes out, a shape without a message must not be answered with a partial body
+    if (!isWritable(data)) {
+      throw new HttpMessageNotWritableException("cannot write " + data.getClass().getName() + " as protobuf");
+    }
+    BufferedOutputStream out = new BufferedOutputStream(outputStream, 8192);
+    //each message is encoded into a scratch buffer first, its length prefix has to precede it;
+    //a message nested in another one goes through the inner buffer
+    ByteArrayOutputStream scratch = new ByteArrayOutputStream(128);
+    ByteArrayOutputStream inner = new ByteArrayOutputStream(128);
+    if (data instanceof BookResponse) {
+      writeBook(out, 1, scratch, (BookResponse) data);
+      writeTag(out, 5, WIRE_VARINT);
+      writeVarint(out, 1);
+    } else if (data instanceof BookPageResponse) {
+      BookPageResponse bookPageResponse = (BookPageResponse) data;
+      writeBooks(out, scratch, bookPageResponse.getBooks());
+      writeString(out, 2, bookPageResponse.getNextCursor());
+    } else if (data instanceof BulkAddBookResponse) {
+      BulkAddBookResponse bulkAddBookResponse = (BulkAddBookResponse) data;
+      writeBooks(out, scratch, bulkAddBookResponse.getBooks());
+      writePacked(out, scratch, 4, bulkAddBookResponse.getDuplicateIsbns());
+    } else if (data instanceof MultiGetBookResponse) {
+      MultiGetBookResponse multiGetBookResponse = (MultiGetBookResponse) data;
+      writeBooks(out, scratch, multiGetBookResponse.getBooks());
+      writePacked(out, scratch, 6, multiGetBookResponse.getMissingBookIds());
+      writePacked(out, scratch, 7, multiGetBookResponse.getMissingIsbns());
+    } else if (data instanceof BatchBookResponse) {
+      for (BatchOperationResponse result : ((BatchBookResponse) data).getResults()) {
+        writeBatchResult(out, scratch, inner, result);
+      }
+    } else if (data instanceof BookChangePageResponse) {
+      BookChangePageResponse bookChangePageResponse = (BookChangePageResponse) data;
+      for (BookChangeResponse change : bookChangePageResponse.getChanges()) {
+        writeChange(out, scratch, inner, change);
+      }
+      writeNumber(out, 10, bookChangePageResponse.getNextSince());
+      writeNumber(out, 11, bookChangePageResponse.isHasMore() ? 1 : 0);
+    } else if (data instanceof BookStatsResponse) {
+      writeStats(out, scratch, inner, (BookStatsResponse) data);
+    } else if (data instanceof Collection) {
+      writeBooks(out, scratch, (Collection<?>) data);
+    } else if (data != null) {
+      writeString(out, 3, (String) data);
+    }
+    out.flush();
+  }
+
+  //a collection is taken as books, writeBooks rejects any other element; only plain text goes to message
+  private static boolean isWritable(Object data) {
+    return data == null
+            || data instanceof String
+            || data instanceof BookResponse
+            || data instanceof BookPageResponse
+            || data instanceof BulkAddBookResponse
+            || data instanceof MultiGetBookResponse
+            || data instanceof BatchBookResponse
+            || data instanceof BookChangePageResponse
+            || data instanceof BookStatsResponse
+            || data instanceof Collection;
+  }
+
+  private static void writeBooks(OutputStream out, ByteArrayOutputStream scratch, Collection<?> books) throws IOException {
+    if (books == null) {
+      return;
+    }
+    for (Object book : books) {
+      if (!(book instanceof BookResponse)) {
+        throw new HttpMessageNotWritableException("cannot write " + book.getClass().getName() + " as protobuf");
+      }
+      writeBook(out, 1, scratch, (BookResponse) book);
+    }
+  }
+
+  private static void writeBook(OutputStream out, int field, ByteArrayOutputStream scratch,
+                                BookResponse book) throws IOException {
+    if (book == null) {
+      return;
+    }
+    scratch.reset();
+    writeNumber(scratch, 1, book.getBookId());
+    writeNumber(scratch, 2, book.getIsbn());
+    writeString(scratch, 3, book.getBookTitle());
+    writeString(scratch, 4, book.getBookAuthor());
+    writeNumber(scratch, 5, book.getVersion());
+    writeMessage(out, field, scratch);
+  }
+
+  private static void writeBatchResult(OutputStream out, ByteArrayOutputStream scratch, ByteArrayOutputStream inner,
+                                       BatchOperationResponse result) throws IOException {
+    scratch.reset();
+    writeNumber(scratch, 1, result.getIndex());
+    writeString(scratch, 2, result.getOperation() == null ? null : result.getOperation().name());
+    writeString(scratch, 3, result.getOutcome());
+    writeBook(scratch, 4, inner, result.getBook());
+    writeMessage(out, 8, scratch);
+  }
+
+  private static void writeChange(OutputStream out, ByteArrayOutputStream scratch, ByteArrayOutputStream inner,
+                                  BookChangeResponse change) throws IOException {
+    scratch.reset();
+    writeNumber(scratch, 1, change.getSeq());
+    writeString(scratch, 2, change.getType() == null ? null : change.getType().name());
+    writeNumber(scratch, 3, change.getBookId());
+    writeBook(scratch, 4, inner, change.getBook());
+    writeMessage(out, 9, scratch);
+  }
+
+  private static void writeStats(OutputStream out, ByteArrayOutputStream scratch, ByteArrayOutputStream inner,
+                                 BookStatsResponse stats) throws IOException {
+    scratch.reset();
+    writeNumber(scratch, 1, stats.getTotalBooks());
+    writeNumber(scratch, 2, stats.getDistinctAuthors());
+    if (stats.getTopAuthors() != null) {
+      for (AuthorCountResponse authorCount : stats.getTopAuthors()) {
+        writeAuthorCount(scratch, 3, inner, authorCount);
+      }
+    }
+    writeAuthorCount(scratch, 4, inner, stats.getAuthor());
+    writeMessage(out, 12, scratch);
+  }
+
+  private static void writeAuthorCount(OutputStream out, int field, ByteArrayOutputStream scratch,
+                                       AuthorCountResponse authorCount) throws IOException {
+    if (authorCount == null) {
+      return;
+    }
+    scratch.reset();
+    writeString(scratch, 1, authorCount.getBookAuthor());
+    writeNumber(scratch, 2, authorCount.getBookCount());
+    writeMessage(out, field, scratch);
+  }
+
+  //the encoded message as a length-delimited field
+  private static void writeMessage(OutputStream out, int field, ByteArrayOutputStream message) throws IOException {
+    writeTag(out, field, WIRE_LENGTH_DELIMITED);
+    writeVarint(out, message.size());
+    message.writeTo(out);
+  }
+
+  //zero is the proto3 default and is left out, as generated code does
+  private static void writeNumber(OutputStream out, int field, Number value) throws IOException {
+    if (value == null || value.longValue() == 0) {
+      return;
+    }
+    writeTag(out, field, WIRE_VARINT);
+    writeVarint(out, value.longValue());
+  }
+
+  private static void writePacked(OutputStream out, ByteArrayOutputStream scratch, int field,
+                                  List<? extends Number> values) throws IOException {
+    if (values == null || values.isEmpty()) {
+      return;
+    }
+    scratch.reset();
+    for (Number value : values) {
+      writeVarint(scratch, value.longValue());
+    }
+    writeTag(out, field, WIRE_LENGTH_DELIMITED);
+    writeVarint(out, scratch.size());
+    scratch.writeTo(out);
+  }
+
+  private static void writeString(OutputStream out, int field, String value) throws IOException {
+    if (value == null || value.isEmpty()) {
+      return;
+    }
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    writeTag(out, field, WIRE_LENGTH_DELIMITED);
+    writeVarint(out, bytes.length);
+    out.write(bytes);
+  }
+
+  private static void writeTag(OutputStream out, int field, int wireType) throws IOException {
+    writeVarint(out, (field << 3) | wireType);
+  }
+
+  //negative int32 values are sign extended to ten bytes, as protobuf does
+  private static void writeVarint(OutputStream out, long value) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      out.write((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.write((int) value);
+  }
+}
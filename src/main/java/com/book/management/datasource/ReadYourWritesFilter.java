@@ -0,0 +1,67 @@
+package com.book.management.datasource;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Routes a request to the primary when the client asks for it with the X-Read-Your-Writes header
+ * or wrote recently, which is remembered in a short-lived cookie set on the first write.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+  static final String HEADER = "X-Read-Your-Writes";
+  static final String COOKIE = "book-read-primary-until";
+
+  private final Duration window;
+
+  public ReadYourWritesFilter(Duration window) {
+    this.window = window;
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+          throws ServletException, IOException {
+    if ("true".equalsIgnoreCase(request.getHeader(HEADER)) || wroteRecently(request)) {
+      ReplicaRoutingContext.pinToPrimary();
+    }
+    if (!window.isZero()) {
+      ReplicaRoutingContext.onWrite(() -> {
+        if (!response.isCommitted()) {
+          Cookie cookie = new Cookie(COOKIE, String.valueOf(System.currentTimeMillis() + window.toMillis()));
+          cookie.setPath("/");
+          cookie.setHttpOnly(true);
+          cookie.setMaxAge((int) Math.max(1, window.toSeconds()));
+          response.addCookie(cookie);
+        }
+      });
+    }
+    try {
+      filterChain.doFilter(request, response);
+    } finally {
+      ReplicaRoutingContext.clear();
+    }
+  }
+
+  private boolean wroteRecently(HttpServletRequest request) {
+    if (request.getCookies() == null) {
+      return false;
+    }
+    for (Cookie cookie : request.getCookies()) {
+      if (COOKIE.equals(cookie.getName())) {
+        try {
+          return Long.parseLong(cookie.getValue()) > System.currentTimeMillis();
+        } catch (NumberFormatException e) {
+          return false;
+        }
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,66 @@
+package com.book.management.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replaces the auto-configured datasource with a primary plus replica pools when book.datasource.replica.enabled is set,
+ * see application-replica.properties.
+ */
+@Configuration
+@ConditionalOnProperty(name = "book.datasource.replica.enabled", havingValue = "true")
+public class ReplicaDataSourceConfiguration {
+
+  @Bean
+  public ReplicaRoutingDataSource replicaRoutingDataSource(
+          DataSourceProperties dataSourceProperties,
+          @Value("${book.datasource.replica.urls}") List<String> replicaUrls,
+          @Value("${book.datasource.replica.username:${spring.datasource.username}}") String username,
+          @Value("${book.datasource.replica.password:${spring.datasource.password}}") String password,
+          @Value("${book.datasource.replica.health-check-interval:5s}") Duration healthCheckInterval) {
+    HikariDataSource primary = dataSourceProperties.initializeDataSourceBuilder()
+            .type(HikariDataSource.class)
+            .build();
+    primary.setPoolName("primary");
+
+    List<DataSource> replicas = new ArrayList<>();
+    for (String replicaUrl : replicaUrls) {
+      HikariDataSource replica = DataSourceBuilder.create()
+              .type(HikariDataSource.class)
+              .driverClassName(dataSourceProperties.determineDriverClassName())
+              .url(replicaUrl)
+              .username(username)
+              .password(password)
+              .build();
+      replica.setPoolName("replica-" + replicas.size());
+      replica.setReadOnly(true);
+      replicas.add(replica);
+    }
+    return new ReplicaRoutingDataSource(primary, replicas, healthCheckInterval);
+  }
+
+  //the proxy hands out a connection handle first and only picks the target on the first statement
+  @Bean
+  @Primary
+  public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+    return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+  }
+
+  @Bean
+  public ReadYourWritesFilter readYourWritesFilter(
+          @Value("${book.datasource.replica.read-your-writes-window:5s}") Duration readYourWritesWindow) {
+    return new ReadYourWritesFilter(readYourWritesWindow);
+  }
+}
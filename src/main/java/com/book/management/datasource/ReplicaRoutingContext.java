@@ -0,0 +1,58 @@
+package com.book.management.datasource;
+
+import java.util.function.Supplier;
+
+/**
+ * Per-thread routing hints for {@link ReplicaRoutingDataSource}.
+ * A thread pinned to the primary never reads from a replica, a write pins the rest of the request.
+ */
+public final class ReplicaRoutingContext {
+
+  private static final ThreadLocal<Boolean> PINNED_TO_PRIMARY = new ThreadLocal<>();
+  private static final ThreadLocal<Runnable> WRITE_LISTENER = new ThreadLocal<>();
+
+  private ReplicaRoutingContext() {
+  }
+
+  public static boolean isPinnedToPrimary() {
+    return Boolean.TRUE.equals(PINNED_TO_PRIMARY.get());
+  }
+
+  public static void pinToPrimary() {
+    PINNED_TO_PRIMARY.set(Boolean.TRUE);
+  }
+
+  //runs the supplier with every read going to the primary, the previous pin is restored afterwards
+  public static <T> T callOnPrimary(Supplier<T> supplier) {
+    Boolean previous = PINNED_TO_PRIMARY.get();
+    PINNED_TO_PRIMARY.set(Boolean.TRUE);
+    try {
+      return supplier.get();
+    } finally {
+      if (previous == null) {
+        PINNED_TO_PRIMARY.remove();
+      } else {
+        PINNED_TO_PRIMARY.set(previous);
+      }
+    }
+  }
+
+  static void onWrite(Runnable listener) {
+    WRITE_LISTENER.set(listener);
+  }
+
+  //the listener only fires for the first write of the request
+  static void markWrite() {
+    pinToPrimary();
+    Runnable listener = WRITE_LISTENER.get();
+    if (listener != null) {
+      WRITE_LISTENER.remove();
+      listener.run();
+    }
+  }
+
+  static void clear() {
+    PINNED_TO_PRIMARY.remove();
+    WRITE_LISTENER.remove();
+  }
+}
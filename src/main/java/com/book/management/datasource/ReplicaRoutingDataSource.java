@@ -0,0 +1,112 @@
+package com.book.management.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends connections of read-only transactions to a healthy replica, picked round-robin, and everything else to the primary.
+ * Must be wrapped in a LazyConnectionDataSourceProxy so the target is chosen once the transaction read-only flag is set.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+  static final String PRIMARY = "primary";
+  private static final int HEALTH_CHECK_TIMEOUT_SECONDS = 2;
+
+  private final DataSource primary;
+  private final Map<String, DataSource> replicas = new LinkedHashMap<>();
+  private final List<String> replicaKeys;
+  private final Set<String> unhealthyReplicas = ConcurrentHashMap.newKeySet();
+  private final AtomicInteger nextReplica = new AtomicInteger();
+  private final ScheduledExecutorService healthChecker;
+
+  public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicaDataSources, Duration healthCheckInterval) {
+    this.primary = primary;
+    for (int i = 0; i < replicaDataSources.size(); i++) {
+      replicas.put("replica-" + i, replicaDataSources.get(i));
+    }
+    replicaKeys = new ArrayList<>(replicas.keySet());
+
+    Map<Object, Object> targetDataSources = new HashMap<>(replicas);
+    targetDataSources.put(PRIMARY, primary);
+    setTargetDataSources(targetDataSources);
+    setDefaultTargetDataSource(primary);
+    afterPropertiesSet();
+
+    healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "replica-health-check");
+      thread.setDaemon(true);
+      return thread;
+    });
+    if (!healthCheckInterval.isZero()) {
+      healthChecker.scheduleWithFixedDelay(this::checkHealth, healthCheckInterval.toMillis(),
+              healthCheckInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+  }
+
+  @Override
+  protected Object determineCurrentLookupKey() {
+    if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+      if (TransactionSynchronizationManager.isActualTransactionActive()) {
+        ReplicaRoutingContext.markWrite();
+      }
+      return PRIMARY;
+    }
+    if (ReplicaRoutingContext.isPinnedToPrimary()) {
+      return PRIMARY;
+    }
+    int replicaCount = replicaKeys.size();
+    for (int i = 0; i < replicaCount; i++) {
+      String key = replicaKeys.get(Math.floorMod(nextReplica.getAndIncrement(), replicaCount));
+      if (!unhealthyReplicas.contains(key)) {
+        return key;
+      }
+    }
+    //no healthy replica left, the primary serves reads as well
+    return PRIMARY;
+  }
+
+  void checkHealth() {
+    replicas.forEach((key, dataSource) -> {
+      boolean healthy;
+      try (Connection connection = dataSource.getConnection()) {
+        healthy = connection.isValid(HEALTH_CHECK_TIMEOUT_SECONDS);
+      } catch (SQLException e) {
+        healthy = false;
+      }
+      if (healthy ? unhealthyReplicas.remove(key) : unhealthyReplicas.add(key)) {
+        log.info("Replica {} is now {}", key, healthy ? "healthy" : "unhealthy, reads fall back to the others");
+      }
+    });
+  }
+
+  @Override
+  public void close() throws Exception {
+    healthChecker.shutdownNow();
+    for (DataSource dataSource : replicas.values()) {
+      if (dataSource instanceof AutoCloseable) {
+        ((AutoCloseable) dataSource).close();
+      }
+    }
+    if (primary instanceof AutoCloseable) {
+      ((AutoCloseable) primary).close();
+    }
+  }
+}
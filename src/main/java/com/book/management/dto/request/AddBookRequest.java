@@ -5,6 +5,7 @@ import lombok.Data;
 
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
 
 @Data
 @Builder
@@ -14,8 +15,10 @@ public class AddBookRequest {
     private Long isbn;
 
     @NotBlank
+    @Size(max = 50)
     private String bookTitle;
 
     @NotBlank
+    @Size(max = 50)
     private String bookAuthor;
 }
@@ -0,0 +1,20 @@
+package com.book.management.dto.request;
+
+import lombok.*;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchBookRequest {
+
+    @NotEmpty
+    @Size(max = 1000)
+    private List<@Valid @NotNull BatchOperationRequest> operations;
+}
@@ -0,0 +1,33 @@
+package com.book.management.dto.request;
+
+import lombok.*;
+
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+
+//fields needed by the operation: add isbn, bookTitle and bookAuthor; update all four; delete bookId only.
+//version is optional for update and delete
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchOperationRequest {
+
+    public enum Operation { ADD, UPDATE, DELETE }
+
+    @NotNull
+    private Operation operation;
+
+    private Integer bookId;
+
+    private Long isbn;
+
+    @Size(max = 50)
+    private String bookTitle;
+
+    @Size(max = 50)
+    private String bookAuthor;
+
+    //optional for UPDATE and DELETE, a different stored version gives the conflict outcome
+    private Integer version;
+}
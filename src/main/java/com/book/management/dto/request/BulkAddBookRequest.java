@@ -0,0 +1,19 @@
+package com.book.management.dto.request;
+
+import lombok.*;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkAddBookRequest {
+
+    @NotEmpty
+    @Size(max = 10000)
+    private List<@Valid AddBookRequest> books;
+}
@@ -0,0 +1,20 @@
+package com.book.management.dto.request;
+
+import lombok.*;
+
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MultiGetBookRequest {
+
+    @Size(max = 100)
+    private List<@NotNull Integer> bookIds;
+
+    @Size(max = 100)
+    private List<@NotNull Long> isbns;
+}
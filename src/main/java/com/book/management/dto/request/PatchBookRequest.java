@@ -0,0 +1,31 @@
+package com.book.management.dto.request;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.Pattern;
+import javax.validation.constraints.Size;
+
+//every field is optional, only the ones given are written; a blank title or author is still rejected
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PatchBookRequest {
+
+    private Long isbn;
+
+    @Pattern(regexp = ".*\\S.*", message = "must not be blank")
+    @Size(max = 50)
+    private String bookTitle;
+
+    @Pattern(regexp = ".*\\S.*", message = "must not be blank")
+    @Size(max = 50)
+    private String bookAuthor;
+
+    //optional, when given the patch only applies if the book is still at this version
+    private Integer version;
+
+}
@@ -5,6 +5,7 @@ import lombok.Data;
 
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
 
 
 @Data
@@ -18,9 +19,14 @@ public class UpdateBookRequest {
   private Long isbn;
 
   @NotBlank
+  @Size(max = 50)
   private String bookTitle;
 
   @NotBlank
+  @Size(max = 50)
   private String bookAuthor;
 
+  //optional, when given the update only applies if the book is still at this version
+  private Integer version;
+
 }
@@ -0,0 +1,15 @@
+package com.book.management.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuthorCountResponse {
+  private String bookAuthor;
+  private Integer bookCount;
+}
@@ -0,0 +1,12 @@
+package com.book.management.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class BatchBookResponse {
+  private List<BatchOperationResponse> results;
+}
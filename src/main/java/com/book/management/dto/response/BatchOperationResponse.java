@@ -0,0 +1,17 @@
+package com.book.management.dto.response;
+
+import com.book.management.dto.request.BatchOperationRequest;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class BatchOperationResponse {
+  //position of the operation in the request
+  private int index;
+  private BatchOperationRequest.Operation operation;
+  //added, updated, deleted, duplicate (isbn already taken) or not_found (no book with bookId)
+  private String outcome;
+  //state after the operation, null for a delete or a skipped operation
+  private BookResponse book;
+}
@@ -0,0 +1,15 @@
+package com.book.management.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class BookChangePageResponse {
+  private List<BookChangeResponse> changes;
+  //since for the next call, unchanged when there was nothing new
+  private Long nextSince;
+  private boolean hasMore;
+}
@@ -0,0 +1,20 @@
+package com.book.management.dto.response;
+
+import com.book.management.event.BookChangedEvent;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookChangeResponse {
+  //position in the change feed, pass the last one seen as since to continue after it
+  private Long seq;
+  private BookChangedEvent.Type type;
+  private Integer bookId;
+  //state after the change, null for the tombstone of a deleted book
+  private BookResponse book;
+}
@@ -0,0 +1,13 @@
+package com.book.management.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class BookPageResponse {
+  private List<BookResponse> books;
+  private String nextCursor;
+}
@@ -1,13 +1,19 @@
 package com.book.management.dto.response;
 
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 @Data
 @Builder
+@NoArgsConstructor
+@AllArgsConstructor
 public class BookResponse {
   private Integer bookId;
   private Long isbn;
   private String bookTitle;
   private String bookAuthor;
+  //send it back with update, patch or delete to have the write rejected when someone else changed the book first
+  private Integer version;
 }
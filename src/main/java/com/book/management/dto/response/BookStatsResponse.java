@@ -0,0 +1,17 @@
+package com.book.management.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class BookStatsResponse {
+  private Long totalBooks;
+  private Integer distinctAuthors;
+  //most books first
+  private List<AuthorCountResponse> topAuthors;
+  //only when one author was asked for
+  private AuthorCountResponse author;
+}
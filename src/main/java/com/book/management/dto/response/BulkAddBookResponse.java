@@ -0,0 +1,13 @@
+package com.book.management.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class BulkAddBookResponse {
+  private List<BookResponse> books;
+  private List<Long> duplicateIsbns;
+}
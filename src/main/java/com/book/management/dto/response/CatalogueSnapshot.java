@@ -0,0 +1,21 @@
+package com.book.management.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+
+@Data
+@Builder
+public class CatalogueSnapshot {
+
+  public enum View { ALL_BOOKS, ORDERED_BY_ISBN }
+
+  //quoted strong entity tag of the json bytes, the gzip encoding adds a suffix to it
+  private String etag;
+  //DataResponse json exactly as the live route writes it
+  private byte[] json;
+  private byte[] gzip;
+  private int bookCount;
+  private Instant builtAt;
+}
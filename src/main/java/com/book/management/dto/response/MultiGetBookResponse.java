@@ -0,0 +1,15 @@
+package com.book.management.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class MultiGetBookResponse {
+  //found books in request order, bookIds first then isbns
+  private List<BookResponse> books;
+  private List<Integer> missingBookIds;
+  private List<Long> missingIsbns;
+}
@@ -0,0 +1,15 @@
+package com.book.management.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+
+@Data
+@Builder
+public class ResourceVersion {
+  //quoted strong entity tag, changes whenever the representation can change
+  private String etag;
+  //null when no modification time can be trusted, the etag alone is used then
+  private Instant lastModified;
+}
@@ -0,0 +1,238 @@
+package com.book.management.embedded;
+
+import com.book.management.entity.Book;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of book records in one memory-mapped file. A 16 byte header (magic, format, next bookId) is followed
+ * by records, each prefixed with its length and a crc32 of its body:
+ * put (type, bookId, version, isbn, created and updated micros, title, author) or delete (type, bookId).
+ * The mapping doubles when full; a zero length marks the end. Not thread safe, MappedBookRepository serialises access.
+ */
+final class BookLog implements Closeable {
+
+  static final int MAGIC = 0x424b4c47;
+  static final int FORMAT = 1;
+  static final int HEADER_SIZE = 16;
+  static final byte PUT = 1;
+  static final byte DELETE = 2;
+
+  //length and crc ahead of every record body
+  private static final int PREFIX = 8;
+  private static final int NEXT_BOOK_ID = 8;
+  //offsets inside a record body
+  private static final int TYPE = 0;
+  private static final int BOOK_ID = 1;
+  private static final int VERSION = 5;
+  private static final int ISBN = 9;
+  private static final int CREATED_DATE = 17;
+  private static final int UPDATED_DATE = 25;
+  private static final int TITLE = 33;
+  private static final int DELETE_SIZE = 5;
+
+  private final FileChannel channel;
+  private MappedByteBuffer buffer;
+  private int tail = HEADER_SIZE;
+
+  interface RecordVisitor {
+    void visit(int offset, byte type, int bookId);
+  }
+
+  private BookLog(FileChannel channel, int capacity) throws IOException {
+    this.channel = channel;
+    this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+  }
+
+  //opens the log at path, creating it with an empty header when missing
+  static BookLog open(Path path, int initialSize) throws IOException {
+    FileChannel channel = FileChannel.open(path,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    long fileSize = channel.size();
+    if (fileSize > Integer.MAX_VALUE) {
+      channel.close();
+      throw new IOException(path + " is larger than a single mapping");
+    }
+    BookLog bookLog = new BookLog(channel, (int) Math.max(initialSize, Math.max(fileSize, HEADER_SIZE)));
+    if (fileSize < HEADER_SIZE) {
+      bookLog.buffer.putInt(0, MAGIC);
+      bookLog.buffer.putInt(4, FORMAT);
+      bookLog.setNextBookId(1);
+    } else if (bookLog.buffer.getInt(0) != MAGIC || bookLog.buffer.getInt(4) != FORMAT) {
+      bookLog.close();
+      throw new IOException(path + " is not a book log");
+    }
+    return bookLog;
+  }
+
+  //replays intact records from the start; a torn or corrupt record ends the log and everything after it is cleared
+  void replay(RecordVisitor visitor) {
+    int offset = HEADER_SIZE;
+    CRC32 crc = new CRC32();
+    while (offset + PREFIX <= buffer.capacity()) {
+      int length = buffer.getInt(offset);
+      if (length == 0) {
+        break;
+      }
+      boolean intact = length >= DELETE_SIZE && length <= buffer.capacity() - offset - PREFIX;
+      if (intact) {
+        crc.reset();
+        crc.update(buffer.slice(offset + PREFIX, length));
+        intact = (int) crc.getValue() == buffer.getInt(offset + 4);
+      }
+      if (!intact) {
+        byte[] zeros = new byte[Math.min(64 * 1024, buffer.capacity() - offset)];
+        for (int clear = offset; clear < buffer.capacity(); clear += zeros.length) {
+          buffer.put(clear, zeros, 0, Math.min(zeros.length, buffer.capacity() - clear));
+        }
+        break;
+      }
+      visitor.visit(offset, buffer.get(offset + PREFIX + TYPE), buffer.getInt(offset + PREFIX + BOOK_ID));
+      offset += PREFIX + length;
+    }
+    tail = offset;
+  }
+
+  int appendPut(Book book) throws IOException {
+    byte[] bookTitle = book.getBookTitle().getBytes(StandardCharsets.UTF_8);
+    byte[] bookAuthor = book.getBookAuthor().getBytes(StandardCharsets.UTF_8);
+    ByteBuffer body = ByteBuffer.allocate(TITLE + 4 + bookTitle.length + 4 + bookAuthor.length)
+            .put(PUT)
+            .putInt(book.getBookId())
+            .putInt(book.getVersion())
+            .putLong(book.getIsbn())
+            .putLong(toMicros(book.getCreatedDate()))
+            .putLong(toMicros(book.getUpdatedDate()))
+            .putInt(bookTitle.length)
+            .put(bookTitle)
+            .putInt(bookAuthor.length)
+            .put(bookAuthor);
+    return append(body.array());
+  }
+
+  int appendDelete(int bookId) throws IOException {
+    return append(ByteBuffer.allocate(DELETE_SIZE)
+            .put(DELETE)
+            .putInt(bookId)
+            .array());
+  }
+
+  //copies a record as is, used to write the live records into a compacted log
+  int copy(BookLog source, int offset) throws IOException {
+    byte[] body = new byte[source.buffer.getInt(offset)];
+    source.buffer.get(offset + PREFIX, body);
+    return append(body);
+  }
+
+  private int append(byte[] body) throws IOException {
+    int offset = tail;
+    //the trailing int stays zero as the end marker
+    ensureCapacity((long) offset + PREFIX + body.length + 4);
+    CRC32 crc = new CRC32();
+    crc.update(body);
+    //body and crc first, the length last, so a record is only visible once complete
+    buffer.put(offset + PREFIX, body);
+    buffer.putInt(offset + 4, (int) crc.getValue());
+    buffer.putInt(offset, body.length);
+    tail = offset + PREFIX + body.length;
+    return offset;
+  }
+
+  private void ensureCapacity(long required) throws IOException {
+    if (required <= buffer.capacity()) {
+      return;
+    }
+    if (required > Integer.MAX_VALUE) {
+      throw new IOException("book log is full, a single mapping is limited to 2GB");
+    }
+    long capacity = Math.min(Integer.MAX_VALUE, Math.max(required, (long) buffer.capacity() * 2));
+    buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+  }
+
+  Book read(int offset) {
+    int body = offset + PREFIX;
+    int titleLength = buffer.getInt(body + TITLE);
+    int authorOffset = body + TITLE + 4 + titleLength;
+    return Book.builder()
+            .bookId(buffer.getInt(body + BOOK_ID))
+            .version(buffer.getInt(body + VERSION))
+            .isbn(buffer.getLong(body + ISBN))
+            .createdDate(fromMicros(buffer.getLong(body + CREATED_DATE)))
+            .updatedDate(fromMicros(buffer.getLong(body + UPDATED_DATE)))
+            .bookTitle(readString(body + TITLE + 4, titleLength))
+            .bookAuthor(readString(authorOffset + 4, buffer.getInt(authorOffset)))
+            .build();
+  }
+
+  long readIsbn(int offset) {
+    return buffer.getLong(offset + PREFIX + ISBN);
+  }
+
+  LocalDateTime readUpdatedDate(int offset) {
+    return fromMicros(buffer.getLong(offset + PREFIX + UPDATED_DATE));
+  }
+
+  String readBookAuthor(int offset) {
+    int authorOffset = offset + PREFIX + TITLE + 4 + buffer.getInt(offset + PREFIX + TITLE);
+    return readString(authorOffset + 4, buffer.getInt(authorOffset));
+  }
+
+  int recordSize(int offset) {
+    return PREFIX + buffer.getInt(offset);
+  }
+
+  int size() {
+    return tail;
+  }
+
+  int nextBookId() {
+    return (int) buffer.getLong(NEXT_BOOK_ID);
+  }
+
+  void setNextBookId(int nextBookId) {
+    buffer.putLong(NEXT_BOOK_ID, nextBookId);
+  }
+
+  //writes dirty pages to disk; a process crash loses nothing unforced, an os crash loses what was written since
+  void force() {
+    buffer.force();
+  }
+
+  static void replace(Path source, Path target) throws IOException {
+    Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  private String readString(int offset, int length) {
+    byte[] bytes = new byte[length];
+    buffer.get(offset, bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  //wall clock micros, independent of the zone the file is later opened in
+  private static long toMicros(LocalDateTime localDateTime) {
+    return localDateTime.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + localDateTime.getNano() / 1_000;
+  }
+
+  private static LocalDateTime fromMicros(long micros) {
+    return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000),
+            (int) Math.floorMod(micros, 1_000_000) * 1_000, ZoneOffset.UTC);
+  }
+
+  //the mapping itself is released once unreachable, the jdk has no public unmap
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
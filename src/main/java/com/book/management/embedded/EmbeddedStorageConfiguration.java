@@ -0,0 +1,38 @@
+package com.book.management.embedded;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Serves BookRepository from a memory-mapped log file instead of Postgres under the embedded profile,
+ * see application-embedded.properties for the datasource and jpa auto-configuration it switches off.
+ */
+@Configuration
+@Profile("embedded")
+public class EmbeddedStorageConfiguration {
+
+  @Bean(destroyMethod = "close")
+  public MappedBookRepository bookRepository(
+          @Value("${book.embedded.path:data/books.log}") String path,
+          @Value("${book.embedded.initial-size:16MB}") DataSize initialSize,
+          @Value("${book.embedded.sync-interval:100ms}") Duration syncInterval,
+          @Value("${book.embedded.compaction-interval:1m}") Duration compactionInterval) throws IOException {
+    Path logPath = Path.of(path).toAbsolutePath();
+    Files.createDirectories(logPath.getParent());
+    return new MappedBookRepository(logPath, (int) initialSize.toBytes(), syncInterval, compactionInterval);
+  }
+
+  @Bean
+  public PlatformTransactionManager transactionManager() {
+    return new EmbeddedTransactionManager();
+  }
+}
@@ -0,0 +1,53 @@
+package com.book.management.embedded;
+
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+/**
+ * Lets @Transactional and TransactionTemplate run without a database: it only tracks whether the thread is inside a
+ * transaction, for propagation. MappedBookRepository applies each write when it is made, a rollback undoes nothing.
+ */
+public class EmbeddedTransactionManager extends AbstractPlatformTransactionManager {
+
+  private static final ThreadLocal<Boolean> ACTIVE = ThreadLocal.withInitial(() -> false);
+
+  @Override
+  protected Object doGetTransaction() {
+    return new boolean[] {ACTIVE.get()};
+  }
+
+  @Override
+  protected boolean isExistingTransaction(Object transaction) {
+    return ((boolean[]) transaction)[0];
+  }
+
+  @Override
+  protected void doBegin(Object transaction, TransactionDefinition definition) {
+    ACTIVE.set(true);
+  }
+
+  @Override
+  protected Object doSuspend(Object transaction) {
+    ACTIVE.set(false);
+    return Boolean.TRUE;
+  }
+
+  @Override
+  protected void doResume(Object transaction, Object suspendedResources) {
+    ACTIVE.set(true);
+  }
+
+  @Override
+  protected void doCommit(DefaultTransactionStatus status) {
+  }
+
+  @Override
+  protected void doRollback(DefaultTransactionStatus status) {
+  }
+
+  @Override
+  protected void doCleanupAfterCompletion(Object transaction) {
+    ACTIVE.remove();
+  }
+}
@@ -0,0 +1,97 @@
+package com.book.management.embedded;
+
+/**
+ * Open addressing long to int map with linear probing and backward shift deletion, so isbn to bookId lookups
+ * never box. A value of 0 marks a free slot, which bookIds never are. Not thread safe.
+ */
+final class LongIntHashMap {
+
+  private long[] keys;
+  private int[] values;
+  private int mask;
+  private int size;
+
+  LongIntHashMap(int expectedSize) {
+    int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2) - 1) << 1;
+    allocate(capacity);
+  }
+
+  //0 when absent
+  int get(long key) {
+    for (int i = slot(key); ; i = (i + 1) & mask) {
+      if (values[i] == 0) {
+        return 0;
+      }
+      if (keys[i] == key) {
+        return values[i];
+      }
+    }
+  }
+
+  void put(long key, int value) {
+    if ((size + 1) * 2 > keys.length) {
+      resize(keys.length * 2);
+    }
+    for (int i = slot(key); ; i = (i + 1) & mask) {
+      if (values[i] == 0) {
+        keys[i] = key;
+        values[i] = value;
+        size++;
+        return;
+      }
+      if (keys[i] == key) {
+        values[i] = value;
+        return;
+      }
+    }
+  }
+
+  void remove(long key) {
+    int gap = slot(key);
+    while (values[gap] != 0 && keys[gap] != key) {
+      gap = (gap + 1) & mask;
+    }
+    if (values[gap] == 0) {
+      return;
+    }
+    values[gap] = 0;
+    size--;
+    //pull later entries of the probe run back into the gap, unless that would move them before their home slot
+    for (int i = (gap + 1) & mask; values[i] != 0; i = (i + 1) & mask) {
+      int home = slot(keys[i]);
+      if (((i - home) & mask) >= ((i - gap) & mask)) {
+        keys[gap] = keys[i];
+        values[gap] = values[i];
+        values[i] = 0;
+        gap = i;
+      }
+    }
+  }
+
+  int size() {
+    return size;
+  }
+
+  private int slot(long key) {
+    long hash = key * 0x9E3779B97F4A7C15L;
+    return (int) (hash ^ (hash >>> 32)) & mask;
+  }
+
+  private void resize(int capacity) {
+    long[] oldKeys = keys;
+    int[] oldValues = values;
+    allocate(capacity);
+    size = 0;
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldValues[i] != 0) {
+        put(oldKeys[i], oldValues[i]);
+      }
+    }
+  }
+
+  private void allocate(int capacity) {
+    keys = new long[capacity];
+    values = new int[capacity];
+    mask = capacity - 1;
+  }
+}
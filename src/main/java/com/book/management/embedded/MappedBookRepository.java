@@ -0,0 +1,794 @@
+package com.book.management.embedded;
+
+import com.book.management.dto.response.BookChangeResponse;
+import com.book.management.dto.response.BookResponse;
+import com.book.management.entity.Book;
+import com.book.management.repository.BookRepository;
+import com.book.management.repository.IsbnConstraint;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * BookRepository over a memory-mapped BookLog instead of Postgres, for the embedded profile.
+ * Books stay in the log; the heap only holds the indexes rebuilt from it on startup: log offset by bookId (a dense
+ * array), bookId by isbn and bookIds by author. Every write is appended and applied at once, so it is atomic on its
+ * own but a surrounding transaction cannot roll it back. The log is forced to disk every sync interval and rewritten
+ * without dead records once they outweigh the live ones.
+ */
+@Slf4j
+public class MappedBookRepository implements BookRepository, AutoCloseable {
+
+  //dead bytes below this are never worth a rewrite
+  static final int MIN_COMPACTION_GARBAGE = 1024 * 1024;
+
+  private final Path path;
+  private final int initialSize;
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final ScheduledExecutorService maintenance;
+  //a fresh id per open, so a change version handed out before a restart never matches one after it
+  private final String openId = Long.toHexString(ThreadLocalRandom.current().nextLong());
+
+  //guarded by lock
+  private BookLog bookLog;
+  private int[] offsets = new int[1024];
+  private final LongIntHashMap bookIdByIsbn = new LongIntHashMap(1024);
+  private final Map<String, SortedIntSet> bookIdsByAuthor = new HashMap<>();
+  private int bookCount;
+  private long garbage;
+  private long writes;
+
+  public MappedBookRepository(Path path, int initialSize, Duration syncInterval, Duration compactionInterval)
+          throws IOException {
+    this.path = path;
+    this.initialSize = initialSize;
+    long startTime = System.currentTimeMillis();
+    bookLog = BookLog.open(path, initialSize);
+    bookLog.replay(this::replay);
+    log.info("Book log {} opened with {} book in {} ms", path, bookCount, System.currentTimeMillis() - startTime);
+
+    maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "book-log");
+      thread.setDaemon(true);
+      return thread;
+    });
+    if (!syncInterval.isZero()) {
+      maintenance.scheduleWithFixedDelay(this::force,
+              syncInterval.toMillis(), syncInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+    if (!compactionInterval.isZero()) {
+      maintenance.scheduleWithFixedDelay(this::compactIfWorthIt,
+              compactionInterval.toMillis(), compactionInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private void replay(int offset, byte type, int bookId) {
+    int previous = offsetOf(bookId);
+    if (previous != 0) {
+      garbage += bookLog.recordSize(previous);
+      unindex(bookId, previous);
+    }
+    if (type == BookLog.PUT) {
+      index(bookId, offset);
+    } else {
+      garbage += bookLog.recordSize(offset);
+    }
+  }
+
+  //--- writes, all under the write lock
+
+  @Override
+  public <S extends Book> S save(S book) {
+    lock.writeLock().lock();
+    try {
+      write(book);
+      return book;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  //all or nothing: EmbeddedTransactionManager has nothing to roll back, so every book is checked against the store
+  //and the books before it in the batch before the first one is appended
+  @Override
+  public <S extends Book> Iterable<S> saveAll(Iterable<S> books) {
+    List<S> saved = new ArrayList<>();
+    books.forEach(saved::add);
+    lock.writeLock().lock();
+    try {
+      checkAll(saved);
+      for (S book : saved) {
+        write(book);
+      }
+      return saved;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  //the checks of write for a whole batch, with the isbn each earlier book of the batch takes or gives up
+  private void checkAll(List<? extends Book> books) {
+    Map<Long, Integer> batchHolders = new HashMap<>();
+    for (Book book : books) {
+      if (book.getIsbn() == null || book.getBookTitle() == null || book.getBookAuthor() == null) {
+        throw new DataIntegrityViolationException("isbn, bookTitle and bookAuthor are required");
+      }
+      int bookId = 0;
+      Long previousIsbn = null;
+      if (book.getBookId() != null && book.getVersion() != null) {
+        int offset = offsetOf(book.getBookId());
+        if (offset == 0) {
+          throw new ObjectOptimisticLockingFailureException(Book.class, book.getBookId());
+        }
+        Book stored = bookLog.read(offset);
+        if (!stored.getVersion().equals(book.getVersion())) {
+          throw new ObjectOptimisticLockingFailureException(Book.class, book.getBookId());
+        }
+        bookId = book.getBookId();
+        previousIsbn = stored.getIsbn();
+      }
+      long isbn = book.getIsbn();
+      requireIsbnFree(isbn, bookId, batchHolders.getOrDefault(isbn, bookIdByIsbn.get(isbn)));
+      if (previousIsbn != null && previousIsbn != isbn) {
+        batchHolders.put(previousIsbn, 0);
+      }
+      //a new book has no bookId yet, -1 holds its isbn against the rest of the batch
+      batchHolders.put(isbn, bookId == 0 ? -1 : bookId);
+    }
+  }
+
+  //new when there is no bookId or version yet, as with the jpa entity; fills in bookId, dates and version
+  private void write(Book book) {
+    if (book.getIsbn() == null || book.getBookTitle() == null || book.getBookAuthor() == null) {
+      throw new DataIntegrityViolationException("isbn, bookTitle and bookAuthor are required");
+    }
+    LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+    if (book.getBookId() == null || book.getVersion() == null) {
+      requireIsbnFree(book.getIsbn(), 0);
+      int bookId = bookLog.nextBookId();
+      bookLog.setNextBookId(bookId + 1);
+      book.setBookId(bookId);
+      book.setCreatedDate(now);
+      book.setUpdatedDate(now);
+      book.setVersion(0);
+      append(book);
+      return;
+    }
+    int offset = offsetOf(book.getBookId());
+    if (offset == 0) {
+      throw new ObjectOptimisticLockingFailureException(Book.class, book.getBookId());
+    }
+    Book stored = bookLog.read(offset);
+    if (!stored.getVersion().equals(book.getVersion())) {
+      throw new ObjectOptimisticLockingFailureException(Book.class, book.getBookId());
+    }
+    requireIsbnFree(book.getIsbn(), book.getBookId());
+    book.setCreatedDate(stored.getCreatedDate());
+    book.setUpdatedDate(now);
+    book.setVersion(stored.getVersion() + 1);
+    append(book);
+  }
+
+  //raised the way postgres reports it, so the service tells a duplicate from other integrity violations alike
+  private void requireIsbnFree(long isbn, int bookId) {
+    requireIsbnFree(isbn, bookId, bookIdByIsbn.get(isbn));
+  }
+
+  private void requireIsbnFree(long isbn, int bookId, int holder) {
+    if (holder != 0 && holder != bookId) {
+      throw new DuplicateKeyException("book with isbn " + isbn + " already exists", new SQLException(
+              "duplicate key value violates unique constraint \"" + IsbnConstraint.NAME + "\"",
+              IsbnConstraint.UNIQUE_VIOLATION));
+    }
+  }
+
+  private void append(Book book) {
+    int previous = offsetOf(book.getBookId());
+    int offset;
+    try {
+      offset = bookLog.appendPut(book);
+    } catch (IOException e) {
+      throw new DataAccessResourceFailureException("book log append failed", e);
+    }
+    writes++;
+    if (previous != 0) {
+      garbage += bookLog.recordSize(previous);
+      unindex(book.getBookId(), previous);
+    }
+    index(book.getBookId(), offset);
+  }
+
+  private boolean remove(int bookId) {
+    int offset = offsetOf(bookId);
+    if (offset == 0) {
+      return false;
+    }
+    int deleteOffset;
+    try {
+      deleteOffset = bookLog.appendDelete(bookId);
+    } catch (IOException e) {
+      throw new DataAccessResourceFailureException("book log append failed", e);
+    }
+    writes++;
+    garbage += bookLog.recordSize(offset) + bookLog.recordSize(deleteOffset);
+    unindex(bookId, offset);
+    return true;
+  }
+
+  private void index(int bookId, int offset) {
+    if (bookId >= offsets.length) {
+      offsets = Arrays.copyOf(offsets, Math.max(bookId + 1, offsets.length * 2));
+    }
+    offsets[bookId] = offset;
+    bookIdByIsbn.put(bookLog.readIsbn(offset), bookId);
+    bookIdsByAuthor.computeIfAbsent(bookLog.readBookAuthor(offset), author -> new SortedIntSet()).add(bookId);
+    bookCount++;
+  }
+
+  private void unindex(int bookId, int offset) {
+    offsets[bookId] = 0;
+    bookIdByIsbn.remove(bookLog.readIsbn(offset));
+    String bookAuthor = bookLog.readBookAuthor(offset);
+    SortedIntSet bookIds = bookIdsByAuthor.get(bookAuthor);
+    if (bookIds != null && bookIds.remove(bookId) && bookIds.isEmpty()) {
+      bookIdsByAuthor.remove(bookAuthor);
+    }
+    bookCount--;
+  }
+
+  @Override
+  public Optional<Integer> insertIfAbsent(Long isbn, String bookTitle, String bookAuthor) {
+    lock.writeLock().lock();
+    try {
+      if (bookIdByIsbn.get(isbn) != 0) {
+        return Optional.empty();
+      }
+      Book book = Book.builder()
+              .isbn(isbn)
+              .bookTitle(bookTitle)
+              .bookAuthor(bookAuthor)
+              .build();
+      write(book);
+      return Optional.of(book.getBookId());
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public Optional<Book> updateBook(Integer bookId, Integer version, Long isbn, String bookTitle, String bookAuthor) {
+    lock.writeLock().lock();
+    try {
+      int offset = offsetOf(bookId);
+      if (offset == 0) {
+        return Optional.empty();
+      }
+      Book book = bookLog.read(offset);
+      if (version != null && !version.equals(book.getVersion())) {
+        return Optional.empty();
+      }
+      if (isbn != null) {
+        book.setIsbn(isbn);
+      }
+      if (bookTitle != null) {
+        book.setBookTitle(bookTitle);
+      }
+      if (bookAuthor != null) {
+        book.setBookAuthor(bookAuthor);
+      }
+      write(book);
+      return Optional.of(book);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public Optional<Integer> deleteReturningBookId(Integer bookId) {
+    return deleteReturningBookId(bookId, null);
+  }
+
+  @Override
+  public Optional<Integer> deleteReturningBookId(Integer bookId, Integer version) {
+    lock.writeLock().lock();
+    try {
+      int offset = offsetOf(bookId);
+      if (offset == 0 || (version != null && !version.equals(bookLog.read(offset).getVersion()))) {
+        return Optional.empty();
+      }
+      remove(bookId);
+      return Optional.of(bookId);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void deleteById(Integer bookId) {
+    lock.writeLock().lock();
+    try {
+      if (!remove(bookId)) {
+        throw new EmptyResultDataAccessException("No book with bookId " + bookId + " exists", 1);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void delete(Book book) {
+    deleteAllById(List.of(book.getBookId()));
+  }
+
+  @Override
+  public void deleteAllById(Iterable<? extends Integer> bookIds) {
+    lock.writeLock().lock();
+    try {
+      bookIds.forEach(this::remove);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void deleteAll(Iterable<? extends Book> books) {
+    List<Integer> bookIds = new ArrayList<>();
+    books.forEach(book -> bookIds.add(book.getBookId()));
+    deleteAllById(bookIds);
+  }
+
+  @Override
+  public void deleteAll() {
+    lock.writeLock().lock();
+    try {
+      for (int bookId = 1; bookId < offsets.length; bookId++) {
+        remove(bookId);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  //every write is applied when made, there is nothing pending
+  @Override
+  public void flush() {
+  }
+
+  //--- reads, under the read lock
+
+  private int offsetOf(Integer bookId) {
+    return bookId != null && bookId > 0 && bookId < offsets.length ? offsets[bookId] : 0;
+  }
+
+  private Book read(Integer bookId) {
+    lock.readLock().lock();
+    try {
+      int offset = offsetOf(bookId);
+      return offset == 0 ? null : bookLog.read(offset);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private List<Book> readAll(int[] bookIds) {
+    List<Book> books = new ArrayList<>(bookIds.length);
+    lock.readLock().lock();
+    try {
+      for (int bookId : bookIds) {
+        int offset = offsetOf(bookId);
+        if (offset != 0) {
+          books.add(bookLog.read(offset));
+        }
+      }
+      return books;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  //bookIds in ascending order, taken from the index at the time of the call
+  private int[] bookIds() {
+    lock.readLock().lock();
+    try {
+      return IntStream.range(1, offsets.length)
+              .filter(bookId -> offsets[bookId] != 0)
+              .toArray();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  //reads each book as the stream reaches it, books deleted meanwhile are skipped
+  private Stream<Book> streamBooks() {
+    return Arrays.stream(bookIds())
+            .mapToObj(this::read)
+            .filter(Objects::nonNull);
+  }
+
+  @Override
+  public Optional<Book> findById(Integer bookId) {
+    return Optional.ofNullable(read(bookId));
+  }
+
+  @Override
+  public boolean existsById(Integer bookId) {
+    lock.readLock().lock();
+    try {
+      return offsetOf(bookId) != 0;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public Optional<Book> findByIsbn(Long isbn) {
+    lock.readLock().lock();
+    try {
+      int offset = offsetOf(bookIdByIsbn.get(isbn));
+      return offset == 0 ? Optional.empty() : Optional.of(bookLog.read(offset));
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public Iterable<Book> findAll() {
+    return readAll(bookIds());
+  }
+
+  @Override
+  public Iterable<Book> findAll(Sort sort) {
+    List<Book> books = readAll(bookIds());
+    books.sort(comparator(sort));
+    return books;
+  }
+
+  @Override
+  public Page<Book> findAll(Pageable pageable) {
+    List<Book> books = readAll(bookIds());
+    if (pageable.isUnpaged()) {
+      return new PageImpl<>(books);
+    }
+    books.sort(comparator(pageable.getSort()));
+    int from = (int) Math.min(pageable.getOffset(), books.size());
+    int to = Math.min(from + pageable.getPageSize(), books.size());
+    return new PageImpl<>(new ArrayList<>(books.subList(from, to)), pageable, books.size());
+  }
+
+  @Override
+  public Iterable<Book> findAllById(Iterable<Integer> bookIds) {
+    Set<Integer> distinct = new LinkedHashSet<>();
+    bookIds.forEach(distinct::add);
+    return readAll(distinct.stream().mapToInt(Integer::intValue).toArray());
+  }
+
+  @Override
+  public long count() {
+    lock.readLock().lock();
+    try {
+      return bookCount;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public List<Long> findExistingIsbns(Collection<Long> isbns) {
+    lock.readLock().lock();
+    try {
+      return isbns.stream()
+              .distinct()
+              .filter(isbn -> bookIdByIsbn.get(isbn) != 0)
+              .collect(Collectors.toList());
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public Stream<Long> streamAllIsbns() {
+    return streamBooks().map(Book::getIsbn);
+  }
+
+  @Override
+  public Stream<BookResponse> streamAllBooks() {
+    return streamBooks().map(MappedBookRepository::toBookResponse);
+  }
+
+  @Override
+  public List<BookResponse> findAllBookResponses() {
+    return toBookResponses(readAll(bookIds()));
+  }
+
+  @Override
+  public List<BookResponse> findAllBooksFromAuthor(String bookAuthor) {
+    return toBookResponses(readAll(bookIdsFromAuthor(bookAuthor)));
+  }
+
+  private int[] bookIdsFromAuthor(String bookAuthor) {
+    lock.readLock().lock();
+    try {
+      SortedIntSet bookIds = bookIdsByAuthor.get(bookAuthor);
+      return bookIds == null ? new int[0] : bookIds.toArray();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public List<BookResponse> findAllBooksOrderByIsbn() {
+    List<Book> books = readAll(bookIds());
+    books.sort(Comparator.comparing(Book::getIsbn).reversed());
+    return toBookResponses(books);
+  }
+
+  @Override
+  public Stream<BookResponse> streamAllBooksOrderByIsbn() {
+    return findAllBooksOrderByIsbn().stream();
+  }
+
+  //the offset array is ordered by bookId, a page is a walk from the cursor
+  @Override
+  public List<BookResponse> findByBookIdGreaterThanOrderByBookIdAsc(Integer bookId, Pageable pageable) {
+    List<BookResponse> bookResponses = new ArrayList<>(pageable.getPageSize());
+    long skip = pageable.getOffset();
+    lock.readLock().lock();
+    try {
+      for (int next = Math.max(1, bookId + 1); next < offsets.length
+              && bookResponses.size() < pageable.getPageSize(); next++) {
+        if (offsets[next] != 0 && skip-- <= 0) {
+          bookResponses.add(toBookResponse(bookLog.read(offsets[next])));
+        }
+      }
+      return bookResponses;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public List<BookResponse> findAllBookResponsesByBookIdIn(Collection<Integer> bookIds) {
+    return toBookResponses(readAll(bookIds.stream().distinct().mapToInt(Integer::intValue).toArray()));
+  }
+
+  @Override
+  public List<BookResponse> findAllBookResponsesByIsbnIn(Collection<Long> isbns) {
+    lock.readLock().lock();
+    int[] bookIds;
+    try {
+      bookIds = isbns.stream()
+              .distinct()
+              .mapToInt(bookIdByIsbn::get)
+              .filter(bookId -> bookId != 0)
+              .toArray();
+    } finally {
+      lock.readLock().unlock();
+    }
+    return toBookResponses(readAll(bookIds));
+  }
+
+  @Override
+  public List<BookResponse> findAllBookResponsesByBookIdInOrIsbnIn(Collection<Integer> bookIds, Collection<Long> isbns) {
+    Map<Integer, BookResponse> bookResponses = new HashMap<>();
+    findAllBookResponsesByBookIdIn(bookIds).forEach(data -> bookResponses.put(data.getBookId(), data));
+    findAllBookResponsesByIsbnIn(isbns).forEach(data -> bookResponses.put(data.getBookId(), data));
+    return new ArrayList<>(bookResponses.values());
+  }
+
+  @Override
+  public Optional<LocalDateTime> findUpdatedDateByBookId(Integer bookId) {
+    lock.readLock().lock();
+    try {
+      int offset = offsetOf(bookId);
+      return offset == 0 ? Optional.empty() : Optional.of(bookLog.readUpdatedDate(offset));
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  //only this process writes the log, so counting its writes is enough
+  @Override
+  public String findChangeVersion() {
+    lock.readLock().lock();
+    try {
+      return openId + "." + Long.toHexString(writes);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  //the log keeps no history past compaction, so there is no change feed to number or read
+  @Override
+  public boolean supportsChangeFeed() {
+    return false;
+  }
+
+  @Override
+  public int sequenceChanges() {
+    return 0;
+  }
+
+  @Override
+  public List<BookChangeResponse> findChangesAfter(long seq, int limit) {
+    return List.of();
+  }
+
+  //--- maintenance
+
+  public void force() {
+    lock.readLock().lock();
+    try {
+      bookLog.force();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  void compactIfWorthIt() {
+    long liveBytes;
+    long garbageBytes;
+    lock.readLock().lock();
+    try {
+      garbageBytes = garbage;
+      liveBytes = bookLog.size() - BookLog.HEADER_SIZE - garbage;
+    } finally {
+      lock.readLock().unlock();
+    }
+    if (garbageBytes >= MIN_COMPACTION_GARBAGE && garbageBytes > liveBytes) {
+      compact();
+    }
+  }
+
+  //rewrites the live records in bookId order into a new file that then replaces the log; writers wait meanwhile
+  public void compact() {
+    long startTime = System.currentTimeMillis();
+    Path compactPath = path.resolveSibling(path.getFileName() + ".compact");
+    lock.writeLock().lock();
+    try {
+      int before = bookLog.size();
+      //a file left by a compaction that crashed is incomplete, never reuse it
+      Files.deleteIfExists(compactPath);
+      BookLog compacted = BookLog.open(compactPath, Math.max(initialSize, before - (int) garbage + BookLog.HEADER_SIZE));
+      int[] compactedOffsets = new int[offsets.length];
+      try {
+        for (int bookId = 1; bookId < offsets.length; bookId++) {
+          if (offsets[bookId] != 0) {
+            compactedOffsets[bookId] = compacted.copy(bookLog, offsets[bookId]);
+          }
+        }
+        compacted.setNextBookId(bookLog.nextBookId());
+        compacted.force();
+        BookLog.replace(compactPath, path);
+      } catch (IOException | RuntimeException e) {
+        compacted.close();
+        throw e;
+      }
+      bookLog.close();
+      bookLog = compacted;
+      offsets = compactedOffsets;
+      garbage = 0;
+      log.info("Book log compacted from {} to {} bytes in {} ms", before, bookLog.size(),
+              System.currentTimeMillis() - startTime);
+    } catch (IOException e) {
+      throw new DataAccessResourceFailureException("book log compaction failed", e);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  long garbage() {
+    lock.readLock().lock();
+    try {
+      return garbage;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    maintenance.shutdownNow();
+    lock.writeLock().lock();
+    try {
+      bookLog.force();
+      bookLog.close();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private static Comparator<Book> comparator(Sort sort) {
+    Comparator<Book> comparator = null;
+    for (Sort.Order order : sort) {
+      Comparator<Book> next = Comparator.comparing(property(order.getProperty()),
+              Comparator.nullsFirst(Comparator.naturalOrder()));
+      if (order.isDescending()) {
+        next = next.reversed();
+      }
+      comparator = comparator == null ? next : comparator.thenComparing(next);
+    }
+    Comparator<Book> byBookId = Comparator.comparing(Book::getBookId);
+    return comparator == null ? byBookId : comparator.thenComparing(byBookId);
+  }
+
+  private static Function<Book, Comparable<Object>> property(String property) {
+    Function<Book, ?> getter;
+    switch (property) {
+      case "bookId":
+        getter = Book::getBookId;
+        break;
+      case "isbn":
+        getter = Book::getIsbn;
+        break;
+      case "bookTitle":
+        getter = Book::getBookTitle;
+        break;
+      case "bookAuthor":
+        getter = Book::getBookAuthor;
+        break;
+      case "createdDate":
+        getter = Book::getCreatedDate;
+        break;
+      case "updatedDate":
+        getter = Book::getUpdatedDate;
+        break;
+      default:
+        throw new IllegalArgumentException("No property " + property + " found for type Book");
+    }
+    @SuppressWarnings("unchecked")
+    Function<Book, Comparable<Object>> comparable = book -> (Comparable<Object>) getter.apply(book);
+    return comparable;
+  }
+
+  private static List<BookResponse> toBookResponses(List<Book> books) {
+    return books.stream()
+            .map(MappedBookRepository::toBookResponse)
+            .collect(Collectors.toList());
+  }
+
+  private static BookResponse toBookResponse(Book book) {
+    return BookResponse.builder()
+            .bookId(book.getBookId())
+            .isbn(book.getIsbn())
+            .bookTitle(book.getBookTitle())
+            .bookAuthor(book.getBookAuthor())
+            .version(book.getVersion())
+            .build();
+  }
+}
@@ -0,0 +1,46 @@
+package com.book.management.embedded;
+
+import java.util.Arrays;
+
+/**
+ * Ascending int array with binary search, the bookIds of one author. New bookIds are the largest, so adds append.
+ * Not thread safe.
+ */
+final class SortedIntSet {
+
+  private int[] values = new int[4];
+  private int size;
+
+  boolean add(int value) {
+    int index = Arrays.binarySearch(values, 0, size, value);
+    if (index >= 0) {
+      return false;
+    }
+    index = -index - 1;
+    if (size == values.length) {
+      values = Arrays.copyOf(values, size * 2);
+    }
+    System.arraycopy(values, index, values, index + 1, size - index);
+    values[index] = value;
+    size++;
+    return true;
+  }
+
+  boolean remove(int value) {
+    int index = Arrays.binarySearch(values, 0, size, value);
+    if (index < 0) {
+      return false;
+    }
+    System.arraycopy(values, index + 1, values, index, size - index - 1);
+    size--;
+    return true;
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  int[] toArray() {
+    return Arrays.copyOf(values, size);
+  }
+}
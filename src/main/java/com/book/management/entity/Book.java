@@ -17,8 +17,6 @@ import java.time.LocalDateTime;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-@NamedQuery(name = "Book.findAllBooksFromAuthor",
-        query = "select b from Book b where b.bookAuthor = ?1")
 public class Book {
 
   @CreationTimestamp
@@ -27,8 +25,10 @@ public class Book {
   @UpdateTimestamp
   private LocalDateTime updatedDate;
 
+  //pooled sequence: hibernate reserves 50 ids per round-trip, which also keeps jdbc insert batching enabled
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "book_id_generator")
+  @SequenceGenerator(name = "book_id_generator", sequenceName = "book_book_id_seq", allocationSize = 50)
   @Column
   private Integer bookId;
 
@@ -41,4 +41,9 @@ public class Book {
   @Column
   private String bookAuthor;
 
+  //bumped by every update, conditional writes compare it to reject a stale client copy
+  @Version
+  @Column
+  private Integer version;
+
 }
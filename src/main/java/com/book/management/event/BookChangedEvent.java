@@ -0,0 +1,17 @@
+package com.book.management.event;
+
+import com.book.management.dto.response.BookResponse;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class BookChangedEvent {
+
+  public enum Type { ADDED, UPDATED, DELETED }
+
+  private Type type;
+  private Integer bookId;
+  //state after the change, null when the book was deleted
+  private BookResponse book;
+}
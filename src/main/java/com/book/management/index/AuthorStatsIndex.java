@@ -0,0 +1,296 @@
+package com.book.management.index;
+
+import com.book.management.datasource.ReplicaRoutingContext;
+import com.book.management.dto.response.AuthorCountResponse;
+import com.book.management.dto.response.BookResponse;
+import com.book.management.event.BookChangedEvent;
+import com.book.management.repository.BookRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Books per author kept up to date from book change events, so totals, one author's count and the top authors are
+ * answered without scanning the book table. The author of every bookId is kept to move a book between authors on
+ * update; authors are also held in count order, which makes the top k a walk over the first k.
+ * A full recount every reconcile interval replaces the counts and fixes drift from writes that publish no event.
+ */
+@Slf4j
+@Component
+public class AuthorStatsIndex implements MeterBinder, AutoCloseable {
+
+  //most books first, ties by author name so the order is stable
+  private static final Comparator<AuthorCount> BY_COUNT =
+          Comparator.comparingInt((AuthorCount authorCount) -> -authorCount.count)
+                  .thenComparing(authorCount -> authorCount.bookAuthor);
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final ScheduledExecutorService reconciler;
+
+  //guarded by lock
+  private Map<Integer, String> authorByBookId = new HashMap<>();
+  private Map<String, AuthorCount> countByAuthor = new HashMap<>();
+  private TreeSet<AuthorCount> authorsByCount = new TreeSet<>(BY_COUNT);
+
+  //bookIds changed by events while a recount runs, the recount must not overwrite them
+  private final Set<Integer> changedDuringRebuild = ConcurrentHashMap.newKeySet();
+  private volatile boolean rebuilding;
+
+  private volatile Counter corrections;
+
+  @Autowired
+  private BookRepository bookRepository;
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  public AuthorStatsIndex(@Value("${book.author-stats.reconcile-interval:10m}") Duration reconcileInterval) {
+    this.reconciler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "author-stats");
+      thread.setDaemon(true);
+      return thread;
+    });
+    if (!reconcileInterval.isZero()) {
+      reconciler.scheduleWithFixedDelay(this::reconcile,
+              reconcileInterval.toMillis(), reconcileInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+  }
+
+  public long totalBooks() {
+    lock.readLock().lock();
+    try {
+      return authorByBookId.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public int distinctAuthors() {
+    lock.readLock().lock();
+    try {
+      return countByAuthor.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public int bookCount(String bookAuthor) {
+    lock.readLock().lock();
+    try {
+      AuthorCount authorCount = countByAuthor.get(bookAuthor);
+      return authorCount == null ? 0 : authorCount.count;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public List<AuthorCountResponse> topAuthors(int limit) {
+    List<AuthorCountResponse> topAuthors = new ArrayList<>(Math.min(limit, 16));
+    lock.readLock().lock();
+    try {
+      Iterator<AuthorCount> authorCounts = authorsByCount.iterator();
+      while (topAuthors.size() < limit && authorCounts.hasNext()) {
+        AuthorCount authorCount = authorCounts.next();
+        topAuthors.add(AuthorCountResponse.builder()
+                .bookAuthor(authorCount.bookAuthor)
+                .bookCount(authorCount.count)
+                .build());
+      }
+      return topAuthors;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public void index(BookResponse book) {
+    if (rebuilding) {
+      changedDuringRebuild.add(book.getBookId());
+    }
+    lock.writeLock().lock();
+    try {
+      String previous = authorByBookId.put(book.getBookId(), book.getBookAuthor());
+      if (!book.getBookAuthor().equals(previous)) {
+        adjust(previous, -1);
+        adjust(book.getBookAuthor(), 1);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public void remove(Integer bookId) {
+    if (rebuilding) {
+      changedDuringRebuild.add(bookId);
+    }
+    lock.writeLock().lock();
+    try {
+      adjust(authorByBookId.remove(bookId), -1);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  //the count is taken out of the ordered set while it changes, an author without books is dropped
+  private void adjust(String bookAuthor, int delta) {
+    if (bookAuthor == null) {
+      return;
+    }
+    AuthorCount authorCount = countByAuthor.get(bookAuthor);
+    if (authorCount == null) {
+      authorCount = new AuthorCount(bookAuthor);
+      countByAuthor.put(bookAuthor, authorCount);
+    } else {
+      authorsByCount.remove(authorCount);
+    }
+    authorCount.count += delta;
+    if (authorCount.count > 0) {
+      authorsByCount.add(authorCount);
+    } else {
+      countByAuthor.remove(bookAuthor);
+    }
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onBookChanged(BookChangedEvent event) {
+    if (event.getType() == BookChangedEvent.Type.DELETED) {
+      remove(event.getBookId());
+    } else {
+      index(event.getBook());
+    }
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void rebuild() {
+    reconcile();
+  }
+
+  //recounts from the book table on the primary off the lock, then swaps the result in; books changed meanwhile keep
+  //the state their event left, which is at least as new as what the scan saw
+  void reconcile() {
+    long startTime = System.currentTimeMillis();
+    Map<Integer, String> scanned = new HashMap<>();
+    rebuilding = true;
+    try {
+      ReplicaRoutingContext.callOnPrimary(() -> {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        return transactionTemplate.execute(status -> {
+          try (Stream<BookResponse> bookResponses = bookRepository.streamAllBooks()) {
+            bookResponses.forEach(data -> scanned.put(data.getBookId(), data.getBookAuthor()));
+          }
+          return null;
+        });
+      });
+      Map<String, AuthorCount> scannedCounts = new HashMap<>();
+      scanned.values().forEach(bookAuthor ->
+              scannedCounts.computeIfAbsent(bookAuthor, AuthorCount::new).count++);
+
+      lock.writeLock().lock();
+      try {
+        for (Integer bookId : changedDuringRebuild) {
+          String scannedAuthor = scanned.remove(bookId);
+          if (scannedAuthor != null) {
+            decrement(scannedCounts, scannedAuthor);
+          }
+          String bookAuthor = authorByBookId.get(bookId);
+          if (bookAuthor != null) {
+            scanned.put(bookId, bookAuthor);
+            scannedCounts.computeIfAbsent(bookAuthor, AuthorCount::new).count++;
+          }
+        }
+        int corrected = corrected(scannedCounts);
+        authorByBookId = scanned;
+        countByAuthor = scannedCounts;
+        authorsByCount = new TreeSet<>(BY_COUNT);
+        authorsByCount.addAll(scannedCounts.values());
+        if (corrected > 0 && corrections != null) {
+          corrections.increment(corrected);
+        }
+        log.info("Author stats of {} book and {} author reconciled in {} ms, {} author count corrected",
+                scanned.size(), scannedCounts.size(), System.currentTimeMillis() - startTime, corrected);
+      } finally {
+        lock.writeLock().unlock();
+      }
+    } catch (RuntimeException e) {
+      log.warn("Author stats reconciliation failed, keeping the incremental counts", e);
+    } finally {
+      rebuilding = false;
+      changedDuringRebuild.clear();
+    }
+  }
+
+  private static void decrement(Map<String, AuthorCount> counts, String bookAuthor) {
+    AuthorCount authorCount = counts.get(bookAuthor);
+    if (--authorCount.count == 0) {
+      counts.remove(bookAuthor);
+    }
+  }
+
+  //authors whose recounted number differs from the incremental one, including authors only one side has
+  private int corrected(Map<String, AuthorCount> recounted) {
+    int corrected = 0;
+    for (AuthorCount authorCount : recounted.values()) {
+      AuthorCount current = countByAuthor.get(authorCount.bookAuthor);
+      if (current == null || current.count != authorCount.count) {
+        corrected++;
+      }
+    }
+    for (String bookAuthor : countByAuthor.keySet()) {
+      if (!recounted.containsKey(bookAuthor)) {
+        corrected++;
+      }
+    }
+    return corrected;
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    corrections = Counter.builder("book.author.stats.corrections")
+            .description("author counts the periodic recount found different from the incremental ones")
+            .register(registry);
+    Gauge.builder("book.author.stats.authors", this, AuthorStatsIndex::distinctAuthors)
+            .description("distinct authors in the catalogue")
+            .register(registry);
+  }
+
+  @Override
+  public void close() {
+    reconciler.shutdownNow();
+  }
+
+  static final class AuthorCount {
+    private final String bookAuthor;
+    private int count;
+
+    AuthorCount(String bookAuthor) {
+      this.bookAuthor = bookAuthor;
+    }
+  }
+}
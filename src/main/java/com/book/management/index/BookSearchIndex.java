@@ -0,0 +1,320 @@
+package com.book.management.index;
+
+import com.book.management.dto.response.BookResponse;
+import com.book.management.event.BookChangedEvent;
+import com.book.management.repository.BookRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * In-process inverted index over book title and author words, ranked with BM25.
+ * Every indexed version of a book gets a new dense ordinal; replaced or deleted ordinals are
+ * only marked dead and the postings are compacted once dead ordinals outnumber live ones.
+ */
+@Slf4j
+@Component
+public class BookSearchIndex {
+
+  private static final float K1 = 1.2f;
+  private static final float B = 0.75f;
+  private static final int MIN_COMPACTION_DEAD_DOCS = 1024;
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  private final Map<String, PostingList> postings = new HashMap<>();
+  private final Map<Integer, Integer> ordinalByBookId = new HashMap<>();
+  private final Map<Integer, BookResponse> books = new HashMap<>();
+  private BookResponse[] docs = new BookResponse[1024];
+  private int[] docLengths = new int[1024];
+  private final BitSet liveDocs = new BitSet();
+  private int docCount;
+  private long totalLiveLength;
+
+  //bookIds changed by events while the startup scan runs, the scan must not overwrite them
+  private final Set<Integer> changedDuringRebuild = ConcurrentHashMap.newKeySet();
+  private volatile boolean rebuilding;
+
+  @Autowired
+  private BookRepository bookRepository;
+
+  public List<BookResponse> search(String query, int limit) {
+    List<String> terms = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+    lock.readLock().lock();
+    try {
+      int liveCount = books.size();
+      if (terms.isEmpty() || liveCount == 0) {
+        return Collections.emptyList();
+      }
+      float averageLength = (float) totalLiveLength / liveCount;
+      float[] scores = new float[docCount];
+      int[] matched = new int[16];
+      int matchedCount = 0;
+
+      for (String term : terms) {
+        PostingList postingList = postings.get(term);
+        if (postingList == null) {
+          continue;
+        }
+        int documentFrequency = Math.min(postingList.size, liveCount);
+        float idf = (float) Math.log(1 + (liveCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+        for (int i = 0; i < postingList.size; i++) {
+          int ordinal = postingList.ordinals[i];
+          if (!liveDocs.get(ordinal)) {
+            continue;
+          }
+          int termFrequency = postingList.frequencies[i];
+          float norm = K1 * (1 - B + B * docLengths[ordinal] / averageLength);
+          if (scores[ordinal] == 0) {
+            if (matchedCount == matched.length) {
+              matched = Arrays.copyOf(matched, matchedCount * 2);
+            }
+            matched[matchedCount++] = ordinal;
+          }
+          scores[ordinal] += idf * termFrequency * (K1 + 1) / (termFrequency + norm);
+        }
+      }
+
+      //top-k with a primitive min-heap of ordinals: the root is the weakest hit kept so far
+      int[] heap = new int[Math.min(limit, matchedCount)];
+      int heapSize = 0;
+      for (int i = 0; i < matchedCount; i++) {
+        int ordinal = matched[i];
+        if (heapSize < heap.length) {
+          heap[heapSize] = ordinal;
+          siftUp(heap, heapSize++, scores);
+        } else if (compareHits(scores, ordinal, heap[0]) > 0) {
+          heap[0] = ordinal;
+          siftDown(heap, heapSize, scores);
+        }
+      }
+      BookResponse[] result = new BookResponse[heapSize];
+      while (heapSize > 0) {
+        result[heapSize - 1] = docs[heap[0]];
+        heap[0] = heap[--heapSize];
+        siftDown(heap, heapSize, scores);
+      }
+      return Arrays.asList(result);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public void index(BookResponse book) {
+    if (rebuilding) {
+      changedDuringRebuild.add(book.getBookId());
+    }
+    indexInternal(book);
+  }
+
+  public void remove(Integer bookId) {
+    if (rebuilding) {
+      changedDuringRebuild.add(bookId);
+    }
+    lock.writeLock().lock();
+    try {
+      removeOrdinal(bookId);
+      books.remove(bookId);
+      compactIfNeeded();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return books.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Transactional(readOnly = true)
+  @EventListener(ApplicationReadyEvent.class)
+  public void rebuild() {
+    long startTime = System.currentTimeMillis();
+    rebuilding = true;
+    try (Stream<BookResponse> bookResponses = bookRepository.streamAllBooks()) {
+      bookResponses.forEach(data -> {
+        if (!changedDuringRebuild.contains(data.getBookId())) {
+          indexInternal(data);
+        }
+      });
+    } finally {
+      rebuilding = false;
+      changedDuringRebuild.clear();
+    }
+    log.info("Search index built with {} book and {} term in {} ms", size(), postings.size(),
+            System.currentTimeMillis() - startTime);
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onBookChanged(BookChangedEvent event) {
+    if (event.getType() == BookChangedEvent.Type.DELETED) {
+      remove(event.getBookId());
+    } else {
+      index(event.getBook());
+    }
+  }
+
+  static List<String> tokenize(String text) {
+    List<String> tokens = new ArrayList<>();
+    if (text == null) {
+      return tokens;
+    }
+    int start = -1;
+    for (int i = 0; i <= text.length(); i++) {
+      boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+      if (wordChar && start < 0) {
+        start = i;
+      } else if (!wordChar && start >= 0) {
+        tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+        start = -1;
+      }
+    }
+    return tokens;
+  }
+
+  private void indexInternal(BookResponse book) {
+    List<String> tokens = tokenize(book.getBookTitle());
+    tokens.addAll(tokenize(book.getBookAuthor()));
+    Map<String, Integer> termFrequencies = new HashMap<>();
+    tokens.forEach(token -> termFrequencies.merge(token, 1, Integer::sum));
+
+    lock.writeLock().lock();
+    try {
+      removeOrdinal(book.getBookId());
+      int ordinal = addDoc(book, tokens.size());
+      termFrequencies.forEach((term, frequency) ->
+              postings.computeIfAbsent(term, key -> new PostingList()).add(ordinal, frequency));
+      books.put(book.getBookId(), book);
+      compactIfNeeded();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private int addDoc(BookResponse book, int length) {
+    if (docCount == docs.length) {
+      docs = Arrays.copyOf(docs, docCount * 2);
+      docLengths = Arrays.copyOf(docLengths, docCount * 2);
+    }
+    int ordinal = docCount++;
+    docs[ordinal] = book;
+    docLengths[ordinal] = length;
+    liveDocs.set(ordinal);
+    ordinalByBookId.put(book.getBookId(), ordinal);
+    totalLiveLength += length;
+    return ordinal;
+  }
+
+  private void removeOrdinal(Integer bookId) {
+    Integer ordinal = ordinalByBookId.remove(bookId);
+    if (ordinal != null) {
+      liveDocs.clear(ordinal);
+      docs[ordinal] = null;
+      totalLiveLength -= docLengths[ordinal];
+    }
+  }
+
+  private void compactIfNeeded() {
+    int deadDocs = docCount - books.size();
+    if (deadDocs < MIN_COMPACTION_DEAD_DOCS || deadDocs < books.size()) {
+      return;
+    }
+    long startTime = System.currentTimeMillis();
+    List<BookResponse> liveBooks = new ArrayList<>(books.values());
+    postings.clear();
+    ordinalByBookId.clear();
+    books.clear();
+    liveDocs.clear();
+    docs = new BookResponse[Math.max(1024, liveBooks.size() * 2)];
+    docLengths = new int[docs.length];
+    docCount = 0;
+    totalLiveLength = 0;
+    liveBooks.forEach(this::indexInternal);
+    log.info("Search index compacted {} dead entries in {} ms", deadDocs, System.currentTimeMillis() - startTime);
+  }
+
+  //higher score wins, ties go to the lower bookId so results are stable
+  private int compareHits(float[] scores, int left, int right) {
+    int byScore = Float.compare(scores[left], scores[right]);
+    if (byScore != 0) {
+      return byScore;
+    }
+    return Integer.compare(docs[right].getBookId(), docs[left].getBookId());
+  }
+
+  private void siftUp(int[] heap, int index, float[] scores) {
+    while (index > 0) {
+      int parent = (index - 1) >>> 1;
+      if (compareHits(scores, heap[index], heap[parent]) >= 0) {
+        return;
+      }
+      swap(heap, index, parent);
+      index = parent;
+    }
+  }
+
+  private void siftDown(int[] heap, int size, float[] scores) {
+    int index = 0;
+    while (true) {
+      int smallest = index;
+      int left = 2 * index + 1;
+      int right = left + 1;
+      if (left < size && compareHits(scores, heap[left], heap[smallest]) < 0) {
+        smallest = left;
+      }
+      if (right < size && compareHits(scores, heap[right], heap[smallest]) < 0) {
+        smallest = right;
+      }
+      if (smallest == index) {
+        return;
+      }
+      swap(heap, index, smallest);
+      index = smallest;
+    }
+  }
+
+  private static void swap(int[] heap, int left, int right) {
+    int value = heap[left];
+    heap[left] = heap[right];
+    heap[right] = value;
+  }
+
+  static final class PostingList {
+    int[] ordinals = new int[4];
+    int[] frequencies = new int[4];
+    int size;
+
+    void add(int ordinal, int frequency) {
+      if (size == ordinals.length) {
+        ordinals = Arrays.copyOf(ordinals, size * 2);
+        frequencies = Arrays.copyOf(frequencies, size * 2);
+      }
+      ordinals[size] = ordinal;
+      frequencies[size] = frequency;
+      size++;
+    }
+  }
+}
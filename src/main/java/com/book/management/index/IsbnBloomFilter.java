@@ -0,0 +1,125 @@
+package com.book.management.index;
+
+import com.book.management.event.BookChangedEvent;
+import com.book.management.repository.BookRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Bloom filter of every stored isbn. A negative answer is exact, so addBook can skip the
+ * duplicate check for clearly new isbns; the unique index on book.isbn stays the source of truth.
+ */
+@Slf4j
+@Component
+public class IsbnBloomFilter implements MeterBinder {
+
+  private final long numBits;
+  private final int numHashes;
+  private final AtomicLongArray bits;
+  private final LongAdder insertions = new LongAdder();
+  private final LongAdder observedFalsePositives = new LongAdder();
+
+  @Autowired
+  private BookRepository bookRepository;
+
+  public IsbnBloomFilter(@Value("${book.isbn-filter.expected-insertions:1000000}") long expectedInsertions,
+                         @Value("${book.isbn-filter.false-positive-probability:0.01}") double falsePositiveProbability) {
+    long optimalBits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveProbability)
+            / (Math.log(2) * Math.log(2)));
+    int words = (int) Math.max(1, (optimalBits + 63) / 64);
+    this.numBits = words * 64L;
+    this.numHashes = Math.max(1, (int) Math.round((double) numBits / expectedInsertions * Math.log(2)));
+    this.bits = new AtomicLongArray(words);
+  }
+
+  public boolean mightContain(Long isbn) {
+    if (isbn == null) {
+      return false;
+    }
+    long hash1 = mix(isbn);
+    long hash2 = mix(hash1);
+    for (int i = 0; i < numHashes; i++) {
+      long index = Math.floorMod(hash1 + i * hash2, numBits);
+      if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public void put(Long isbn) {
+    if (isbn == null) {
+      return;
+    }
+    long hash1 = mix(isbn);
+    long hash2 = mix(hash1);
+    for (int i = 0; i < numHashes; i++) {
+      long index = Math.floorMod(hash1 + i * hash2, numBits);
+      long mask = 1L << index;
+      bits.getAndAccumulate((int) (index >>> 6), mask, (word, bit) -> word | bit);
+    }
+    insertions.increment();
+  }
+
+  //called when the filter said "maybe" but the isbn turned out to be new
+  public void recordFalsePositive() {
+    observedFalsePositives.increment();
+  }
+
+  //(1 - e^(-kn/m))^k for the number of isbn put so far
+  public double expectedFalsePositiveRate() {
+    double fill = -(double) numHashes * insertions.sum() / numBits;
+    return Math.pow(1 - Math.exp(fill), numHashes);
+  }
+
+  @Transactional(readOnly = true)
+  @EventListener(ApplicationReadyEvent.class)
+  public void rebuild() {
+    long startTime = System.currentTimeMillis();
+    try (Stream<Long> isbns = bookRepository.streamAllIsbns()) {
+      isbns.forEach(this::put);
+    }
+    log.info("Isbn bloom filter built with {} isbn in {} ms", insertions.sum(),
+            System.currentTimeMillis() - startTime);
+  }
+
+  @EventListener
+  public void onBookChanged(BookChangedEvent event) {
+    if (event.getBook() != null) {
+      put(event.getBook().getIsbn());
+    }
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Gauge.builder("book.isbn.filter.false.positive.rate", this, IsbnBloomFilter::expectedFalsePositiveRate)
+            .description("Expected false positive rate of the isbn bloom filter")
+            .register(registry);
+    Gauge.builder("book.isbn.filter.insertions", insertions, LongAdder::sum)
+            .register(registry);
+    FunctionCounter.builder("book.isbn.filter.false.positives", observedFalsePositives, LongAdder::sum)
+            .description("Isbn reported as possibly present that were inserted as new")
+            .register(registry);
+  }
+
+  //splitmix64 finalizer, spreads sequential isbn over the whole bit array
+  private static long mix(long value) {
+    long z = value + 0x9E3779B97F4A7C15L;
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+}
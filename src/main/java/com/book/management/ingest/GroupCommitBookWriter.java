@@ -0,0 +1,284 @@
+package com.book.management.ingest;
+
+import com.book.management.dto.request.AddBookRequest;
+import com.book.management.dto.response.BookResponse;
+import com.book.management.event.BookChangedEvent;
+import com.book.management.index.IsbnBloomFilter;
+import com.book.management.limit.ConcurrencyLimitContext;
+import com.book.management.repository.BookInserts;
+import com.book.management.repository.BookRepository;
+import com.book.management.repository.IsbnConstraint;
+import com.book.management.timing.ServerTiming;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Group commit for single book adds: callers queue their book and wait while one flusher thread inserts everything
+ * queued within the linger, up to the batch size, in one jdbc batch and one transaction, so a burst of adds shares
+ * a single commit (and WAL flush) instead of paying one each. A caller returns once its row is committed; the
+ * flusher publishes the add's BookChangedEvent after the commit, whether or not the caller is still waiting.
+ * Batch sizes, queue depth and the time callers spend waiting are published as book.group.commit.* metrics.
+ */
+@Slf4j
+@Component
+public class GroupCommitBookWriter implements MeterBinder, AutoCloseable {
+
+  //what add does when the queue is full: wait up to queue-full-timeout for room, or fail at once; both end in 503
+  public enum QueueFullPolicy { WAIT, REJECT }
+
+  private final boolean enabled;
+  private final int batchSize;
+  private final Duration maxLinger;
+  private final QueueFullPolicy queueFullPolicy;
+  private final Duration queueFullTimeout;
+  private final Duration commitTimeout;
+  private final BlockingQueue<PendingAdd> queue;
+  //the flusher thread is only started by the first add
+  private final AtomicBoolean started = new AtomicBoolean();
+  private volatile Thread flusher;
+  private volatile boolean closed;
+
+  private volatile DistributionSummary batchSizes;
+  private volatile Timer waitTimer;
+  private volatile Counter rejected;
+
+  @Autowired
+  private BookRepository bookRepository;
+
+  @Autowired
+  private IsbnBloomFilter isbnBloomFilter;
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  @Autowired
+  private ApplicationEventPublisher applicationEventPublisher;
+
+  public GroupCommitBookWriter(@Value("${book.group-commit.enabled:false}") boolean enabled,
+                               @Value("${book.group-commit.batch-size:200}") int batchSize,
+                               @Value("${book.group-commit.max-linger:5ms}") Duration maxLinger,
+                               @Value("${book.group-commit.queue-capacity:10000}") int queueCapacity,
+                               @Value("${book.group-commit.queue-full:wait}") QueueFullPolicy queueFullPolicy,
+                               @Value("${book.group-commit.queue-full-timeout:1s}") Duration queueFullTimeout,
+                               @Value("${book.group-commit.commit-timeout:30s}") Duration commitTimeout) {
+    this.enabled = enabled;
+    this.batchSize = batchSize;
+    this.maxLinger = maxLinger;
+    this.queueFullPolicy = queueFullPolicy;
+    this.queueFullTimeout = queueFullTimeout;
+    this.commitTimeout = commitTimeout;
+    this.queue = new ArrayBlockingQueue<>(queueCapacity);
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  //blocks until the book is committed, at most the commit timeout; empty when its isbn already exists
+  public Optional<BookResponse> add(AddBookRequest addBookRequest) {
+    if (!started.get() && started.compareAndSet(false, true)) {
+      Thread thread = new Thread(this::run, "book-group-commit");
+      thread.setDaemon(true);
+      flusher = thread;
+      thread.start();
+    }
+    PendingAdd pendingAdd = new PendingAdd(addBookRequest);
+    if (!offer(pendingAdd)) {
+      if (rejected != null) {
+        rejected.increment();
+      }
+      throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "book write queue is full");
+    }
+    try {
+      return pendingAdd.result.get(commitTimeout.toNanos(), TimeUnit.NANOSECONDS);
+    } catch (TimeoutException e) {
+      //the flusher may still commit the book afterwards, the caller only learns it did not see the commit in time
+      throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "timed out waiting for the book write");
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "interrupted waiting for the book write");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    } finally {
+      //the wait stands in for the insert and commit this request no longer runs itself
+      ServerTiming.record(ServerTiming.Stage.DB, System.nanoTime() - pendingAdd.enqueuedAt);
+      ConcurrencyLimitContext.markDatabaseCall();
+    }
+  }
+
+  private boolean offer(PendingAdd pendingAdd) {
+    if (closed) {
+      return false;
+    }
+    if (queueFullPolicy == QueueFullPolicy.REJECT) {
+      return queue.offer(pendingAdd);
+    }
+    try {
+      return queue.offer(pendingAdd, queueFullTimeout.toNanos(), TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  private void run() {
+    List<PendingAdd> batch = new ArrayList<>(batchSize);
+    while (!closed) {
+      try {
+        PendingAdd first = queue.poll(1, TimeUnit.SECONDS);
+        if (first == null) {
+          continue;
+        }
+        batch.add(first);
+        //linger counts from the oldest queued add, a full batch goes out at once
+        long deadline = first.enqueuedAt + maxLinger.toNanos();
+        queue.drainTo(batch, batchSize - batch.size());
+        while (batch.size() < batchSize) {
+          PendingAdd next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+          if (next == null) {
+            break;
+          }
+          batch.add(next);
+          queue.drainTo(batch, batchSize - batch.size());
+        }
+      } catch (InterruptedException e) {
+        break;
+      }
+      //a failed batch fails its adds, never the flusher: it is the only one and is not restarted
+      try {
+        flush(batch);
+      } catch (RuntimeException e) {
+        log.warn("Group commit of {} book failed", batch.size(), e);
+        batch.forEach(pendingAdd -> pendingAdd.result.completeExceptionally(e));
+      }
+      batch.clear();
+    }
+    //adds still queued at shutdown are failed rather than left waiting
+    batch.addAll(queue);
+    queue.clear();
+    batch.forEach(pendingAdd -> pendingAdd.result.completeExceptionally(
+            new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "book writer is shut down")));
+  }
+
+  private void flush(List<PendingAdd> batch) {
+    if (batchSizes != null) {
+      batchSizes.record(batch.size());
+    }
+    List<Optional<BookResponse>> results;
+    try {
+      results = new TransactionTemplate(transactionManager).execute(status -> insertAll(batch));
+    } catch (DataIntegrityViolationException e) {
+      if (!IsbnConstraint.isViolatedBy(e)) {
+        failAll(batch, e);
+        return;
+      }
+      //an isbn committed by another writer since the lookup, retry one by one so only that add sees the duplicate;
+      //an add whose own retry fails is failed on its own and skipped by complete below
+      log.info("Group commit of {} book hit a concurrent duplicate, retrying one by one", batch.size());
+      results = new ArrayList<>(batch.size());
+      for (PendingAdd pendingAdd : batch) {
+        try {
+          results.add(BookInserts.insertIfAbsent(bookRepository, pendingAdd.addBookRequest));
+        } catch (RuntimeException retryFailure) {
+          log.warn("Group commit retry of isbn {} failed", pendingAdd.addBookRequest.getIsbn(), retryFailure);
+          pendingAdd.result.completeExceptionally(retryFailure);
+          results.add(Optional.empty());
+        }
+      }
+    } catch (RuntimeException e) {
+      failAll(batch, e);
+      return;
+    }
+    long now = System.nanoTime();
+    for (int i = 0; i < batch.size(); i++) {
+      PendingAdd pendingAdd = batch.get(i);
+      if (waitTimer != null) {
+        waitTimer.record(now - pendingAdd.enqueuedAt, TimeUnit.NANOSECONDS);
+      }
+      //published here once committed rather than by the caller, which may have given up waiting with 503
+      results.get(i).ifPresent(bookResponse -> applicationEventPublisher.publishEvent(BookChangedEvent.builder()
+              .type(BookChangedEvent.Type.ADDED)
+              .bookId(bookResponse.getBookId())
+              .book(bookResponse)
+              .build()));
+      pendingAdd.result.complete(results.get(i));
+    }
+  }
+
+  private void failAll(List<PendingAdd> batch, RuntimeException e) {
+    log.warn("Group commit of {} book failed", batch.size(), e);
+    batch.forEach(pendingAdd -> pendingAdd.result.completeExceptionally(e));
+  }
+
+  private List<Optional<BookResponse>> insertAll(List<PendingAdd> batch) {
+    List<AddBookRequest> addBookRequests = new ArrayList<>(batch.size());
+    batch.forEach(pendingAdd -> addBookRequests.add(pendingAdd.addBookRequest));
+    return BookInserts.insertAll(bookRepository, isbnBloomFilter, addBookRequests);
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    batchSizes = DistributionSummary.builder("book.group.commit.batch.size")
+            .description("book added per commit by the group commit flusher")
+            .publishPercentileHistogram()
+            .register(registry);
+    waitTimer = Timer.builder("book.group.commit.wait")
+            .description("time from queueing an add until its batch is committed")
+            .publishPercentileHistogram()
+            .register(registry);
+    rejected = Counter.builder("book.group.commit.rejected")
+            .description("adds refused because the queue stayed full")
+            .register(registry);
+    Gauge.builder("book.group.commit.queue", queue, BlockingQueue::size)
+            .description("adds waiting for the next batch")
+            .register(registry);
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    Thread thread = flusher;
+    if (thread != null) {
+      thread.interrupt();
+    }
+  }
+
+  static final class PendingAdd {
+    private final AddBookRequest addBookRequest;
+    private final long enqueuedAt = System.nanoTime();
+    private final CompletableFuture<Optional<BookResponse>> result = new CompletableFuture<>();
+
+    PendingAdd(AddBookRequest addBookRequest) {
+      this.addBookRequest = addBookRequest;
+    }
+  }
+}
@@ -0,0 +1,104 @@
+package com.book.management.limit;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * AIMD concurrency limit driven by latency. Each operation keeps a long-run average latency over about
+ * BASELINE_WINDOW samples and a recent one over about RECENT_WINDOW. A request finishing while the recent average is
+ * within latencyTolerance times the long-run one and the limit is at least half used raises the limit by about one
+ * per round trip; a recent average past it, or a failed request, cuts it by backoffRatio, at most once per round trip.
+ * Averages rather than the lowest latency seen, so the usual tail of a route does not read as congestion while a
+ * sustained slowdown shows within a few requests. Operations keep separate averages so a fast lookup does not make
+ * every list look like a drop. Requests over the limit are refused instead of queued.
+ */
+public class AdaptiveConcurrencyLimit {
+
+  static final int BASELINE_WINDOW = 500;
+  static final int RECENT_WINDOW = 10;
+
+  private final int minLimit;
+  private final int maxLimit;
+  private final double latencyTolerance;
+  private final double backoffRatio;
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private volatile int currentLimit;
+
+  //guarded by this
+  private double limit;
+  private final Map<String, Baseline> baselines = new HashMap<>();
+  private long lastDecrease = Long.MIN_VALUE;
+
+  public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit,
+                                  double latencyTolerance, double backoffRatio) {
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.latencyTolerance = latencyTolerance;
+    this.backoffRatio = backoffRatio;
+    this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    this.currentLimit = (int) limit;
+  }
+
+  public boolean tryAcquire() {
+    while (true) {
+      int current = inFlight.get();
+      if (current >= currentLimit) {
+        return false;
+      }
+      if (inFlight.compareAndSet(current, current + 1)) {
+        return true;
+      }
+    }
+  }
+
+  //startTime and rtt in System.nanoTime units of a request let in by tryAcquire; operation names the baseline the rtt
+  //is compared with, null when the request is no latency sample and only a failure moves the limit
+  public void release(String operation, long startTime, long rtt, boolean failed) {
+    int inFlightBefore = inFlight.getAndDecrement();
+    if (operation == null && !failed) {
+      return;
+    }
+    synchronized (this) {
+      boolean slow = false;
+      if (operation != null) {
+        slow = baselines.computeIfAbsent(operation, key -> new Baseline()).update(rtt, latencyTolerance);
+      }
+      if (failed || slow) {
+        //only requests started after the last cut may cut again, they are the ones that saw the lower limit
+        if (startTime > lastDecrease) {
+          limit = Math.max(minLimit, limit * backoffRatio);
+          lastDecrease = System.nanoTime();
+        }
+      } else if (inFlightBefore * 2 >= limit) {
+        limit = Math.min(maxLimit, limit + 1 / limit);
+      }
+      currentLimit = (int) limit;
+    }
+  }
+
+  public int getLimit() {
+    return currentLimit;
+  }
+
+  public int getInFlight() {
+    return inFlight.get();
+  }
+
+  //long-run and recent average rtt of one operation: plain means until their window is full, then exponentially
+  //weighted over it, so a first sample slower than usual is not the baseline for long
+  static final class Baseline {
+    private double longRtt;
+    private double recentRtt;
+    private long samples;
+
+    //whether the recent average, this sample included, is over tolerance times the long-run one before it
+    boolean update(long sample, double tolerance) {
+      samples++;
+      recentRtt += (sample - recentRtt) / Math.min(samples, RECENT_WINDOW);
+      boolean slow = samples > 1 && recentRtt > longRtt * tolerance;
+      longRtt += (sample - longRtt) / Math.min(samples, BASELINE_WINDOW);
+      return slow;
+    }
+  }
+}
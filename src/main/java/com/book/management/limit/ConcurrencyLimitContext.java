@@ -0,0 +1,38 @@
+package com.book.management.limit;
+
+/**
+ * Per-thread note of whether the limited request reached the database. Only such requests are latency samples for
+ * {@link AdaptiveConcurrencyLimit}: a cache hit or a pre-encoded snapshot answers in microseconds whatever the
+ * database load and would only drag the baseline down.
+ */
+public final class ConcurrencyLimitContext {
+
+  private static final ThreadLocal<Boolean> CALLED_DATABASE = new ThreadLocal<>();
+
+  private ConcurrencyLimitContext() {
+  }
+
+  //a no-op outside a limited request
+  public static void markDatabaseCall() {
+    if (CALLED_DATABASE.get() != null) {
+      CALLED_DATABASE.set(Boolean.TRUE);
+    }
+  }
+
+  //starts a fresh note and returns the one of an enclosing request, which end restores
+  static Boolean begin() {
+    Boolean previous = CALLED_DATABASE.get();
+    CALLED_DATABASE.set(Boolean.FALSE);
+    return previous;
+  }
+
+  static boolean end(Boolean previous) {
+    boolean calledDatabase = Boolean.TRUE.equals(CALLED_DATABASE.get());
+    if (previous == null) {
+      CALLED_DATABASE.remove();
+    } else {
+      CALLED_DATABASE.set(previous);
+    }
+    return calledDatabase;
+  }
+}
@@ -0,0 +1,166 @@
+package com.book.management.limit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Sheds /api/book requests over an adaptive concurrency limit with 503 and Retry-After, so a slow database
+ * turns into quick rejections rather than requests piling up in Tomcat and the Hikari wait queue.
+ * Reads (GET, HEAD) and writes have their own limit; a 5xx response counts as a failed sample. Latency samples are
+ * compared per route and only taken from requests that reached the database, bulk and batch requests hold a slot but
+ * are no sample since their latency follows the payload size. Off by default until the limits are tuned. Limits, requests in flight and rejections are the book.concurrency.* metrics.
+ */
+@Component
+//after the http.server.requests filter, so shed requests still show up there as 503
+@Order(Ordered.HIGHEST_PRECEDENCE + 2)
+public class ConcurrencyLimitFilter extends OncePerRequestFilter implements MeterBinder {
+
+  private final boolean enabled;
+  private final AdaptiveConcurrencyLimit readLimit;
+  private final AdaptiveConcurrencyLimit writeLimit;
+  private final String retryAfter;
+
+  private volatile Counter readRejected;
+  private volatile Counter writeRejected;
+
+  public ConcurrencyLimitFilter(@Value("${book.concurrency-limit.enabled:false}") boolean enabled,
+                                @Value("${book.concurrency-limit.read.initial-limit:50}") int readInitialLimit,
+                                @Value("${book.concurrency-limit.read.min-limit:5}") int readMinLimit,
+                                @Value("${book.concurrency-limit.read.max-limit:400}") int readMaxLimit,
+                                @Value("${book.concurrency-limit.write.initial-limit:20}") int writeInitialLimit,
+                                @Value("${book.concurrency-limit.write.min-limit:2}") int writeMinLimit,
+                                @Value("${book.concurrency-limit.write.max-limit:100}") int writeMaxLimit,
+                                @Value("${book.concurrency-limit.latency-tolerance:2.0}") double latencyTolerance,
+                                @Value("${book.concurrency-limit.backoff-ratio:0.9}") double backoffRatio,
+                                @Value("${book.concurrency-limit.retry-after:1s}") Duration retryAfter) {
+    this.enabled = enabled;
+    this.readLimit = new AdaptiveConcurrencyLimit(readInitialLimit, readMinLimit, readMaxLimit,
+            latencyTolerance, backoffRatio);
+    this.writeLimit = new AdaptiveConcurrencyLimit(writeInitialLimit, writeMinLimit, writeMaxLimit,
+            latencyTolerance, backoffRatio);
+    this.retryAfter = String.valueOf(Math.max(1, retryAfter.toSeconds()));
+  }
+
+  //the export is a long stream, its duration says nothing about database pressure
+  @Override
+  protected boolean shouldNotFilter(HttpServletRequest request) {
+    String path = request.getRequestURI().substring(request.getContextPath().length());
+    return !enabled || !path.startsWith("/api/book/") || path.endsWith("/export");
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+          throws ServletException, IOException {
+    boolean read = "GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod());
+    AdaptiveConcurrencyLimit limit = read ? readLimit : writeLimit;
+    if (!limit.tryAcquire()) {
+      Counter rejected = read ? readRejected : writeRejected;
+      if (rejected != null) {
+        rejected.increment();
+      }
+      response.setHeader(HttpHeaders.RETRY_AFTER, retryAfter);
+      response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "concurrency limit reached");
+      return;
+    }
+
+    long startTime = System.nanoTime();
+    Boolean enclosing = ConcurrencyLimitContext.begin();
+    boolean calledDatabase;
+    try {
+      filterChain.doFilter(request, response);
+    } catch (IOException | ServletException | RuntimeException e) {
+      limit.release(null, startTime, System.nanoTime() - startTime, true);
+      throw e;
+    } finally {
+      calledDatabase = ConcurrencyLimitContext.end(enclosing);
+    }
+    String operation = operation(request, calledDatabase);
+    if (!request.isAsyncStarted()) {
+      limit.release(operation, startTime, System.nanoTime() - startTime, response.getStatus() >= 500);
+      return;
+    }
+    //an async request holds its slot until it completes; error and timeout are followed by complete.
+    //database calls made on another thread after this one returned are not seen, such a request is no sample
+    AtomicBoolean failed = new AtomicBoolean();
+    request.getAsyncContext().addListener(new AsyncListener() {
+      @Override
+      public void onComplete(AsyncEvent event) {
+        boolean serverError = ((HttpServletResponse) event.getSuppliedResponse()).getStatus() >= 500;
+        limit.release(operation, startTime, System.nanoTime() - startTime, failed.get() || serverError);
+      }
+
+      @Override
+      public void onTimeout(AsyncEvent event) {
+        failed.set(true);
+      }
+
+      @Override
+      public void onError(AsyncEvent event) {
+        failed.set(true);
+      }
+
+      @Override
+      public void onStartAsync(AsyncEvent event) {
+        event.getAsyncContext().addListener(this);
+      }
+    });
+  }
+
+  //method and matched route, so each endpoint is compared with its own latency; null when the request is no sample
+  static String operation(HttpServletRequest request, boolean calledDatabase) {
+    Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+    if (!calledDatabase || pattern == null) {
+      return null;
+    }
+    String route = pattern.toString();
+    if (route.endsWith("/bulk") || route.endsWith("/batch")) {
+      return null;
+    }
+    return request.getMethod() + " " + route;
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    readRejected = rejected(registry, "read");
+    writeRejected = rejected(registry, "write");
+    bindLimit(registry, "read", readLimit);
+    bindLimit(registry, "write", writeLimit);
+  }
+
+  private static Counter rejected(MeterRegistry registry, String kind) {
+    return Counter.builder("book.concurrency.rejected")
+            .description("requests shed with 503 because the concurrency limit was reached")
+            .tag("kind", kind)
+            .register(registry);
+  }
+
+  private static void bindLimit(MeterRegistry registry, String kind, AdaptiveConcurrencyLimit limit) {
+    Gauge.builder("book.concurrency.limit", limit, AdaptiveConcurrencyLimit::getLimit)
+            .description("current adaptive concurrency limit")
+            .tag("kind", kind)
+            .register(registry);
+    Gauge.builder("book.concurrency.inflight", limit, AdaptiveConcurrencyLimit::getInFlight)
+            .tag("kind", kind)
+            .register(registry);
+  }
+}
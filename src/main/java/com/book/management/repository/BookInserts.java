@@ -0,0 +1,91 @@
+package com.book.management.repository;
+
+import com.book.management.dto.request.AddBookRequest;
+import com.book.management.dto.response.BookResponse;
+import com.book.management.entity.Book;
+import com.book.management.index.IsbnBloomFilter;
+import com.book.management.timing.ServerTiming;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * The insert paths shared by BookServiceImpl and GroupCommitBookWriter. The callers own the transaction and the
+ * retry: a duplicate isbn committed concurrently since the lookup only fails insertAll once its transaction commits,
+ * after which each caller retries with insertIfAbsent in its own way.
+ */
+public final class BookInserts {
+
+  private BookInserts() {
+  }
+
+  //one lookup for the isbn the bloom filter cannot rule out, then one batch insert of the rest; the result follows
+  //the requests and is empty for an isbn already stored or repeated earlier in the list
+  public static List<Optional<BookResponse>> insertAll(BookRepository bookRepository, IsbnBloomFilter isbnBloomFilter,
+                                                       List<AddBookRequest> addBookRequests) {
+    Set<Long> candidateIsbns = new HashSet<>();
+    addBookRequests.forEach(data -> {
+      if (isbnBloomFilter.mightContain(data.getIsbn())) {
+        candidateIsbns.add(data.getIsbn());
+      }
+    });
+    Set<Long> knownIsbns = candidateIsbns.isEmpty()
+            ? new HashSet<>()
+            : new HashSet<>(bookRepository.findExistingIsbns(candidateIsbns));
+    List<Book> bookModel = new ArrayList<>(addBookRequests.size());
+    for (AddBookRequest addBookRequest : addBookRequests) {
+      if (knownIsbns.add(addBookRequest.getIsbn())) {
+        bookModel.add(Book.builder()
+                .isbn(addBookRequest.getIsbn())
+                .bookTitle(addBookRequest.getBookTitle())
+                .bookAuthor(addBookRequest.getBookAuthor())
+                .build());
+      } else {
+        bookModel.add(null);
+      }
+    }
+    List<Book> newBooks = new ArrayList<>(bookModel);
+    newBooks.removeIf(book -> book == null);
+    if (newBooks.isEmpty()) {
+      List<Optional<BookResponse>> results = new ArrayList<>(addBookRequests.size());
+      addBookRequests.forEach(data -> results.add(Optional.empty()));
+      return results;
+    }
+    Iterator<Book> savedBooks = bookRepository.saveAll(newBooks).iterator();
+
+    long mapStart = ServerTiming.start();
+    List<Optional<BookResponse>> results = new ArrayList<>(addBookRequests.size());
+    for (Book book : bookModel) {
+      results.add(book == null ? Optional.empty() : Optional.of(toBookResponse(savedBooks.next())));
+    }
+    ServerTiming.stop(ServerTiming.Stage.MAP, mapStart);
+    return results;
+  }
+
+  //empty when the isbn already exists
+  public static Optional<BookResponse> insertIfAbsent(BookRepository bookRepository, AddBookRequest addBookRequest) {
+    return bookRepository.insertIfAbsent(addBookRequest.getIsbn(),
+                    addBookRequest.getBookTitle(), addBookRequest.getBookAuthor())
+            .map(bookId -> BookResponse.builder()
+                    .bookId(bookId)
+                    .isbn(addBookRequest.getIsbn())
+                    .bookTitle(addBookRequest.getBookTitle())
+                    .bookAuthor(addBookRequest.getBookAuthor())
+                    .version(0)
+                    .build());
+  }
+
+  public static BookResponse toBookResponse(Book book) {
+    return BookResponse.builder()
+            .bookId(book.getBookId())
+            .isbn(book.getIsbn())
+            .bookTitle(book.getBookTitle())
+            .bookAuthor(book.getBookAuthor())
+            .version(book.getVersion())
+            .build();
+  }
+}
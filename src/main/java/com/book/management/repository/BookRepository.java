@@ -1,20 +1,91 @@
 package com.book.management.repository;
 
+import com.book.management.dto.response.BookResponse;
 import com.book.management.entity.Book;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.Query;
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
+//read paths select straight into BookResponse: no managed entity, snapshot or dirty check per row
 @Repository
-public interface BookRepository extends CrudRepository<Book, Integer> {
+public interface BookRepository extends PagingAndSortingRepository<Book, Integer>, BookRepositoryCustom {
+  String BOOK_RESPONSE = "select new com.book.management.dto.response.BookResponse("
+          + "b.bookId, b.isbn, b.bookTitle, b.bookAuthor, b.version) from Book b";
+
   Optional<Book> findByIsbn(Long isbn);
 
-  List<Book> findAllBooksFromAuthor(String bookAuthor);
+  //routed to SimpleJpaRepository#flush, lets a batch write out pending deletes before it reuses their isbn
+  void flush();
+
+  @Query("select b.isbn from Book b where b.isbn in ?1")
+  List<Long> findExistingIsbns(Collection<Long> isbns);
+
+  //duplicate check and insert in one statement, the unique index on isbn makes it race free
+  @Transactional
+  @Query(value = "INSERT INTO book (isbn, book_title, book_author, created_date, updated_date) "
+          + "VALUES (:isbn, :bookTitle, :bookAuthor, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP) "
+          + "ON CONFLICT (isbn) DO NOTHING RETURNING book_id", nativeQuery = true)
+  Optional<Integer> insertIfAbsent(@Param("isbn") Long isbn,
+                                   @Param("bookTitle") String bookTitle,
+                                   @Param("bookAuthor") String bookAuthor);
+
+  //delete without loading the row first, an empty result means no book (with that version) was there
+  @Transactional
+  @Query(value = "DELETE FROM book WHERE book_id = ?1 RETURNING book_id", nativeQuery = true)
+  Optional<Integer> deleteReturningBookId(Integer bookId);
+
+  @Transactional
+  @Query(value = "DELETE FROM book WHERE book_id = ?1 AND version = ?2 RETURNING book_id", nativeQuery = true)
+  Optional<Integer> deleteReturningBookId(Integer bookId, Integer version);
+
+  @QueryHints(value = @QueryHint(name = "org.hibernate.fetchSize", value = "5000"))
+  @Query("select b.isbn from Book b")
+  Stream<Long> streamAllIsbns();
+
+  @QueryHints(value = @QueryHint(name = "org.hibernate.fetchSize", value = "5000"))
+  @Query(BOOK_RESPONSE)
+  Stream<BookResponse> streamAllBooks();
+
+  @Query(BOOK_RESPONSE)
+  List<BookResponse> findAllBookResponses();
+
+  @Query(BOOK_RESPONSE + " where b.bookAuthor = ?1")
+  List<BookResponse> findAllBooksFromAuthor(String bookAuthor);
+
+  @Query(BOOK_RESPONSE + " order by b.isbn desc")
+  List<BookResponse> findAllBooksOrderByIsbn();
+
+  //keyset page: seeks on the primary key index instead of skipping rows with OFFSET
+  @Query(BOOK_RESPONSE + " where b.bookId > ?1 order by b.bookId asc")
+  List<BookResponse> findByBookIdGreaterThanOrderByBookIdAsc(Integer bookId, Pageable pageable);
+
+  //multi-get lookups, one IN query whatever the number of keys; empty collections are never passed
+  @Query(BOOK_RESPONSE + " where b.bookId in ?1")
+  List<BookResponse> findAllBookResponsesByBookIdIn(Collection<Integer> bookIds);
+
+  @Query(BOOK_RESPONSE + " where b.isbn in ?1")
+  List<BookResponse> findAllBookResponsesByIsbnIn(Collection<Long> isbns);
+
+  @Query(BOOK_RESPONSE + " where b.bookId in ?1 or b.isbn in ?2")
+  List<BookResponse> findAllBookResponsesByBookIdInOrIsbnIn(Collection<Integer> bookIds, Collection<Long> isbns);
+
+  @Query("select b.updatedDate from Book b where b.bookId = ?1")
+  Optional<LocalDateTime> findUpdatedDateByBookId(Integer bookId);
 
-  @Query(value = "SELECT * FROM BOOK ORDER  BY ISBN DESC ", nativeQuery = true)
-  List<Book> findAllBooksOrderByIsbn();
+  //server-side cursor: rows are pulled from postgres in chunks of fetchSize, must be consumed inside a transaction
+  @QueryHints(value = @QueryHint(name = "org.hibernate.fetchSize", value = "500"))
+  @Query(BOOK_RESPONSE + " order by b.isbn desc")
+  Stream<BookResponse> streamAllBooksOrderByIsbn();
 
 }
@@ -0,0 +1,26 @@
+package com.book.management.repository;
+
+import com.book.management.dto.response.BookChangeResponse;
+import com.book.management.entity.Book;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface BookRepositoryCustom {
+
+  //single UPDATE ... RETURNING of the non-null columns, guarded by the version when one is given;
+  //empty when no book with that bookId (and version) exists
+  Optional<Book> updateBook(Integer bookId, Integer version, Long isbn, String bookTitle, String bookAuthor);
+
+  //moves with every committed book write, whichever instance or write path made it
+  String findChangeVersion();
+
+  //whether the store keeps the change rows sequenceChanges and findChangesAfter read; without them /changes is 501
+  boolean supportsChangeFeed();
+
+  //numbers the change rows committed since the last call, in commit order; 0 when another caller is already at it
+  int sequenceChanges();
+
+  //sequenced changes after seq, oldest first
+  List<BookChangeResponse> findChangesAfter(long seq, int limit);
+}
@@ -0,0 +1,153 @@
+package com.book.management.repository;
+
+import com.book.management.dto.response.BookChangeResponse;
+import com.book.management.dto.response.BookResponse;
+import com.book.management.entity.Book;
+import com.book.management.event.BookChangedEvent;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import java.sql.Timestamp;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Native writes whose SET list depends on the call, which a fixed @Query cannot express.
+ * The returned Book is detached, built from the RETURNING columns.
+ * Also the book_change outbox reads, which take more than one statement.
+ */
+public class BookRepositoryCustomImpl implements BookRepositoryCustom {
+
+  private static final String RETURNING =
+          " RETURNING created_date, updated_date, book_id, isbn, book_title, book_author, version";
+
+  //advisory lock key serialising sequenceChanges across instances
+  private static final long SEQUENCE_CHANGES_LOCK = 0x424b4348L;
+
+  //a row whose txid is below the snapshot xmin was written by a finished transaction, any row still to come has a
+  //newer txid, so numbering only those in change_id order can never put a later commit before a number already read
+  private static final String SEQUENCE_CHANGES = "UPDATE book_change c SET seq = pending.seq "
+          + "FROM (SELECT change_id, nextval('book_change_seq') AS seq FROM ("
+          + "SELECT change_id FROM book_change "
+          + "WHERE seq IS NULL AND txid < txid_snapshot_xmin(txid_current_snapshot()) "
+          + "ORDER BY change_id) ordered) pending "
+          + "WHERE c.change_id = pending.change_id";
+
+  private static final String FIND_CHANGES_AFTER = "SELECT seq, change_type, book_id, isbn, book_title, book_author, version "
+          + "FROM book_change WHERE seq > :seq ORDER BY seq LIMIT :limit";
+
+  //the newest change_id moves with every commit holding the highest one; a commit that lands after a later change_id
+  //moves the newest seq instead, once sequenceChanges has numbered it. both are one index lookup
+  private static final String FIND_CHANGE_VERSION =
+          "SELECT (SELECT max(change_id) FROM book_change), (SELECT max(seq) FROM book_change)";
+
+  @PersistenceContext
+  private EntityManager entityManager;
+
+  @Transactional
+  @Override
+  public Optional<Book> updateBook(Integer bookId, Integer version, Long isbn, String bookTitle, String bookAuthor) {
+    StringBuilder sql = new StringBuilder("UPDATE book SET ");
+    Map<String, Object> parameters = new LinkedHashMap<>();
+    if (isbn != null) {
+      sql.append("isbn = :isbn, ");
+      parameters.put("isbn", isbn);
+    }
+    if (bookTitle != null) {
+      sql.append("book_title = :bookTitle, ");
+      parameters.put("bookTitle", bookTitle);
+    }
+    if (bookAuthor != null) {
+      sql.append("book_author = :bookAuthor, ");
+      parameters.put("bookAuthor", bookAuthor);
+    }
+    sql.append("updated_date = CURRENT_TIMESTAMP, version = version + 1 WHERE book_id = :bookId");
+    parameters.put("bookId", bookId);
+    if (version != null) {
+      sql.append(" AND version = :version");
+      parameters.put("version", version);
+    }
+    sql.append(RETURNING);
+
+    Query query = entityManager.createNativeQuery(sql.toString());
+    parameters.forEach(query::setParameter);
+    List<?> rows = query.getResultList();
+    return rows.stream()
+            .findFirst()
+            .map(row -> toBook((Object[]) row));
+  }
+
+  private static Book toBook(Object[] row) {
+    return Book.builder()
+            .createdDate(((Timestamp) row[0]).toLocalDateTime())
+            .updatedDate(((Timestamp) row[1]).toLocalDateTime())
+            .bookId(((Number) row[2]).intValue())
+            .isbn(((Number) row[3]).longValue())
+            .bookTitle((String) row[4])
+            .bookAuthor((String) row[5])
+            .version(((Number) row[6]).intValue())
+            .build();
+  }
+
+  @Transactional
+  @Override
+  public int sequenceChanges() {
+    //taken in its own statement so the update below snapshots after the previous holder committed its numbers
+    Object locked = entityManager.createNativeQuery("SELECT pg_try_advisory_xact_lock(:key)")
+            .setParameter("key", SEQUENCE_CHANGES_LOCK)
+            .getSingleResult();
+    if (!Boolean.TRUE.equals(locked)) {
+      return 0;
+    }
+    return entityManager.createNativeQuery(SEQUENCE_CHANGES).executeUpdate();
+  }
+
+  @Override
+  public String findChangeVersion() {
+    Object[] row = (Object[]) entityManager.createNativeQuery(FIND_CHANGE_VERSION).getSingleResult();
+    return hex(row[0]) + "." + hex(row[1]);
+  }
+
+  private static String hex(Object value) {
+    return value == null ? "0" : Long.toHexString(((Number) value).longValue());
+  }
+
+  @Override
+  public boolean supportsChangeFeed() {
+    return true;
+  }
+
+  @Override
+  public List<BookChangeResponse> findChangesAfter(long seq, int limit) {
+    List<?> rows = entityManager.createNativeQuery(FIND_CHANGES_AFTER)
+            .setParameter("seq", seq)
+            .setParameter("limit", limit)
+            .getResultList();
+    return rows.stream()
+            .map(row -> toBookChangeResponse((Object[]) row))
+            .collect(Collectors.toList());
+  }
+
+  private static BookChangeResponse toBookChangeResponse(Object[] row) {
+    BookChangedEvent.Type type = BookChangedEvent.Type.valueOf((String) row[1]);
+    Integer bookId = ((Number) row[2]).intValue();
+    BookResponse book = type == BookChangedEvent.Type.DELETED ? null : BookResponse.builder()
+            .bookId(bookId)
+            .isbn(((Number) row[3]).longValue())
+            .bookTitle((String) row[4])
+            .bookAuthor((String) row[5])
+            .version(((Number) row[6]).intValue())
+            .build();
+    return BookChangeResponse.builder()
+            .seq(((Number) row[0]).longValue())
+            .type(type)
+            .bookId(bookId)
+            .book(book)
+            .build();
+  }
+}
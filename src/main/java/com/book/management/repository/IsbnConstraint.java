@@ -0,0 +1,37 @@
+package com.book.management.repository;
+
+import io.r2dbc.spi.R2dbcException;
+
+import java.sql.SQLException;
+
+/**
+ * The unique index on book.isbn. A DataIntegrityViolationException from a write is only a duplicate isbn when it was
+ * caused by this index: a title longer than its column or a missing value end in the same exception type and are
+ * not something a retry or a 409 can fix.
+ */
+public final class IsbnConstraint {
+
+  public static final String NAME = "book_isbn_key";
+
+  //postgres unique_violation
+  public static final String UNIQUE_VIOLATION = "23505";
+
+  private IsbnConstraint() {
+  }
+
+  //looks through the causes for the driver exception, jdbc or r2dbc, and checks its state and constraint name
+  public static boolean isViolatedBy(Throwable e) {
+    for (Throwable cause = e; cause != null; cause = cause.getCause() == cause ? null : cause.getCause()) {
+      String sqlState = null;
+      if (cause instanceof SQLException) {
+        sqlState = ((SQLException) cause).getSQLState();
+      } else if (cause instanceof R2dbcException) {
+        sqlState = ((R2dbcException) cause).getSqlState();
+      }
+      if (UNIQUE_VIOLATION.equals(sqlState) && cause.getMessage() != null && cause.getMessage().contains(NAME)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
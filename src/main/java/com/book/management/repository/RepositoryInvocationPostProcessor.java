@@ -0,0 +1,30 @@
+package com.book.management.repository;
+
+import com.book.management.limit.ConcurrencyLimitContext;
+import com.book.management.timing.ServerTiming;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One invocation listener on every repository, the same hook spring.data.repository.invocations uses: each call is
+ * added to the db stage of the timed request and marks the limited request as a database call.
+ * A Stream returning method is only timed until the stream is returned, not while it is consumed.
+ */
+@Component
+public class RepositoryInvocationPostProcessor implements BeanPostProcessor {
+
+  @Override
+  public Object postProcessBeforeInitialization(Object bean, String beanName) {
+    if (bean instanceof RepositoryFactoryBeanSupport) {
+      ((RepositoryFactoryBeanSupport<?, ?, ?>) bean).addRepositoryFactoryCustomizer(repositoryFactory ->
+              repositoryFactory.addInvocationListener(invocation -> {
+                ServerTiming.record(ServerTiming.Stage.DB, invocation.getDuration(TimeUnit.NANOSECONDS));
+                ConcurrencyLimitContext.markDatabaseCall();
+              }));
+    }
+    return bean;
+  }
+}
@@ -1,17 +1,39 @@
 package com.book.management.service;
 
 import com.book.management.dto.request.AddBookRequest;
+import com.book.management.dto.request.BatchBookRequest;
+import com.book.management.dto.request.BulkAddBookRequest;
 import com.book.management.dto.request.FindAllBooksFromAuthorRequest;
+import com.book.management.dto.request.MultiGetBookRequest;
+import com.book.management.dto.request.PatchBookRequest;
 import com.book.management.dto.request.UpdateBookRequest;
+import com.book.management.dto.response.CatalogueSnapshot;
 import com.book.management.dto.response.DataResponse;
+import com.book.management.dto.response.ResourceVersion;
+
+import java.io.IOException;
+import java.io.OutputStream;
 
 public interface BookService {
   DataResponse<Object> addBook(AddBookRequest addBookRequest);
+  DataResponse<Object> bulkAddBook(BulkAddBookRequest bulkAddBookRequest);
+  DataResponse<Object> applyBatch(BatchBookRequest batchBookRequest);
   DataResponse<Object> getAllBooks();
+  DataResponse<Object> getAllBooks(Integer limit, String after);
   DataResponse<Object> getBook(Integer bookId);
+  DataResponse<Object> getChanges(Long since, Integer limit);
+  DataResponse<Object> multiGetBooks(MultiGetBookRequest multiGetBookRequest);
   DataResponse<Object> updateBook(UpdateBookRequest bookRequest);
+  DataResponse<Object> patchBook(Integer bookId, PatchBookRequest patchBookRequest);
   DataResponse<Object> deleteBook(Integer bookId);
+  DataResponse<Object> deleteBook(Integer bookId, Integer version);
   DataResponse<Object> findAllBooksFromAuthor(FindAllBooksFromAuthorRequest findAllBooksFromAuthorRequest);
   DataResponse<Object> findAllBooksOrderByIsbn();
+  void exportBooks(OutputStream outputStream) throws IOException;
+  DataResponse<Object> searchBooks(String query, Integer limit);
+  DataResponse<Object> getStats(Integer top, String bookAuthor);
+  ResourceVersion getBookVersion(Integer bookId);
+  ResourceVersion getCatalogueVersion();
+  CatalogueSnapshot getCatalogueSnapshot(CatalogueSnapshot.View view);
 
 }
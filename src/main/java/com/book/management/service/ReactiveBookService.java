@@ -0,0 +1,23 @@
+package com.book.management.service;
+
+import com.book.management.dto.request.AddBookRequest;
+import com.book.management.dto.request.BulkAddBookRequest;
+import com.book.management.dto.request.FindAllBooksFromAuthorRequest;
+import com.book.management.dto.request.UpdateBookRequest;
+import com.book.management.dto.response.BookResponse;
+import com.book.management.dto.response.DataResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveBookService {
+  Mono<DataResponse<Object>> addBook(AddBookRequest addBookRequest);
+  Mono<DataResponse<Object>> bulkAddBook(BulkAddBookRequest bulkAddBookRequest);
+  Flux<BookResponse> getAllBooks(Integer limit, String after);
+  Mono<DataResponse<Object>> getBook(Integer bookId);
+  Mono<DataResponse<Object>> updateBook(UpdateBookRequest bookRequest);
+  Mono<DataResponse<Object>> deleteBook(Integer bookId, Integer version);
+  Flux<BookResponse> findAllBooksFromAuthor(FindAllBooksFromAuthorRequest findAllBooksFromAuthorRequest);
+  Flux<BookResponse> findAllBooksOrderByIsbn();
+  Mono<DataResponse<Object>> searchBooks(String query, Integer limit);
+
+}
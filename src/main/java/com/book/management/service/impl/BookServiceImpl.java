@@ -1,77 +1,399 @@
 package com.book.management.service.impl;
 
+import com.book.management.cache.BookCache;
+import com.book.management.cache.CatalogueSnapshotCache;
+import com.book.management.datasource.ReplicaRoutingContext;
 import com.book.management.dto.request.AddBookRequest;
+import com.book.management.dto.request.BatchBookRequest;
+import com.book.management.dto.request.BatchOperationRequest;
+import com.book.management.dto.request.BulkAddBookRequest;
 import com.book.management.dto.request.FindAllBooksFromAuthorRequest;
+import com.book.management.dto.request.MultiGetBookRequest;
+import com.book.management.dto.request.PatchBookRequest;
+import com.book.management.dto.response.AuthorCountResponse;
+import com.book.management.dto.response.BatchBookResponse;
+import com.book.management.dto.response.BatchOperationResponse;
+import com.book.management.dto.response.BookChangePageResponse;
+import com.book.management.dto.response.BookChangeResponse;
+import com.book.management.dto.response.BookPageResponse;
 import com.book.management.dto.response.BookResponse;
+import com.book.management.dto.response.BookStatsResponse;
+import com.book.management.dto.response.BulkAddBookResponse;
+import com.book.management.dto.response.CatalogueSnapshot;
 import com.book.management.dto.request.UpdateBookRequest;
 import com.book.management.dto.response.DataResponse;
+import com.book.management.dto.response.MultiGetBookResponse;
+import com.book.management.dto.response.ResourceVersion;
 import com.book.management.entity.Book;
+import com.book.management.event.BookChangedEvent;
+import com.book.management.index.AuthorStatsIndex;
+import com.book.management.index.BookSearchIndex;
+import com.book.management.index.IsbnBloomFilter;
+import com.book.management.ingest.GroupCommitBookWriter;
+import com.book.management.repository.BookInserts;
 import com.book.management.repository.BookRepository;
+import com.book.management.repository.IsbnConstraint;
 import com.book.management.service.BookService;
+import com.book.management.timing.ServerTiming;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 
 @Slf4j
 @Service
 public class BookServiceImpl implements BookService {
 
+  static final int DEFAULT_PAGE_LIMIT = 100;
+  static final int MAX_PAGE_LIMIT = 1000;
+  static final int EXPORT_FLUSH_ROWS = 500;
+  static final int DEFAULT_SEARCH_LIMIT = 10;
+  static final int MAX_SEARCH_LIMIT = 100;
+  static final int MAX_MULTI_GET_KEYS = 100;
+  static final int DEFAULT_TOP_AUTHORS = 10;
+  static final int MAX_TOP_AUTHORS = 100;
+
   @Autowired
   private BookRepository bookRepository;
 
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Autowired
+  private BookCache bookCache;
+
+  @Autowired
+  private CatalogueSnapshotCache catalogueSnapshotCache;
+
+  @Autowired
+  private ApplicationEventPublisher applicationEventPublisher;
+
+  @Autowired
+  private IsbnBloomFilter isbnBloomFilter;
+
+  @Autowired
+  private BookSearchIndex bookSearchIndex;
+
+  @Autowired
+  private AuthorStatsIndex authorStatsIndex;
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  @Autowired
+  private GroupCommitBookWriter groupCommitBookWriter;
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
   @Override
   public DataResponse<Object> addBook(AddBookRequest addBookRequest){
-    Book checkBook = bookRepository.findByIsbn(addBookRequest.getIsbn()).orElse(null);
-    if(checkBook != null){
+    //with group commit the caller waits for a shared batch insert and commit instead of running its own
+    BookResponse bookResponse = groupCommitBookWriter.isEnabled()
+            ? groupCommitBookWriter.add(addBookRequest).orElse(null)
+            : insertBook(addBookRequest);
+
+    if (bookResponse == null) {
+      countOutcome("add", "duplicate", 1);
       String message = "Book with isbn " + addBookRequest.getIsbn() + " already exist";
       log.info(message);
       return DataResponse.builder()
               .data(message)
               .build();
-    } else {
-      Book bookModel = Book.builder()
-              .isbn(addBookRequest.getIsbn())
-              .bookTitle(addBookRequest.getBookTitle())
-              .bookAuthor(addBookRequest.getBookAuthor())
-              .build();
+    }
 
-      Book addBook = bookRepository.save(bookModel);
+    //the group commit flusher publishes its adds itself, also those whose caller stopped waiting
+    if (!groupCommitBookWriter.isEnabled()) {
+      publishBookChanged(BookChangedEvent.Type.ADDED, bookResponse.getBookId(), bookResponse);
+    }
+    countOutcome("add", "added", 1);
+    log.info("Book added successfully");
 
-      BookResponse bookResponse = BookResponse.builder()
-              .bookId(addBook.getBookId())
-              .isbn(addBook.getIsbn())
-              .bookTitle(addBook.getBookTitle())
-              .bookAuthor(addBook.getBookAuthor())
-              .build();
+    return DataResponse.builder()
+            .data(bookResponse)
+            .build();
+  }
 
-      log.info("Book added successfully");
+  //null when the isbn already exists
+  private BookResponse insertBook(AddBookRequest addBookRequest) {
+    if (isbnBloomFilter.mightContain(addBookRequest.getIsbn())) {
+      //isbn may already exist, let postgres decide within the insert itself
+      return insertIfAbsent(addBookRequest)
+              .map(bookResponse -> {
+                isbnBloomFilter.recordFalsePositive();
+                return bookResponse;
+              })
+              .orElse(null);
+    }
+    //isbn is definitely new, no lookup needed; a concurrent insert is still rejected by the unique index
+    Book bookModel = Book.builder()
+            .isbn(addBookRequest.getIsbn())
+            .bookTitle(addBookRequest.getBookTitle())
+            .bookAuthor(addBookRequest.getBookAuthor())
+            .build();
+    try {
+      return toBookResponse(bookRepository.save(bookModel));
+    } catch (DataIntegrityViolationException e) {
+      if (!IsbnConstraint.isViolatedBy(e)) {
+        throw e;
+      }
+      return null;
+    }
+  }
 
-      return DataResponse.builder()
-              .data(bookResponse)
-              .build();
+  //empty when the isbn already exists
+  private Optional<BookResponse> insertIfAbsent(AddBookRequest addBookRequest) {
+    return BookInserts.insertIfAbsent(bookRepository, addBookRequest);
+  }
+
+  //the lookup and batch insert share one transaction run here rather than by @Transactional, so an isbn committed
+  //concurrently since the lookup can be retried row by row once that transaction has rolled back
+  @Override
+  public DataResponse<Object> bulkAddBook(BulkAddBookRequest bulkAddBookRequest) {
+    List<AddBookRequest> addBookRequests = bulkAddBookRequest.getBooks();
+    List<Optional<BookResponse>> results;
+    try {
+      results = new TransactionTemplate(transactionManager)
+              .execute(status -> BookInserts.insertAll(bookRepository, isbnBloomFilter, addBookRequests));
+    } catch (DataIntegrityViolationException e) {
+      if (!IsbnConstraint.isViolatedBy(e)) {
+        throw e;
+      }
+      //stored and repeated isbn come back empty from insertIfAbsent as well
+      log.info("Bulk add of {} book hit a concurrent duplicate, retrying one by one", addBookRequests.size());
+      results = new ArrayList<>(addBookRequests.size());
+      for (AddBookRequest addBookRequest : addBookRequests) {
+        results.add(insertIfAbsent(addBookRequest));
+      }
+    }
+    List<BookResponse> bookResponses = new ArrayList<>(addBookRequests.size());
+    List<Long> duplicateIsbns = new ArrayList<>();
+    for (int i = 0; i < addBookRequests.size(); i++) {
+      if (results.get(i).isPresent()) {
+        bookResponses.add(results.get(i).get());
+      } else {
+        duplicateIsbns.add(addBookRequests.get(i).getIsbn());
+      }
+    }
+    bookResponses.forEach(data -> publishBookChanged(BookChangedEvent.Type.ADDED, data.getBookId(), data));
+
+    countOutcome("bulk", "added", bookResponses.size());
+    countOutcome("bulk", "duplicate", duplicateIsbns.size());
+    log.info("There are {} book added and {} duplicate isbn skipped", bookResponses.size(), duplicateIsbns.size());
+
+    return DataResponse.builder()
+            .data(BulkAddBookResponse.builder()
+                    .books(bookResponses)
+                    .duplicateIsbns(duplicateIsbns)
+                    .build())
+            .build();
+  }
+
+  //one transaction and one flush for the whole list; inserts, updates and deletes each go out in jdbc batches.
+  //a duplicate isbn or unknown bookId only skips its own operation, any other failure rolls the batch back
+  @Transactional
+  @Override
+  public DataResponse<Object> applyBatch(BatchBookRequest batchBookRequest) {
+    List<BatchOperationRequest> operations = batchBookRequest.getOperations();
+    Set<Integer> bookIds = new HashSet<>();
+    Set<Long> candidateIsbns = new HashSet<>();
+    for (int i = 0; i < operations.size(); i++) {
+      BatchOperationRequest operation = operations.get(i);
+      validateBatchOperation(i, operation);
+      if (operation.getOperation() != BatchOperationRequest.Operation.ADD) {
+        bookIds.add(operation.getBookId());
+      }
+      if (operation.getOperation() != BatchOperationRequest.Operation.DELETE
+              && isbnBloomFilter.mightContain(operation.getIsbn())) {
+        candidateIsbns.add(operation.getIsbn());
+      }
+    }
+
+    //every touched book and every isbn that may be taken is read up front, one query each
+    Map<Integer, Book> books = new HashMap<>();
+    if (!bookIds.isEmpty()) {
+      bookRepository.findAllById(bookIds).forEach(data -> books.put(data.getBookId(), data));
+    }
+    Set<Long> takenIsbns = candidateIsbns.isEmpty()
+            ? new HashSet<>()
+            : new HashSet<>(bookRepository.findExistingIsbns(candidateIsbns));
+    //isbn given up by an update or delete still sit in the database until the flush, which runs inserts first
+    Set<Long> releasedIsbns = new HashSet<>();
+    //result index to updated book, answered once the flush below has bumped the version
+    Map<Integer, Book> updatedBooks = new HashMap<>();
+
+    List<BatchOperationResponse> results = new ArrayList<>(operations.size());
+    for (int i = 0; i < operations.size(); i++) {
+      BatchOperationRequest operation = operations.get(i);
+      String outcome;
+      BookResponse bookResponse = null;
+      Book book = operation.getOperation() == BatchOperationRequest.Operation.ADD
+              ? null : books.get(operation.getBookId());
+      switch (operation.getOperation()) {
+        case ADD:
+          if (!takeIsbn(operation.getIsbn(), null, takenIsbns, releasedIsbns)) {
+            outcome = "duplicate";
+            break;
+          }
+          book = bookRepository.save(Book.builder()
+                  .isbn(operation.getIsbn())
+                  .bookTitle(operation.getBookTitle())
+                  .bookAuthor(operation.getBookAuthor())
+                  .build());
+          books.put(book.getBookId(), book);
+          bookResponse = toBookResponse(book);
+          outcome = "added";
+          break;
+        case UPDATE:
+          if (book == null) {
+            outcome = "not_found";
+            break;
+          }
+          if (isStale(operation, book)) {
+            outcome = "conflict";
+            break;
+          }
+          if (!takeIsbn(operation.getIsbn(), book.getIsbn(), takenIsbns, releasedIsbns)) {
+            outcome = "duplicate";
+            break;
+          }
+          //managed entity under jpa, where save is a no-op and the dirty check writes it at flush;
+          //the embedded store writes it on save
+          book.setIsbn(operation.getIsbn());
+          book.setBookTitle(operation.getBookTitle());
+          book.setBookAuthor(operation.getBookAuthor());
+          updatedBooks.put(i, bookRepository.save(book));
+          outcome = "updated";
+          break;
+        default:
+          if (book == null) {
+            outcome = "not_found";
+            break;
+          }
+          if (isStale(operation, book)) {
+            outcome = "conflict";
+            break;
+          }
+          books.remove(book.getBookId());
+          takenIsbns.remove(book.getIsbn());
+          releasedIsbns.add(book.getIsbn());
+          bookRepository.delete(book);
+          outcome = "deleted";
+      }
+      countOutcome("batch", outcome, 1);
+      results.add(BatchOperationResponse.builder()
+              .index(i)
+              .operation(operation.getOperation())
+              .outcome(outcome)
+              .book(bookResponse)
+              .build());
+    }
+    //under jpa @Version is only incremented when the dirty entity is flushed, an earlier response would carry the old one
+    if (!updatedBooks.isEmpty()) {
+      bookRepository.flush();
+      updatedBooks.forEach((index, book) -> results.get(index).setBook(toBookResponse(book)));
+    }
+    //in operation order, so an update followed by a delete of the same book ends deleted
+    for (BatchOperationResponse result : results) {
+      if ("deleted".equals(result.getOutcome())) {
+        publishBookChanged(BookChangedEvent.Type.DELETED, operations.get(result.getIndex()).getBookId(), null);
+      } else if (result.getBook() != null) {
+        publishBookChanged("added".equals(result.getOutcome())
+                ? BookChangedEvent.Type.ADDED : BookChangedEvent.Type.UPDATED,
+                result.getBook().getBookId(), result.getBook());
+      }
+    }
+    log.info("Batch of {} operation applied", operations.size());
+
+    return DataResponse.builder()
+            .data(BatchBookResponse.builder()
+                    .results(results)
+                    .build())
+            .build();
+  }
+
+  private static void validateBatchOperation(int index, BatchOperationRequest operation) {
+    boolean valid;
+    switch (operation.getOperation()) {
+      case ADD:
+        valid = operation.getIsbn() != null
+                && StringUtils.hasText(operation.getBookTitle()) && StringUtils.hasText(operation.getBookAuthor());
+        break;
+      case UPDATE:
+        valid = operation.getBookId() != null && operation.getIsbn() != null
+                && StringUtils.hasText(operation.getBookTitle()) && StringUtils.hasText(operation.getBookAuthor());
+        break;
+      default:
+        valid = operation.getBookId() != null;
+    }
+    if (!valid) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+              "operation " + index + " is missing fields required by " + operation.getOperation());
     }
   }
 
+  //the loaded version is the one @Version checks again at flush, a concurrent change still rolls the batch back
+  private static boolean isStale(BatchOperationRequest operation, Book book) {
+    return operation.getVersion() != null && !operation.getVersion().equals(book.getVersion());
+  }
+
+  //claims isbn for a book currently holding currentIsbn (null for a new book), false when another book holds it
+  private boolean takeIsbn(Long isbn, Long currentIsbn, Set<Long> takenIsbns, Set<Long> releasedIsbns) {
+    if (isbn.equals(currentIsbn)) {
+      return true;
+    }
+    if (!takenIsbns.add(isbn)) {
+      return false;
+    }
+    if (releasedIsbns.contains(isbn)) {
+      bookRepository.flush();
+      releasedIsbns.clear();
+    }
+    if (currentIsbn != null) {
+      takenIsbns.remove(currentIsbn);
+      releasedIsbns.add(currentIsbn);
+    }
+    return true;
+  }
+
+  @Transactional(readOnly = true)
   @Override
   public DataResponse<Object> getAllBooks() {
-    Iterable<Book> bookModel = bookRepository.findAll();
-    List<BookResponse> bookResponses = new ArrayList<>();
-    bookModel.forEach(
-            data -> bookResponses.add(BookResponse.builder()
-                            .bookId(data.getBookId())
-                            .isbn(data.getIsbn())
-                            .bookTitle(data.getBookTitle())
-                            .bookAuthor(data.getBookAuthor())
-                            .build())
-    );
+    List<BookResponse> bookResponses = bookRepository.findAllBookResponses();
 
     int bookTotal = bookResponses.size();
     log.info("There are {} book found", bookTotal);
@@ -82,61 +404,241 @@ public class BookServiceImpl implements BookService {
             .build();
   }
 
-  @Transactional(propagation = Propagation.REQUIRED)
+  @Transactional(readOnly = true)
   @Override
-  public DataResponse<Object> getBook(Integer id) {
-    Book bookModel = findBookById(id);
-    log.info("Book record with bookId {} found", id);
-    BookResponse bookResponse = BookResponse.builder()
-            .bookId(bookModel.getBookId())
-            .isbn(bookModel.getIsbn())
-            .bookTitle(bookModel.getBookTitle())
-            .bookAuthor(bookModel.getBookAuthor())
+  public DataResponse<Object> getAllBooks(Integer limit, String after) {
+    int pageLimit = limit == null ? DEFAULT_PAGE_LIMIT : limit;
+    if (pageLimit < 1 || pageLimit > MAX_PAGE_LIMIT) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+              "limit must be between 1 and " + MAX_PAGE_LIMIT);
+    }
+    Integer afterBookId = decodeCursor(after);
+
+    //fetch one extra row to know whether another page exists without a count query
+    List<BookResponse> bookResponses = bookRepository.findByBookIdGreaterThanOrderByBookIdAsc(
+            afterBookId, PageRequest.of(0, pageLimit + 1));
+    boolean hasNext = bookResponses.size() > pageLimit;
+    if (hasNext) {
+      bookResponses = bookResponses.subList(0, pageLimit);
+    }
+
+    String nextCursor = hasNext ? encodeCursor(bookResponses.get(bookResponses.size() - 1).getBookId()) : null;
+    log.info("There are {} book found after bookId {}", bookResponses.size(), afterBookId);
+
+    return DataResponse.builder()
+            .data(BookPageResponse.builder()
+                    .books(bookResponses)
+                    .nextCursor(nextCursor)
+                    .build())
             .build();
+  }
+
+  //read-write and so on the primary: committed change rows are numbered before the page is read
+  @Transactional
+  @Override
+  public DataResponse<Object> getChanges(Long since, Integer limit) {
+    long afterSeq = since == null ? 0 : since;
+    if (afterSeq < 0) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "since must not be negative");
+    }
+    int pageLimit = limit == null ? DEFAULT_PAGE_LIMIT : limit;
+    if (pageLimit < 1 || pageLimit > MAX_PAGE_LIMIT) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+              "limit must be between 1 and " + MAX_PAGE_LIMIT);
+    }
+
+    if (!bookRepository.supportsChangeFeed()) {
+      throw new ResponseStatusException(HttpStatus.NOT_IMPLEMENTED, "this book store keeps no change feed");
+    }
+
+    bookRepository.sequenceChanges();
+    List<BookChangeResponse> changes = bookRepository.findChangesAfter(afterSeq, pageLimit + 1);
+    boolean hasMore = changes.size() > pageLimit;
+    if (hasMore) {
+      changes = changes.subList(0, pageLimit);
+    }
+    long nextSince = changes.isEmpty() ? afterSeq : changes.get(changes.size() - 1).getSeq();
+    log.info("There are {} book change found after seq {}", changes.size(), afterSeq);
+
+    return DataResponse.builder()
+            .data(BookChangePageResponse.builder()
+                    .changes(changes)
+                    .nextSince(nextSince)
+                    .hasMore(hasMore)
+                    .build())
+            .build();
+  }
+
+  //no transaction here: a cache hit must not borrow a connection, a miss reads through findById;
+  //the miss reads the primary so a lagging replica cannot put an already evicted version back in the cache
+  @Override
+  public DataResponse<Object> getBook(Integer id) {
+    BookResponse bookResponse = bookCache.get(id);
+    if (bookResponse == null) {
+      long stamp = bookCache.stamp();
+      Book bookModel = ReplicaRoutingContext.callOnPrimary(() -> findBookById(id, "get"));
+      log.info("Book record with bookId {} found", id);
+      long mapStart = ServerTiming.start();
+      bookResponse = toBookResponse(bookModel);
+      ServerTiming.stop(ServerTiming.Stage.MAP, mapStart);
+      bookCache.putIfUnchanged(stamp, bookResponse);
+    }
+    countOutcome("get", "found", 1);
     return DataResponse.builder()
             .data(bookResponse)
             .build();
   }
 
+  //no transaction, as getBook: bookIds in the cache are served from it and every other key is resolved in one query
+  @Override
+  public DataResponse<Object> multiGetBooks(MultiGetBookRequest multiGetBookRequest) {
+    List<Integer> bookIds = multiGetBookRequest.getBookIds() == null ? List.of() : multiGetBookRequest.getBookIds();
+    List<Long> isbns = multiGetBookRequest.getIsbns() == null ? List.of() : multiGetBookRequest.getIsbns();
+    if ((bookIds.isEmpty() && isbns.isEmpty()) || bookIds.size() + isbns.size() > MAX_MULTI_GET_KEYS) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+              "between 1 and " + MAX_MULTI_GET_KEYS + " bookIds and isbns must be given");
+    }
+
+    Map<Integer, BookResponse> byBookId = new HashMap<>();
+    Set<Integer> uncachedBookIds = new LinkedHashSet<>();
+    for (Integer bookId : bookIds) {
+      BookResponse bookResponse = bookCache.get(bookId);
+      if (bookResponse != null) {
+        byBookId.put(bookId, bookResponse);
+      } else {
+        uncachedBookIds.add(bookId);
+      }
+    }
+    Set<Long> uniqueIsbns = new LinkedHashSet<>(isbns);
+    List<BookResponse> found;
+    if (uncachedBookIds.isEmpty() && uniqueIsbns.isEmpty()) {
+      found = List.of();
+    } else if (uniqueIsbns.isEmpty()) {
+      found = bookRepository.findAllBookResponsesByBookIdIn(uncachedBookIds);
+    } else if (uncachedBookIds.isEmpty()) {
+      found = bookRepository.findAllBookResponsesByIsbnIn(uniqueIsbns);
+    } else {
+      found = bookRepository.findAllBookResponsesByBookIdInOrIsbnIn(uncachedBookIds, uniqueIsbns);
+    }
+    Map<Long, BookResponse> byIsbn = new HashMap<>();
+    found.forEach(data -> {
+      byBookId.putIfAbsent(data.getBookId(), data);
+      byIsbn.put(data.getIsbn(), data);
+    });
+
+    //one entry per requested key in request order, a key asked for twice is answered twice
+    List<BookResponse> bookResponses = new ArrayList<>(bookIds.size() + isbns.size());
+    List<Integer> missingBookIds = new ArrayList<>();
+    List<Long> missingIsbns = new ArrayList<>();
+    for (Integer bookId : bookIds) {
+      BookResponse bookResponse = byBookId.get(bookId);
+      if (bookResponse == null) {
+        missingBookIds.add(bookId);
+      } else {
+        bookResponses.add(bookResponse);
+      }
+    }
+    for (Long isbn : isbns) {
+      BookResponse bookResponse = byIsbn.get(isbn);
+      if (bookResponse == null) {
+        missingIsbns.add(isbn);
+      } else {
+        bookResponses.add(bookResponse);
+      }
+    }
+
+    countOutcome("multi_get", "found", bookResponses.size());
+    countOutcome("multi_get", "not_found", missingBookIds.size() + missingIsbns.size());
+    log.info("There are {} book found and {} key missing", bookResponses.size(),
+            missingBookIds.size() + missingIsbns.size());
+
+    return DataResponse.builder()
+            .data(MultiGetBookResponse.builder()
+                    .books(bookResponses)
+                    .missingBookIds(missingBookIds)
+                    .missingIsbns(missingIsbns)
+                    .build())
+            .build();
+  }
+
   @Transactional(propagation = Propagation.MANDATORY)
   public Book findBookById(Integer id){
+    return findBookById(id, "find");
+  }
+
+  Book findBookById(Integer id, String operation){
     log.info("findBookById method is called");
-    return bookRepository.findById(id).orElseThrow(() ->
-            new ResponseStatusException(HttpStatus.NOT_FOUND));
+    return bookRepository.findById(id).orElseThrow(() -> {
+      countOutcome(operation, "not_found", 1);
+      return new ResponseStatusException(HttpStatus.NOT_FOUND);
+    });
   }
 
+  //one UPDATE ... RETURNING, no select first; a version in the request makes it conditional
   @Transactional(propagation = Propagation.REQUIRED)
   @Override
   public DataResponse<Object> updateBook(UpdateBookRequest updateBookRequest){
-    Book bookModel = findBookById(updateBookRequest.getBookId());
+    return writeBook("update", updateBookRequest.getBookId(), updateBookRequest.getVersion(),
+            updateBookRequest.getIsbn(), updateBookRequest.getBookTitle(), updateBookRequest.getBookAuthor());
+  }
 
-    bookModel.setIsbn(updateBookRequest.getIsbn());
-    bookModel.setBookTitle(updateBookRequest.getBookTitle());
-    bookModel.setBookAuthor(updateBookRequest.getBookAuthor());
+  //same statement as updateBook but only the columns present in the request are written
+  @Transactional(propagation = Propagation.REQUIRED)
+  @Override
+  public DataResponse<Object> patchBook(Integer bookId, PatchBookRequest patchBookRequest) {
+    if (patchBookRequest.getIsbn() == null && patchBookRequest.getBookTitle() == null
+            && patchBookRequest.getBookAuthor() == null) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "nothing to patch, give isbn, bookTitle or bookAuthor");
+    }
+    return writeBook("patch", bookId, patchBookRequest.getVersion(),
+            patchBookRequest.getIsbn(), patchBookRequest.getBookTitle(), patchBookRequest.getBookAuthor());
+  }
 
-    Book updateBook = bookRepository.save(bookModel);
-    //System.out.println(100/0);
+  private DataResponse<Object> writeBook(String operation, Integer bookId, Integer version,
+                                         Long isbn, String bookTitle, String bookAuthor) {
+    Optional<Book> updateBook;
+    try {
+      updateBook = bookRepository.updateBook(bookId, version, isbn, bookTitle, bookAuthor);
+    } catch (DataIntegrityViolationException e) {
+      if (!IsbnConstraint.isViolatedBy(e)) {
+        throw e;
+      }
+      countOutcome(operation, "duplicate", 1);
+      throw new ResponseStatusException(HttpStatus.CONFLICT, "Book with isbn " + isbn + " already exist");
+    }
+    if (updateBook.isEmpty()) {
+      throw missingOrStale(operation, bookId, version);
+    }
 
-    BookResponse bookResponse = BookResponse.builder()
-            .bookId(updateBook.getBookId())
-            .isbn(updateBook.getIsbn())
-            .bookTitle(updateBook.getBookTitle())
-            .bookAuthor(updateBook.getBookAuthor())
-            .build();
+    BookResponse bookResponse = toBookResponse(updateBook.get());
+    publishBookChanged(BookChangedEvent.Type.UPDATED, bookResponse.getBookId(), bookResponse);
+    countOutcome(operation, "updated", 1);
 
-    log.info("Book record with bookId {} found and updated !", updateBookRequest.getBookId());
+    log.info("Book record with bookId {} found and updated !", bookId);
 
     return DataResponse.builder()
             .data(bookResponse)
             .build();
   }
 
-  @Transactional(propagation = Propagation.REQUIRED)
   @Override
   public DataResponse<Object> deleteBook(Integer bookId) {
-    findBookById(bookId);
+    return deleteBook(bookId, null);
+  }
 
-    bookRepository.deleteById(bookId);
+  //one DELETE ... RETURNING, no select first; a version makes it conditional
+  @Transactional(propagation = Propagation.REQUIRED)
+  @Override
+  public DataResponse<Object> deleteBook(Integer bookId, Integer version) {
+    Optional<Integer> deletedBookId = version == null
+            ? bookRepository.deleteReturningBookId(bookId)
+            : bookRepository.deleteReturningBookId(bookId, version);
+    if (deletedBookId.isEmpty()) {
+      throw missingOrStale("delete", bookId, version);
+    }
+
+    publishBookChanged(BookChangedEvent.Type.DELETED, bookId, null);
+    countOutcome("delete", "deleted", 1);
     String bookResponse = "Successfully Delete Book with bookId " + bookId;
     log.info(bookResponse);
     return DataResponse.builder()
@@ -144,18 +646,21 @@ public class BookServiceImpl implements BookService {
             .build();
   }
 
+  //a conditional write that touched no row costs one extra lookup to tell a stale version from a missing book
+  private ResponseStatusException missingOrStale(String operation, Integer bookId, Integer version) {
+    if (version != null && bookRepository.existsById(bookId)) {
+      countOutcome(operation, "conflict", 1);
+      return new ResponseStatusException(HttpStatus.CONFLICT,
+              "Book with bookId " + bookId + " was changed since version " + version);
+    }
+    countOutcome(operation, "not_found", 1);
+    return new ResponseStatusException(HttpStatus.NOT_FOUND);
+  }
+
+  @Transactional(readOnly = true)
   @Override
   public DataResponse<Object> findAllBooksFromAuthor(FindAllBooksFromAuthorRequest findAllBooksFromAuthorRequest) {
-    List<Book> bookModel = bookRepository.findAllBooksFromAuthor(findAllBooksFromAuthorRequest.getBookAuthor());
-    List<BookResponse> bookResponses = new ArrayList<>();
-    bookModel.forEach(
-            data -> bookResponses.add(BookResponse.builder()
-                    .bookId(data.getBookId())
-                    .isbn(data.getIsbn())
-                    .bookTitle(data.getBookTitle())
-                    .bookAuthor(data.getBookAuthor())
-                    .build())
-    );
+    List<BookResponse> bookResponses = bookRepository.findAllBooksFromAuthor(findAllBooksFromAuthorRequest.getBookAuthor());
 
     int bookTotal = bookResponses.size();
     log.info("There are {} book found from author {}", bookTotal, findAllBooksFromAuthorRequest.getBookAuthor());
@@ -165,18 +670,10 @@ public class BookServiceImpl implements BookService {
             .build();
   }
 
+  @Transactional(readOnly = true)
   @Override
   public DataResponse<Object> findAllBooksOrderByIsbn() {
-    List<Book> bookModel = bookRepository.findAllBooksOrderByIsbn();
-    List<BookResponse> bookResponses = new ArrayList<>();
-    bookModel.forEach(
-            data -> bookResponses.add(BookResponse.builder()
-                    .bookId(data.getBookId())
-                    .isbn(data.getIsbn())
-                    .bookTitle(data.getBookTitle())
-                    .bookAuthor(data.getBookAuthor())
-                    .build())
-    );
+    List<BookResponse> bookResponses = bookRepository.findAllBooksOrderByIsbn();
 
     int bookTotal = bookResponses.size();
     log.info("There are {} book found", bookTotal);
@@ -186,4 +683,142 @@ public class BookServiceImpl implements BookService {
             .build();
   }
 
+  @Transactional(readOnly = true)
+  @Override
+  public void exportBooks(OutputStream outputStream) throws IOException {
+    //one row in memory at a time: each book is written as its own json line, nothing is kept in the persistence context
+    ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    long bookTotal = 0;
+    try (Stream<BookResponse> bookResponses = bookRepository.streamAllBooksOrderByIsbn();
+         JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+      generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      generator.setRootValueSeparator(null);
+
+      Iterator<BookResponse> iterator = bookResponses.iterator();
+      while (iterator.hasNext()) {
+        writer.writeValue(generator, iterator.next());
+        generator.writeRaw('\n');
+
+        if (++bookTotal % EXPORT_FLUSH_ROWS == 0) {
+          generator.flush();
+        }
+      }
+    }
+    log.info("There are {} book exported", bookTotal);
+  }
+
+  @Override
+  public DataResponse<Object> searchBooks(String query, Integer limit) {
+    int searchLimit = limit == null ? DEFAULT_SEARCH_LIMIT : limit;
+    if (query == null || query.isBlank() || searchLimit < 1 || searchLimit > MAX_SEARCH_LIMIT) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+              "q must not be blank and limit must be between 1 and " + MAX_SEARCH_LIMIT);
+    }
+    List<BookResponse> bookResponses = bookSearchIndex.search(query, searchLimit);
+    log.info("There are {} book found for query {}", bookResponses.size(), query);
+
+    return DataResponse.builder()
+            .data(bookResponses)
+            .build();
+  }
+
+  //answered from the in-memory author counts, no query whatever the catalogue size
+  @Override
+  public DataResponse<Object> getStats(Integer top, String bookAuthor) {
+    int topLimit = top == null ? DEFAULT_TOP_AUTHORS : top;
+    if (topLimit < 0 || topLimit > MAX_TOP_AUTHORS || (bookAuthor != null && bookAuthor.isBlank())) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+              "author must not be blank and top must be between 0 and " + MAX_TOP_AUTHORS);
+    }
+    AuthorCountResponse author = bookAuthor == null ? null : AuthorCountResponse.builder()
+            .bookAuthor(bookAuthor)
+            .bookCount(authorStatsIndex.bookCount(bookAuthor))
+            .build();
+
+    return DataResponse.builder()
+            .data(BookStatsResponse.builder()
+                    .totalBooks(authorStatsIndex.totalBooks())
+                    .distinctAuthors(authorStatsIndex.distinctAuthors())
+                    .topAuthors(authorStatsIndex.topAuthors(topLimit))
+                    .author(author)
+                    .build())
+            .build();
+  }
+
+  //only the updatedDate is read, and cached next to the book, so a 304 never loads or serializes the row
+  @Override
+  public ResourceVersion getBookVersion(Integer bookId) {
+    LocalDateTime updatedDate = bookCache.getUpdatedDate(bookId);
+    if (updatedDate == null) {
+      long stamp = bookCache.stamp();
+      updatedDate = ReplicaRoutingContext.callOnPrimary(() -> bookRepository.findUpdatedDateByBookId(bookId))
+              .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+      bookCache.putUpdatedDateIfUnchanged(stamp, bookId, updatedDate);
+    }
+    Instant lastModified = toInstant(updatedDate);
+    return ResourceVersion.builder()
+            .etag("\"b" + bookId + "-" + Long.toHexString(toEpochMicros(lastModified)) + "\"")
+            .lastModified(lastModified)
+            .build();
+  }
+
+  //two index lookups on the change outbox, which every instance and write path moves; read on the primary, so the
+  //version is never older than a replica and never newer than the body read after it
+  @Override
+  public ResourceVersion getCatalogueVersion() {
+    String changeVersion = ReplicaRoutingContext.callOnPrimary(() -> bookRepository.findChangeVersion());
+    return ResourceVersion.builder()
+            .etag("\"c" + changeVersion + "\"")
+            .build();
+  }
+
+  //no transaction: the snapshot is rebuilt in the background after addBook, updateBook and deleteBook commit
+  @Override
+  public CatalogueSnapshot getCatalogueSnapshot(CatalogueSnapshot.View view) {
+    return catalogueSnapshotCache.get(view);
+  }
+
+  //hibernate stores LocalDateTime in the jvm zone
+  private static Instant toInstant(LocalDateTime localDateTime) {
+    return localDateTime.atZone(ZoneId.systemDefault()).toInstant();
+  }
+
+  private static long toEpochMicros(Instant instant) {
+    return ChronoUnit.MICROS.between(Instant.EPOCH, instant);
+  }
+
+  private void countOutcome(String operation, String outcome, double amount) {
+    meterRegistry.counter("book.outcome", "operation", operation, "outcome", outcome).increment(amount);
+  }
+
+  //listeners such as the cache react after commit, see BookCache#onBookChanged
+  private void publishBookChanged(BookChangedEvent.Type type, Integer bookId, BookResponse bookResponse) {
+    applicationEventPublisher.publishEvent(BookChangedEvent.builder()
+            .type(type)
+            .bookId(bookId)
+            .book(bookResponse)
+            .build());
+  }
+
+  static BookResponse toBookResponse(Book book) {
+    return BookInserts.toBookResponse(book);
+  }
+
+  //cursor is opaque to clients, it only wraps the last bookId of the previous page
+  static String encodeCursor(Integer bookId) {
+    return Base64.getUrlEncoder().withoutPadding()
+            .encodeToString(String.valueOf(bookId).getBytes(StandardCharsets.UTF_8));
+  }
+
+  static Integer decodeCursor(String cursor) {
+    if (cursor == null || cursor.isEmpty()) {
+      return 0;
+    }
+    try {
+      return Integer.valueOf(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+    } catch (IllegalArgumentException e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "invalid cursor " + cursor);
+    }
+  }
+
 }
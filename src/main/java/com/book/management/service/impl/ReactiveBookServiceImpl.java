@@ -0,0 +1,265 @@
+package com.book.management.service.impl;
+
+import com.book.management.cache.BookCache;
+import com.book.management.dto.request.AddBookRequest;
+import com.book.management.dto.request.BulkAddBookRequest;
+import com.book.management.dto.request.FindAllBooksFromAuthorRequest;
+import com.book.management.dto.request.UpdateBookRequest;
+import com.book.management.dto.response.BookResponse;
+import com.book.management.dto.response.BulkAddBookResponse;
+import com.book.management.dto.response.DataResponse;
+import com.book.management.event.BookChangedEvent;
+import com.book.management.index.BookSearchIndex;
+import com.book.management.repository.IsbnConstraint;
+import com.book.management.service.ReactiveBookService;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Row;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Non-blocking {@link ReactiveBookService} on R2DBC, active with the reactive profile.
+ * List queries are fetched from a postgres portal in chunks of FETCH_SIZE rows as the subscriber requests them,
+ * so a slow client slows down the query instead of buffering the table. Changes publish the same
+ * {@link BookChangedEvent} as BookServiceImpl so the cache, isbn filter and search index stay in sync.
+ */
+@Slf4j
+@Service
+@Profile("reactive")
+public class ReactiveBookServiceImpl implements ReactiveBookService {
+
+  static final int FETCH_SIZE = 500;
+  private static final String SELECT_BOOK = "SELECT book_id, isbn, book_title, book_author, version FROM book";
+
+  private final DatabaseClient databaseClient;
+  private final TransactionalOperator transactionalOperator;
+
+  @Autowired
+  private BookCache bookCache;
+
+  @Autowired
+  private BookSearchIndex bookSearchIndex;
+
+  @Autowired
+  private ApplicationEventPublisher applicationEventPublisher;
+
+  //the r2dbc transaction manager is not a bean so @Transactional keeps resolving to the jpa one
+  public ReactiveBookServiceImpl(DatabaseClient databaseClient, ConnectionFactory connectionFactory) {
+    this.databaseClient = databaseClient;
+    this.transactionalOperator = TransactionalOperator.create(new R2dbcTransactionManager(connectionFactory));
+  }
+
+  @Override
+  public Mono<DataResponse<Object>> addBook(AddBookRequest addBookRequest) {
+    return insertIfAbsent(addBookRequest)
+            .map(bookResponse -> {
+              publishBookChanged(BookChangedEvent.Type.ADDED, bookResponse.getBookId(), bookResponse);
+              log.info("Book added successfully");
+              return DataResponse.builder().data(bookResponse).build();
+            })
+            .defaultIfEmpty(DataResponse.builder()
+                    .data("Book with isbn " + addBookRequest.getIsbn() + " already exist")
+                    .build());
+  }
+
+  @Override
+  public Mono<DataResponse<Object>> bulkAddBook(BulkAddBookRequest bulkAddBookRequest) {
+    List<BookResponse> bookResponses = new ArrayList<>();
+    List<Long> duplicateIsbns = new ArrayList<>();
+    //concatMap keeps one insert in flight on the transaction connection and the lists single-threaded
+    return Flux.fromIterable(bulkAddBookRequest.getBooks())
+            .concatMap(addBookRequest -> insertIfAbsent(addBookRequest)
+                    .doOnNext(bookResponses::add)
+                    .switchIfEmpty(Mono.fromRunnable(() -> duplicateIsbns.add(addBookRequest.getIsbn()))))
+            .as(transactionalOperator::transactional)
+            .then(Mono.fromSupplier(() -> {
+              bookResponses.forEach(data -> publishBookChanged(BookChangedEvent.Type.ADDED, data.getBookId(), data));
+              log.info("There are {} book added and {} duplicate isbn skipped", bookResponses.size(), duplicateIsbns.size());
+              return DataResponse.builder()
+                      .data(BulkAddBookResponse.builder()
+                              .books(bookResponses)
+                              .duplicateIsbns(duplicateIsbns)
+                              .build())
+                      .build();
+            }));
+  }
+
+  //without a limit the rest of the table after the cursor is streamed, the client cancelling stops the query;
+  //after is the same keyset cursor as BookServiceImpl#getAllBooks(Integer, String)
+  @Override
+  public Flux<BookResponse> getAllBooks(Integer limit, String after) {
+    if (limit != null && (limit < 1 || limit > BookServiceImpl.MAX_PAGE_LIMIT)) {
+      return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+              "limit must be between 1 and " + BookServiceImpl.MAX_PAGE_LIMIT));
+    }
+    Integer afterBookId;
+    try {
+      afterBookId = BookServiceImpl.decodeCursor(after);
+    } catch (ResponseStatusException e) {
+      return Flux.error(e);
+    }
+    return databaseClient.sql(SELECT_BOOK + " WHERE book_id > :afterBookId ORDER BY book_id"
+                    + (limit == null ? "" : " LIMIT " + limit))
+            .bind("afterBookId", afterBookId)
+            .filter(statement -> statement.fetchSize(FETCH_SIZE))
+            .map(ReactiveBookServiceImpl::toBookResponse)
+            .all();
+  }
+
+  @Override
+  public Mono<DataResponse<Object>> getBook(Integer bookId) {
+    return Mono.justOrEmpty(bookCache.get(bookId))
+            .switchIfEmpty(Mono.defer(() -> {
+              long stamp = bookCache.stamp();
+              return databaseClient.sql(SELECT_BOOK + " WHERE book_id = :bookId")
+                      .bind("bookId", bookId)
+                      .map(ReactiveBookServiceImpl::toBookResponse)
+                      .one()
+                      .doOnNext(bookResponse -> bookCache.putIfUnchanged(stamp, bookResponse));
+            }))
+            .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
+            .map(bookResponse -> DataResponse.builder().data(bookResponse).build());
+  }
+
+  @Override
+  public Mono<DataResponse<Object>> updateBook(UpdateBookRequest updateBookRequest) {
+    Integer version = updateBookRequest.getVersion();
+    DatabaseClient.GenericExecuteSpec update = databaseClient.sql("UPDATE book SET isbn = :isbn, "
+                    + "book_title = :bookTitle, book_author = :bookAuthor, updated_date = CURRENT_TIMESTAMP, "
+                    + "version = version + 1 WHERE book_id = :bookId" + (version == null ? "" : " AND version = :version")
+                    + " RETURNING book_id, isbn, book_title, book_author, version")
+            .bind("isbn", updateBookRequest.getIsbn())
+            .bind("bookTitle", updateBookRequest.getBookTitle())
+            .bind("bookAuthor", updateBookRequest.getBookAuthor())
+            .bind("bookId", updateBookRequest.getBookId());
+    if (version != null) {
+      update = update.bind("version", version);
+    }
+    return update
+            .map(ReactiveBookServiceImpl::toBookResponse)
+            .one()
+            .switchIfEmpty(Mono.defer(() -> missingOrStale(updateBookRequest.getBookId(), version)))
+            .onErrorMap(IsbnConstraint::isViolatedBy, e -> new ResponseStatusException(HttpStatus.CONFLICT,
+                    "Book with isbn " + updateBookRequest.getIsbn() + " already exist"))
+            .map(bookResponse -> {
+              publishBookChanged(BookChangedEvent.Type.UPDATED, bookResponse.getBookId(), bookResponse);
+              log.info("Book record with bookId {} found and updated !", updateBookRequest.getBookId());
+              return DataResponse.builder().data(bookResponse).build();
+            });
+  }
+
+  @Override
+  public Mono<DataResponse<Object>> deleteBook(Integer bookId, Integer version) {
+    DatabaseClient.GenericExecuteSpec delete = databaseClient.sql("DELETE FROM book WHERE book_id = :bookId"
+                    + (version == null ? "" : " AND version = :version") + " RETURNING book_id")
+            .bind("bookId", bookId);
+    if (version != null) {
+      delete = delete.bind("version", version);
+    }
+    return delete
+            .map(row -> bookId)
+            .one()
+            .switchIfEmpty(Mono.defer(() -> missingOrStale(bookId, version)))
+            .map(deletedBookId -> {
+              publishBookChanged(BookChangedEvent.Type.DELETED, deletedBookId, null);
+              String bookResponse = "Successfully Delete Book with bookId " + deletedBookId;
+              log.info(bookResponse);
+              return DataResponse.builder().data(bookResponse).build();
+            });
+  }
+
+  @Override
+  public Flux<BookResponse> findAllBooksFromAuthor(FindAllBooksFromAuthorRequest findAllBooksFromAuthorRequest) {
+    return databaseClient.sql(SELECT_BOOK + " WHERE book_author = :bookAuthor")
+            .bind("bookAuthor", findAllBooksFromAuthorRequest.getBookAuthor())
+            .filter(statement -> statement.fetchSize(FETCH_SIZE))
+            .map(ReactiveBookServiceImpl::toBookResponse)
+            .all();
+  }
+
+  @Override
+  public Flux<BookResponse> findAllBooksOrderByIsbn() {
+    return selectBooks(SELECT_BOOK + " ORDER BY isbn DESC");
+  }
+
+  //the index is in memory and cheap to query, it only has to stay off the event loop while the write lock is held
+  @Override
+  public Mono<DataResponse<Object>> searchBooks(String query, Integer limit) {
+    int searchLimit = limit == null ? BookServiceImpl.DEFAULT_SEARCH_LIMIT : limit;
+    if (query == null || query.isBlank() || searchLimit < 1 || searchLimit > BookServiceImpl.MAX_SEARCH_LIMIT) {
+      return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+              "q must not be blank and limit must be between 1 and " + BookServiceImpl.MAX_SEARCH_LIMIT));
+    }
+    return Mono.fromCallable(() -> bookSearchIndex.search(query, searchLimit))
+            .subscribeOn(Schedulers.boundedElastic())
+            .map(bookResponses -> DataResponse.builder().data(bookResponses).build());
+  }
+
+  private Flux<BookResponse> selectBooks(String sql) {
+    return databaseClient.sql(sql)
+            .filter(statement -> statement.fetchSize(FETCH_SIZE))
+            .map(ReactiveBookServiceImpl::toBookResponse)
+            .all();
+  }
+
+  //same single statement duplicate check as BookRepository#insertIfAbsent
+  private Mono<BookResponse> insertIfAbsent(AddBookRequest addBookRequest) {
+    return databaseClient.sql("INSERT INTO book (isbn, book_title, book_author, created_date, updated_date) "
+                    + "VALUES (:isbn, :bookTitle, :bookAuthor, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP) "
+                    + "ON CONFLICT (isbn) DO NOTHING RETURNING book_id, isbn, book_title, book_author, version")
+            .bind("isbn", addBookRequest.getIsbn())
+            .bind("bookTitle", addBookRequest.getBookTitle())
+            .bind("bookAuthor", addBookRequest.getBookAuthor())
+            .map(ReactiveBookServiceImpl::toBookResponse)
+            .one();
+  }
+
+  private void publishBookChanged(BookChangedEvent.Type type, Integer bookId, BookResponse bookResponse) {
+    applicationEventPublisher.publishEvent(BookChangedEvent.builder()
+            .type(type)
+            .bookId(bookId)
+            .book(bookResponse)
+            .build());
+  }
+
+  //nothing was updated or deleted: a stale version when the book is still there, otherwise it does not exist
+  private <T> Mono<T> missingOrStale(Integer bookId, Integer version) {
+    if (version == null) {
+      return Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND));
+    }
+    return databaseClient.sql("SELECT 1 FROM book WHERE book_id = :bookId")
+            .bind("bookId", bookId)
+            .map(row -> true)
+            .one()
+            .defaultIfEmpty(false)
+            .flatMap(exists -> Mono.error(exists
+                    ? new ResponseStatusException(HttpStatus.CONFLICT,
+                            "Book with bookId " + bookId + " was changed since version " + version)
+                    : new ResponseStatusException(HttpStatus.NOT_FOUND)));
+  }
+
+  static BookResponse toBookResponse(Row row) {
+    return BookResponse.builder()
+            .bookId(row.get("book_id", Integer.class))
+            .isbn(row.get("isbn", Long.class))
+            .bookTitle(row.get("book_title", String.class))
+            .bookAuthor(row.get("book_author", String.class))
+            .version(row.get("version", Integer.class))
+            .build();
+  }
+
+}
@@ -0,0 +1,85 @@
+package com.book.management.timing;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request stage durations written as the Server-Timing header by {@link ServerTimingFilter}.
+ * Only sampled requests carry one; everywhere else {@link #start()} returns 0 and {@link #stop} does nothing,
+ * so the hot path pays a thread-local read per measured stage.
+ */
+public final class ServerTiming {
+
+  public enum Stage { DB, MAP }
+
+  private static final ThreadLocal<ServerTiming> CURRENT = new ThreadLocal<>();
+
+  private final long startTime;
+  private final long[] durations = new long[Stage.values().length];
+  private final int[] counts = new int[Stage.values().length];
+  //when the handler returned and the message converter started writing the body, 0 until then
+  private long serializationStart;
+
+  ServerTiming(long startTime) {
+    this.startTime = startTime;
+  }
+
+  //start time of a stage, 0 when the current request is not timed
+  public static long start() {
+    return CURRENT.get() == null ? 0 : System.nanoTime();
+  }
+
+  public static void stop(Stage stage, long startTime) {
+    if (startTime != 0) {
+      record(stage, System.nanoTime() - startTime);
+    }
+  }
+
+  public static void record(Stage stage, long nanos) {
+    ServerTiming serverTiming = CURRENT.get();
+    if (serverTiming != null) {
+      serverTiming.durations[stage.ordinal()] += nanos;
+      serverTiming.counts[stage.ordinal()]++;
+    }
+  }
+
+  static ServerTiming begin() {
+    ServerTiming serverTiming = new ServerTiming(System.nanoTime());
+    CURRENT.set(serverTiming);
+    return serverTiming;
+  }
+
+  static void resume(ServerTiming serverTiming) {
+    CURRENT.set(serverTiming);
+  }
+
+  static void end() {
+    CURRENT.remove();
+  }
+
+  static void markSerializationStart() {
+    ServerTiming serverTiming = CURRENT.get();
+    if (serverTiming != null && serverTiming.serializationStart == 0) {
+      serverTiming.serializationStart = System.nanoTime();
+    }
+  }
+
+  //db;dur=1.204;desc="2 calls", map;dur=0.031, app;dur=1.950, ser;dur=3.117, total;dur=5.102 in milliseconds
+  String toHeader(long endTime) {
+    long handlerEnd = serializationStart == 0 ? endTime : serializationStart;
+    StringBuilder header = new StringBuilder(128);
+    header.append("db;dur=").append(millis(durations[Stage.DB.ordinal()]))
+            .append(";desc=\"").append(counts[Stage.DB.ordinal()]).append(" calls\"");
+    header.append(", map;dur=").append(millis(durations[Stage.MAP.ordinal()]));
+    header.append(", app;dur=").append(millis(handlerEnd - startTime));
+    if (serializationStart != 0) {
+      header.append(", ser;dur=").append(millis(endTime - serializationStart));
+    }
+    header.append(", total;dur=").append(millis(endTime - startTime));
+    return header.toString();
+  }
+
+  private static String millis(long nanos) {
+    return String.format(Locale.ROOT, "%.3f", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+  }
+}
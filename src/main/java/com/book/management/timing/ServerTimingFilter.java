@@ -0,0 +1,81 @@
+package com.book.management.timing;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.WebUtils;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Adds a Server-Timing header with the db, map, app (handler) and ser (message converter) durations to requests
+ * sent with X-Server-Timing: true and to a book.server-timing.sample-rate share of the others.
+ * A timed response body is buffered so the header can follow serialization, untimed requests pass straight through.
+ */
+@Component
+public class ServerTimingFilter extends OncePerRequestFilter {
+
+  static final String REQUEST_HEADER = "X-Server-Timing";
+  static final String RESPONSE_HEADER = "Server-Timing";
+  private static final String TIMING_ATTRIBUTE = ServerTimingFilter.class.getName() + ".TIMING";
+
+  private final double sampleRate;
+
+  public ServerTimingFilter(@Value("${book.server-timing.sample-rate:0}") double sampleRate) {
+    this.sampleRate = sampleRate;
+  }
+
+  //the export is streamed, buffering it for a header would hold every book in memory
+  @Override
+  protected boolean shouldNotFilter(HttpServletRequest request) {
+    return request.getRequestURI().endsWith("/export");
+  }
+
+  //an async request is finished on its last dispatch, see doFilterInternal
+  @Override
+  protected boolean shouldNotFilterAsyncDispatch() {
+    return false;
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+          throws ServletException, IOException {
+    ServerTiming serverTiming = (ServerTiming) request.getAttribute(TIMING_ATTRIBUTE);
+    if (serverTiming == null) {
+      if (isAsyncDispatch(request) || !sampled(request)) {
+        filterChain.doFilter(request, response);
+        return;
+      }
+      serverTiming = ServerTiming.begin();
+      request.setAttribute(TIMING_ATTRIBUTE, serverTiming);
+    } else {
+      ServerTiming.resume(serverTiming);
+    }
+
+    ContentCachingResponseWrapper responseWrapper =
+            WebUtils.getNativeResponse(response, ContentCachingResponseWrapper.class);
+    if (responseWrapper == null) {
+      responseWrapper = new ContentCachingResponseWrapper(response);
+    }
+    try {
+      filterChain.doFilter(request, responseWrapper);
+    } finally {
+      ServerTiming.end();
+    }
+    if (!isAsyncStarted(request)) {
+      responseWrapper.setHeader(RESPONSE_HEADER, serverTiming.toHeader(System.nanoTime()));
+      responseWrapper.copyBodyToResponse();
+    }
+  }
+
+  private boolean sampled(HttpServletRequest request) {
+    return "true".equalsIgnoreCase(request.getHeader(REQUEST_HEADER))
+            || (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+  }
+}
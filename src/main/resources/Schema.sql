@@ -1,4 +1,6 @@
 DROP TABLE IF EXISTS book;
+DROP TABLE IF EXISTS book_change;
+DROP SEQUENCE IF EXISTS book_change_seq;
 CREATE TABLE book (
     created_date timestamp NOT NULL,
     updated_date timestamp NOT NULL,
@@ -6,18 +8,58 @@ CREATE TABLE book (
     isbn bigint NOT NULL,
     book_title varchar(50) NOT NULL,
     book_author varchar(50) NOT NULL,
+    version integer NOT NULL DEFAULT 0,
     PRIMARY KEY ("book_id")
 );
 
-ALTER TABLE public.book ALTER COLUMN book_id ADD GENERATED BY DEFAULT AS IDENTITY (
-    SEQUENCE NAME public.book_book_id_seq
+CREATE UNIQUE INDEX book_isbn_key ON book (isbn);
+
+ALTER TABLE book ALTER COLUMN book_id ADD GENERATED BY DEFAULT AS IDENTITY (
+    SEQUENCE NAME book_book_id_seq
     START WITH 1
-    INCREMENT BY 1
+    INCREMENT BY 50
     NO MINVALUE
     NO MAXVALUE
     CACHE 1
 );
 
+-- outbox behind GET /api/book/changes: the trigger writes one row per book insert, update and delete in the writing
+-- transaction, whatever the path (jpa, native, batch, group commit, r2dbc). seq is handed out later, in commit order,
+-- once no transaction that could still add an earlier row is running (BookRepositoryCustomImpl#sequenceChanges)
+CREATE TABLE book_change (
+    change_id bigint GENERATED ALWAYS AS IDENTITY,
+    seq bigint,
+    txid bigint NOT NULL DEFAULT txid_current(),
+    change_type varchar(7) NOT NULL,
+    book_id integer NOT NULL,
+    isbn bigint,
+    book_title varchar(50),
+    book_author varchar(50),
+    version integer,
+    PRIMARY KEY ("change_id")
+);
+
+CREATE SEQUENCE book_change_seq;
+CREATE UNIQUE INDEX book_change_seq_key ON book_change (seq);
+CREATE INDEX book_change_unsequenced_idx ON book_change (change_id) WHERE seq IS NULL;
+
+-- single quoted body rather than $$, the sql init script splitter only knows quotes
+CREATE OR REPLACE FUNCTION book_change_capture() RETURNS trigger AS '
+BEGIN
+    IF TG_OP = ''DELETE'' THEN
+        INSERT INTO book_change (change_type, book_id) VALUES (''DELETED'', OLD.book_id);
+        RETURN OLD;
+    END IF;
+    INSERT INTO book_change (change_type, book_id, isbn, book_title, book_author, version)
+    VALUES (CASE TG_OP WHEN ''INSERT'' THEN ''ADDED'' ELSE ''UPDATED'' END,
+            NEW.book_id, NEW.isbn, NEW.book_title, NEW.book_author, NEW.version);
+    RETURN NEW;
+END;
+' LANGUAGE plpgsql;
+
+CREATE TRIGGER book_change_capture AFTER INSERT OR UPDATE OR DELETE ON book
+    FOR EACH ROW EXECUTE FUNCTION book_change_capture();
+
 INSERT INTO book(isbn, book_title, book_author, created_date, updated_date)
 VALUES(9780062315007, 'The Alchemist', 'Paulo Coelho', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP );
 
@@ -0,0 +1,201 @@
+package com.book.management.cache;
+
+import com.book.management.dto.response.BookResponse;
+import com.book.management.dto.response.CatalogueSnapshot;
+import com.book.management.dto.response.DataResponse;
+import com.book.management.event.BookChangedEvent;
+import com.book.management.repository.BookRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CatalogueSnapshotCacheTest {
+
+    @Mock
+    BookRepository bookRepository;
+
+    ObjectMapper objectMapper = new ObjectMapper();
+
+    CatalogueSnapshotCache catalogueSnapshotCache;
+
+    BookResponse alchemist;
+    BookResponse sorcerersStone;
+
+    @BeforeEach
+    void setUp() {
+        alchemist = BookResponse.builder()
+                .bookId(1)
+                .isbn(9780062315007L)
+                .bookTitle("The Alchemist")
+                .bookAuthor("Paulo Coelho")
+                .build();
+        sorcerersStone = BookResponse.builder()
+                .bookId(2)
+                .isbn(9780439708180L)
+                .bookTitle("Harry Potter and the Sorcerer's Stone (#1)")
+                .bookAuthor("J.K. Rowling")
+                .build();
+
+        //the debounced rebuild is an hour away, so only the first build and explicit rebuilds run
+        catalogueSnapshotCache = new CatalogueSnapshotCache(true, Duration.ofHours(1), Duration.ofHours(2));
+        ReflectionTestUtils.setField(catalogueSnapshotCache, "bookRepository", bookRepository);
+        ReflectionTestUtils.setField(catalogueSnapshotCache, "objectMapper", objectMapper);
+    }
+
+    @AfterEach
+    void tearDown() {
+        catalogueSnapshotCache.close();
+    }
+
+    //test the first get starts the build and the snapshot holds the same json as the live route, plain and gzip
+    @Test
+    void get_buildsOnFirstUse() throws Exception {
+        //given
+        when(bookRepository.findAllBookResponses()).thenReturn(List.of(alchemist, sorcerersStone));
+        when(bookRepository.findAllBooksOrderByIsbn()).thenReturn(List.of(sorcerersStone, alchemist));
+
+        //when
+        assertNull(catalogueSnapshotCache.get(CatalogueSnapshot.View.ALL_BOOKS));
+        CatalogueSnapshot catalogueSnapshot = awaitSnapshot(CatalogueSnapshot.View.ALL_BOOKS);
+
+        //then
+        byte[] expected = objectMapper.writeValueAsBytes(DataResponse.builder()
+                .data(List.of(alchemist, sorcerersStone))
+                .build());
+        assertArrayEquals(expected, catalogueSnapshot.getJson());
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(catalogueSnapshot.getGzip()))) {
+            assertArrayEquals(expected, gzip.readAllBytes());
+        }
+        assertEquals(2, catalogueSnapshot.getBookCount());
+        assertTrue(catalogueSnapshot.getEtag().matches("\"s[0-9a-f]{16}\""));
+        assertNotEquals(catalogueSnapshot.getEtag(), awaitSnapshot(CatalogueSnapshot.View.ORDERED_BY_ISBN).getEtag());
+    }
+
+    //test a change keeps the snapshot served within the bound and counts as stale until the rebuild
+    @Test
+    void onBookChanged_staleUntilRebuild() throws Exception {
+        //given
+        when(bookRepository.findAllBookResponses())
+                .thenReturn(List.of(alchemist))
+                .thenReturn(List.of(alchemist, sorcerersStone));
+        when(bookRepository.findAllBooksOrderByIsbn())
+                .thenReturn(List.of(alchemist))
+                .thenReturn(List.of(sorcerersStone, alchemist));
+        catalogueSnapshotCache.get(CatalogueSnapshot.View.ALL_BOOKS);
+        CatalogueSnapshot before = awaitSnapshot(CatalogueSnapshot.View.ALL_BOOKS);
+        assertEquals(0, catalogueSnapshotCache.stalenessSeconds());
+
+        //when
+        catalogueSnapshotCache.onBookChanged(BookChangedEvent.builder()
+                .type(BookChangedEvent.Type.ADDED)
+                .bookId(sorcerersStone.getBookId())
+                .book(sorcerersStone)
+                .build());
+
+        //then
+        assertTrue(catalogueSnapshotCache.stalenessSeconds() > 0);
+        assertSame(before, catalogueSnapshotCache.get(CatalogueSnapshot.View.ALL_BOOKS));
+
+        catalogueSnapshotCache.rebuild();
+        assertEquals(0, catalogueSnapshotCache.stalenessSeconds());
+        assertEquals(2, catalogueSnapshotCache.get(CatalogueSnapshot.View.ALL_BOOKS).getBookCount());
+    }
+
+    //test a snapshot missing a change older than the bound is not served
+    @Test
+    void get_staleBeyondBound() throws Exception {
+        //given
+        when(bookRepository.findAllBookResponses()).thenReturn(List.of(alchemist));
+        when(bookRepository.findAllBooksOrderByIsbn()).thenReturn(List.of(alchemist));
+        catalogueSnapshotCache.get(CatalogueSnapshot.View.ALL_BOOKS);
+        awaitSnapshot(CatalogueSnapshot.View.ALL_BOOKS);
+
+        //when
+        ReflectionTestUtils.setField(catalogueSnapshotCache, "dirtySince", System.nanoTime() - Duration.ofHours(3).toNanos());
+
+        //then
+        assertNull(catalogueSnapshotCache.get(CatalogueSnapshot.View.ALL_BOOKS));
+    }
+
+    //test a change committed elsewhere is found by the poll, which marks the snapshot stale until the rebuild
+    @Test
+    void poll_changeFromElsewhere() throws Exception {
+        //given
+        when(bookRepository.findChangeVersion()).thenReturn("2a.1f").thenReturn("2b.1f");
+        when(bookRepository.findAllBookResponses())
+                .thenReturn(List.of(alchemist))
+                .thenReturn(List.of(alchemist, sorcerersStone));
+        when(bookRepository.findAllBooksOrderByIsbn())
+                .thenReturn(List.of(alchemist))
+                .thenReturn(List.of(sorcerersStone, alchemist));
+        catalogueSnapshotCache.get(CatalogueSnapshot.View.ALL_BOOKS);
+        awaitSnapshot(CatalogueSnapshot.View.ALL_BOOKS);
+
+        //when
+        catalogueSnapshotCache.poll();
+
+        //then
+        assertTrue(catalogueSnapshotCache.stalenessSeconds() > 0);
+        verify(bookRepository).sequenceChanges();
+        catalogueSnapshotCache.rebuild();
+        assertEquals(0, catalogueSnapshotCache.stalenessSeconds());
+        assertEquals(2, catalogueSnapshotCache.get(CatalogueSnapshot.View.ALL_BOOKS).getBookCount());
+    }
+
+    //test a snapshot not checked against the database within the bound is not served until a poll finds it current
+    @Test
+    void get_unverifiedBeyondBound() throws Exception {
+        //given
+        when(bookRepository.findChangeVersion()).thenReturn("2a.1f");
+        when(bookRepository.findAllBookResponses()).thenReturn(List.of(alchemist));
+        when(bookRepository.findAllBooksOrderByIsbn()).thenReturn(List.of(alchemist));
+        catalogueSnapshotCache.get(CatalogueSnapshot.View.ALL_BOOKS);
+        awaitSnapshot(CatalogueSnapshot.View.ALL_BOOKS);
+
+        //when
+        ReflectionTestUtils.setField(catalogueSnapshotCache, "verifiedAt", System.nanoTime() - Duration.ofHours(3).toNanos());
+
+        //then
+        assertNull(catalogueSnapshotCache.get(CatalogueSnapshot.View.ALL_BOOKS));
+        catalogueSnapshotCache.poll();
+        assertNotNull(catalogueSnapshotCache.get(CatalogueSnapshot.View.ALL_BOOKS));
+        assertEquals(0, catalogueSnapshotCache.stalenessSeconds());
+    }
+
+    //test changes are ignored until a route asks for a snapshot
+    @Test
+    void onBookChanged_inactive() {
+        catalogueSnapshotCache.onBookChanged(BookChangedEvent.builder()
+                .type(BookChangedEvent.Type.DELETED)
+                .bookId(1)
+                .build());
+
+        assertEquals(0, catalogueSnapshotCache.stalenessSeconds());
+        verifyNoInteractions(bookRepository);
+    }
+
+    private CatalogueSnapshot awaitSnapshot(CatalogueSnapshot.View view) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            CatalogueSnapshot catalogueSnapshot = catalogueSnapshotCache.get(view);
+            if (catalogueSnapshot != null) {
+                return catalogueSnapshot;
+            }
+            Thread.sleep(50);
+        }
+        return fail("snapshot was not built");
+    }
+}
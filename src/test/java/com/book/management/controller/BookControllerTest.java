@@ -1,13 +1,30 @@
 package com.book.management.controller;
 
 import com.book.management.dto.request.AddBookRequest;
+import com.book.management.dto.request.BatchBookRequest;
+import com.book.management.dto.request.BatchOperationRequest;
+import com.book.management.dto.request.BulkAddBookRequest;
 import com.book.management.dto.request.FindAllBooksFromAuthorRequest;
+import com.book.management.dto.request.MultiGetBookRequest;
+import com.book.management.dto.request.PatchBookRequest;
 import com.book.management.dto.request.UpdateBookRequest;
+import com.book.management.dto.response.AuthorCountResponse;
+import com.book.management.dto.response.BookChangePageResponse;
+import com.book.management.dto.response.BookChangeResponse;
+import com.book.management.dto.response.BookPageResponse;
 import com.book.management.dto.response.BookResponse;
+import com.book.management.dto.response.BookStatsResponse;
+import com.book.management.dto.response.BulkAddBookResponse;
+import com.book.management.dto.response.CatalogueSnapshot;
 import com.book.management.dto.response.DataResponse;
+import com.book.management.dto.response.MultiGetBookResponse;
+import com.book.management.dto.response.ResourceVersion;
 import com.book.management.entity.Book;
+import com.book.management.event.BookChangedEvent;
 import com.book.management.service.BookService;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -17,20 +34,26 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultHandlers;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(controllers = BookController.class)
@@ -392,7 +415,7 @@ class BookControllerTest {
                 .build();
 
         //given
-        when(bookService.deleteBook(bookModel.getBookId())).thenReturn(dataResponse);
+        when(bookService.deleteBook(bookModel.getBookId(), null)).thenReturn(dataResponse);
 
         //when
         MockHttpServletResponse response = mockMvc.perform(delete("/api/book/delete/{bookId}", bookModel.getBookId())
@@ -404,7 +427,7 @@ class BookControllerTest {
                 .andDo(MockMvcResultHandlers.print())
                 .andReturn().getResponse();
 
-        verify(bookService, times(1)).deleteBook(bookModel.getBookId());
+        verify(bookService, times(1)).deleteBook(bookModel.getBookId(), null);
         assertEquals(response.getStatus(), HttpStatus.OK.value());
         assertEquals(response.getContentType(), MediaType.APPLICATION_JSON.toString());
         assertFalse(response.getContentAsString().isEmpty());
@@ -415,7 +438,7 @@ class BookControllerTest {
     @Test
     void deleteBook_bookNotFound() throws Exception {
         //given
-        when(bookService.deleteBook(100)).thenThrow(new ResponseStatusException(HttpStatus.NOT_FOUND));
+        when(bookService.deleteBook(100, null)).thenThrow(new ResponseStatusException(HttpStatus.NOT_FOUND));
 
         //when
         MockHttpServletResponse response = mockMvc.perform(delete("/api/book/delete/{bookId}", 100)
@@ -425,7 +448,7 @@ class BookControllerTest {
                 .getResponse();
 
         //then
-        verify(bookService, times(1)).deleteBook(100);
+        verify(bookService, times(1)).deleteBook(100, null);
         assertEquals(response.getStatus(), HttpStatus.NOT_FOUND.value());
         assertTrue(response.getContentAsString().isEmpty());
 
@@ -602,7 +625,613 @@ class BookControllerTest {
 
     }
 
+    //test getAllBooks method when a page is requested
+    @Test
+    void getAllBooksPage_success() throws Exception {
+        //simulate data response for return object
+        DataResponse<Object> dataResponse = DataResponse.builder()
+                .data(BookPageResponse.builder()
+                        .books(List.of(BookResponse.builder()
+                                .bookId(bookModel.getBookId())
+                                .isbn(bookModel.getIsbn())
+                                .bookTitle(bookModel.getBookTitle())
+                                .bookAuthor(bookModel.getBookAuthor())
+                                .build()))
+                        .nextCursor("MQ")
+                        .build())
+                .build();
+
+        //given
+        when(bookService.getAllBooks(1, null)).thenReturn(dataResponse);
+
+        //when
+        MockHttpServletResponse response = mockMvc.perform(get("/api/book/list")
+                        .param("limit", "1")
+                        .contentType(MediaType.APPLICATION_JSON))
+
+                //then
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.books[0].bookId").value(bookModel.getBookId()))
+                .andExpect(jsonPath("$.data.nextCursor").value("MQ"))
+                .andDo(MockMvcResultHandlers.print())
+                .andReturn().getResponse();
+
+        verify(bookService, times(1)).getAllBooks(1, null);
+        verify(bookService, never()).getAllBooks();
+        verify(bookService, never()).getCatalogueVersion();
+        assertNull(response.getHeader("ETag"));
+        assertEquals(response.getStatus(), HttpStatus.OK.value());
+    }
+
+    //test exportBooks method streams ndjson lines
+    @Test
+    void exportBooks_success() throws Exception {
+        String line = mapper.writeValueAsString(BookResponse.builder()
+                .bookId(bookModel.getBookId())
+                .isbn(bookModel.getIsbn())
+                .bookTitle(bookModel.getBookTitle())
+                .bookAuthor(bookModel.getBookAuthor())
+                .build()) + "\n";
+
+        //given
+        doAnswer(invocation -> {
+            OutputStream outputStream = invocation.getArgument(0);
+            outputStream.write(line.getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(bookService).exportBooks(any(OutputStream.class));
+
+        //when
+        MvcResult mvcResult = mockMvc.perform(get("/api/book/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MockHttpServletResponse response = mockMvc.perform(asyncDispatch(mvcResult))
+
+                //then
+                .andExpect(status().isOk())
+                .andDo(MockMvcResultHandlers.print())
+                .andReturn().getResponse();
+
+        verify(bookService, times(1)).exportBooks(any(OutputStream.class));
+        assertEquals(response.getContentType(), MediaType.APPLICATION_NDJSON_VALUE);
+        assertEquals(response.getContentAsString(), line);
+    }
+
+    //test bulkAddBook method when success
+    @Test
+    void bulkAddBook_success() throws Exception {
+        //create bulk add book request object
+        BulkAddBookRequest bulkAddBookRequest = BulkAddBookRequest.builder()
+                .books(List.of(AddBookRequest.builder()
+                        .isbn(9780439708180L)
+                        .bookTitle("Harry Potter and the Sorcerer's Stone (#1)")
+                        .bookAuthor("J.K. Rowling")
+                        .build()))
+                .build();
+
+        //simulate data response for return object
+        DataResponse<Object> dataResponse = DataResponse.builder()
+                .data(BulkAddBookResponse.builder()
+                        .books(List.of(BookResponse.builder()
+                                .bookId(3)
+                                .isbn(9780439708180L)
+                                .bookTitle("Harry Potter and the Sorcerer's Stone (#1)")
+                                .bookAuthor("J.K. Rowling")
+                                .build()))
+                        .duplicateIsbns(List.of())
+                        .build())
+                .build();
+
+        //given
+        when(bookService.bulkAddBook(bulkAddBookRequest)).thenReturn(dataResponse);
+
+        //when
+        MockHttpServletRequestBuilder mockRequest = MockMvcRequestBuilders.post("/api/book/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(bulkAddBookRequest));
+        MockHttpServletResponse response = mockMvc.perform(mockRequest)
+
+                //then
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.books[0].bookId").value(3))
+                .andExpect(jsonPath("$.data.duplicateIsbns").isEmpty())
+                .andDo(MockMvcResultHandlers.print())
+                .andReturn().getResponse();
+
+        verify(bookService, times(1)).bulkAddBook(bulkAddBookRequest);
+        assertEquals(response.getStatus(), HttpStatus.OK.value());
+    }
+
+    //test bulkAddBook method when fail because one book is invalid
+    @Test
+    void bulkAddBook_failBadRequest() throws Exception {
+        //create bulk add book request object with an empty book
+        BulkAddBookRequest bulkAddBookRequest = BulkAddBookRequest.builder()
+                .books(List.of(AddBookRequest.builder().build()))
+                .build();
+
+        //when
+        MockHttpServletRequestBuilder mockRequest = MockMvcRequestBuilders.post("/api/book/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(bulkAddBookRequest));
+        MockHttpServletResponse response = mockMvc.perform(mockRequest)
+                .andDo(MockMvcResultHandlers.print())
+                .andReturn()
+                .getResponse();
+
+        //then
+        verify(bookService, never()).bulkAddBook(any());
+        assertEquals(response.getStatus(), HttpStatus.BAD_REQUEST.value());
+    }
+
+    //test searchBooks method when success
+    @Test
+    void searchBooks_success() throws Exception {
+        //simulate data response for return object
+        DataResponse<Object> dataResponse = DataResponse.builder()
+                .data(List.of(BookResponse.builder()
+                        .bookId(bookModel.getBookId())
+                        .isbn(bookModel.getIsbn())
+                        .bookTitle(bookModel.getBookTitle())
+                        .bookAuthor(bookModel.getBookAuthor())
+                        .build()))
+                .build();
+
+        //given
+        when(bookService.searchBooks("alchemist", null)).thenReturn(dataResponse);
+
+        //when
+        MockHttpServletResponse response = mockMvc.perform(get("/api/book/search")
+                        .param("q", "alchemist"))
 
+                //then
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data[0].bookTitle").value(bookModel.getBookTitle()))
+                .andDo(MockMvcResultHandlers.print())
+                .andReturn().getResponse();
+
+        verify(bookService, times(1)).searchBooks("alchemist", null);
+        assertEquals(response.getStatus(), HttpStatus.OK.value());
+    }
+
+    //test getBook method sends etag and last modified with the body
+    @Test
+    void getBook_withVersion() throws Exception {
+        ResourceVersion resourceVersion = ResourceVersion.builder()
+                .etag("\"b1-5d4d6b3f0a2c1\"")
+                .lastModified(Instant.parse("2022-01-02T14:06:59Z"))
+                .build();
+        DataResponse<Object> dataResponse = DataResponse.builder()
+                .data(BookResponse.builder()
+                        .bookId(bookModel.getBookId())
+                        .bookTitle(bookModel.getBookTitle())
+                        .build())
+                .build();
+
+        //given
+        when(bookService.getBookVersion(1)).thenReturn(resourceVersion);
+        when(bookService.getBook(1)).thenReturn(dataResponse);
+
+        //when
+        MockHttpServletResponse response = mockMvc.perform(get("/api/book/id/{bookId}", 1))
+
+                //then
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.bookTitle").value(bookModel.getBookTitle()))
+                .andDo(MockMvcResultHandlers.print())
+                .andReturn().getResponse();
+
+        assertEquals(resourceVersion.getEtag(), response.getHeader("ETag"));
+        assertEquals(resourceVersion.getLastModified().toEpochMilli(), response.getDateHeader("Last-Modified"));
+        assertEquals("no-cache, public", response.getHeader("Cache-Control"));
+    }
+
+    //test getBook method answers 304 without loading the book when the etag matches
+    @Test
+    void getBook_notModified() throws Exception {
+        ResourceVersion resourceVersion = ResourceVersion.builder()
+                .etag("\"b1-5d4d6b3f0a2c1\"")
+                .lastModified(Instant.parse("2022-01-02T14:06:59Z"))
+                .build();
+
+        //given
+        when(bookService.getBookVersion(1)).thenReturn(resourceVersion);
+
+        //when
+        MockHttpServletResponse response = mockMvc.perform(get("/api/book/id/{bookId}", 1)
+                        .header("If-None-Match", resourceVersion.getEtag()))
+                .andDo(MockMvcResultHandlers.print())
+                .andReturn().getResponse();
+
+        //then
+        verify(bookService, never()).getBook(any());
+        assertEquals(HttpStatus.NOT_MODIFIED.value(), response.getStatus());
+        assertTrue(response.getContentAsString().isEmpty());
+    }
 
+    //test list method answers 304 from the catalogue version
+    @Test
+    void getAllBooks_notModified() throws Exception {
+        //given
+        when(bookService.getCatalogueVersion()).thenReturn(ResourceVersion.builder().etag("\"c2a.1f\"").build());
+
+        //when
+        MockHttpServletResponse response = mockMvc.perform(get("/api/book/list")
+                        .header("If-None-Match", "\"c2a.1f\""))
+                .andDo(MockMvcResultHandlers.print())
+                .andReturn().getResponse();
+
+        //then
+        verify(bookService, never()).getAllBooks();
+        assertEquals(HttpStatus.NOT_MODIFIED.value(), response.getStatus());
+    }
+
+    //test cacheable get form of findAllBooksFromAuthor
+    @Test
+    void findAllBooksFromAuthorGet_success() throws Exception {
+        FindAllBooksFromAuthorRequest findAllBooksFromAuthorRequest = FindAllBooksFromAuthorRequest.builder()
+                .bookAuthor(bookModel.getBookAuthor())
+                .build();
+        DataResponse<Object> dataResponse = DataResponse.builder()
+                .data(List.of(BookResponse.builder()
+                        .bookId(bookModel.getBookId())
+                        .bookTitle(bookModel.getBookTitle())
+                        .bookAuthor(bookModel.getBookAuthor())
+                        .build()))
+                .build();
+
+        //given
+        when(bookService.getCatalogueVersion())
+                .thenReturn(ResourceVersion.builder().etag("\"c2a.1f\"").build());
+        when(bookService.findAllBooksFromAuthor(findAllBooksFromAuthorRequest)).thenReturn(dataResponse);
+
+        //when
+        MockHttpServletResponse response = mockMvc.perform(get("/api/book/author")
+                        .param("name", bookModel.getBookAuthor()))
+
+                //then
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data[0].bookAuthor").value(bookModel.getBookAuthor()))
+                .andDo(MockMvcResultHandlers.print())
+                .andReturn().getResponse();
+
+        assertEquals("\"c2a.1f\"", response.getHeader("ETag"));
+        assertNull(response.getHeader("Last-Modified"));
+    }
 
-}
\ No newline at end of file
+    //test getBook method answers cbor with its own etag when the client asks for it
+    @Test
+    void getBook_cbor() throws Exception {
+        ResourceVersion resourceVersion = ResourceVersion.builder()
+                .etag("\"b1-5d4d6b3f0a2c1\"")
+                .lastModified(Instant.parse("2022-01-02T14:06:59Z"))
+                .build();
+        DataResponse<Object> dataResponse = DataResponse.builder()
+                .data(BookResponse.builder()
+                        .bookId(bookModel.getBookId())
+                        .bookTitle(bookModel.getBookTitle())
+                        .build())
+                .build();
+
+        //given
+        when(bookService.getBookVersion(1)).thenReturn(resourceVersion);
+        when(bookService.getBook(1)).thenReturn(dataResponse);
+
+        //when
+        MockHttpServletResponse response = mockMvc.perform(get("/api/book/id/{bookId}", 1)
+                        .accept(MediaType.APPLICATION_CBOR))
+
+                //then
+                .andExpect(status().isOk())
+                .andDo(MockMvcResultHandlers.print())
+                .andReturn().getResponse();
+
+        JsonNode body = new CBORMapper().readTree(response.getContentAsByteArray());
+        assertEquals(MediaType.APPLICATION_CBOR_VALUE, response.getContentType());
+        assertEquals(bookModel.getBookTitle(), body.at("/data/bookTitle").asText());
+        assertEquals("\"b1-5d4d6b3f0a2c1-cbor\"", response.getHeader("ETag"));
+        assertEquals("Accept", response.getHeader("Vary"));
+    }
+
+    //test list method writes the pre-encoded snapshot without querying or serializing
+    @Test
+    void getAllBooks_snapshot() throws Exception {
+        byte[] json = "{\"data\":[]}".getBytes(StandardCharsets.UTF_8);
+        CatalogueSnapshot catalogueSnapshot = CatalogueSnapshot.builder()
+                .etag("\"s5d4d6b3f0a2c1\"")
+                .json(json)
+                .gzip(new byte[]{31, -117})
+                .build();
+
+        //given
+        when(bookService.getCatalogueSnapshot(CatalogueSnapshot.View.ALL_BOOKS)).thenReturn(catalogueSnapshot);
+
+        //when
+        MockHttpServletResponse response = mockMvc.perform(get("/api/book/list"))
+
+                //then
+                .andExpect(status().isOk())
+                .andDo(MockMvcResultHandlers.print())
+                .andReturn().getResponse();
+
+        verify(bookService, never()).getAllBooks();
+        verify(bookService, never()).getCatalogueVersion();
+        assertArrayEquals(json, response.getContentAsByteArray());
+        assertEquals(MediaType.APPLICATION_JSON_VALUE, response.getContentType());
+        assertEquals("\"s5d4d6b3f0a2c1\"", response.getHeader("ETag"));
+        assertNull(response.getHeader("Content-Encoding"));
+    }
+
+    //test ordered isbn method sends the gzip snapshot to a client accepting it
+    @Test
+    void findAllBooksOrderByIsbn_snapshotGzip() throws Exception {
+        byte[] gzip = {31, -117, 8, 0};
+        CatalogueSnapshot catalogueSnapshot = CatalogueSnapshot.builder()
+                .etag("\"s5d4d6b3f0a2c1\"")
+                .json("{\"data\":[]}".getBytes(StandardCharsets.UTF_8))
+                .gzip(gzip)
+                .build();
+
+        //given
+        when(bookService.getCatalogueSnapshot(CatalogueSnapshot.View.ORDERED_BY_ISBN)).thenReturn(catalogueSnapshot);
+
+        //when
+        MockHttpServletResponse response = mockMvc.perform(get("/api/book/ordered-isbn")
+                        .header("Accept-Encoding", "gzip, deflate, br"))
+
+                //then
+                .andExpect(status().isOk())
+                .andDo(MockMvcResultHandlers.print())
+                .andReturn().getResponse();
+
+        verify(bookService, never()).findAllBooksOrderByIsbn();
+        assertArrayEquals(gzip, response.getContentAsByteArray());
+        assertEquals("gzip", response.getHeader("Content-Encoding"));
+        assertEquals("\"s5d4d6b3f0a2c1-gzip\"", response.getHeader("ETag"));
+    }
+
+    //test getBook method answers with a Server-Timing breakdown only when asked for
+    @Test
+    void getBook_serverTiming() throws Exception {
+        DataResponse<Object> dataResponse = DataResponse.builder()
+                .data(BookResponse.builder()
+                        .bookId(bookModel.getBookId())
+                        .bookTitle(bookModel.getBookTitle())
+                        .build())
+                .build();
+
+        //given
+        when(bookService.getBook(1)).thenReturn(dataResponse);
+
+        //when
+        MockHttpServletResponse response = mockMvc.perform(get("/api/book/id/{bookId}", 1)
+                        .header("X-Server-Timing", "true"))
+
+                //then
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.bookTitle").value(bookModel.getBookTitle()))
+                .andDo(MockMvcResultHandlers.print())
+                .andReturn().getResponse();
+
+        assertTrue(response.getHeader("Server-Timing").matches("db;dur=[0-9.]+;desc=\"0 calls\", map;dur=[0-9.]+, "
+                + "app;dur=[0-9.]+, ser;dur=[0-9.]+, total;dur=[0-9.]+"));
+        assertNull(mockMvc.perform(get("/api/book/id/{bookId}", 1))
+                .andReturn().getResponse().getHeader("Server-Timing"));
+    }
+
+    //test multiGetBooks method returns the found books and the missing keys
+    @Test
+    void multiGetBooks_success() throws Exception {
+        MultiGetBookRequest multiGetBookRequest = MultiGetBookRequest.builder()
+                .bookIds(List.of(1, 99))
+                .build();
+        DataResponse<Object> dataResponse = DataResponse.builder()
+                .data(MultiGetBookResponse.builder()
+                        .books(List.of(BookResponse.builder()
+                                .bookId(bookModel.getBookId())
+                                .bookTitle(bookModel.getBookTitle())
+                                .build()))
+                        .missingBookIds(List.of(99))
+                        .missingIsbns(List.of())
+                        .build())
+                .build();
+
+        //given
+        when(bookService.multiGetBooks(multiGetBookRequest)).thenReturn(dataResponse);
+
+        //when
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/book/multi-get")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(multiGetBookRequest)))
+
+                //then
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.books[0].bookTitle").value(bookModel.getBookTitle()))
+                .andExpect(jsonPath("$.data.missingBookIds[0]").value(99))
+                .andDo(MockMvcResultHandlers.print());
+        verify(bookService, times(1)).multiGetBooks(multiGetBookRequest);
+    }
+
+    //test applyBatch method rejects a batch without operations
+    @Test
+    void applyBatch_badRequest() throws Exception {
+        //when
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/book/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(BatchBookRequest.builder()
+                                .operations(List.of())
+                                .build())))
+
+                //then
+                .andExpect(status().isBadRequest())
+                .andDo(MockMvcResultHandlers.print());
+        verifyNoInteractions(bookService);
+    }
+
+    //test applyBatch method passes the operations to the service
+    @Test
+    void applyBatch_success() throws Exception {
+        BatchBookRequest batchBookRequest = BatchBookRequest.builder()
+                .operations(List.of(BatchOperationRequest.builder()
+                        .operation(BatchOperationRequest.Operation.DELETE)
+                        .bookId(1)
+                        .build()))
+                .build();
+
+        //given
+        when(bookService.applyBatch(batchBookRequest)).thenReturn(DataResponse.builder().build());
+
+        //when
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/book/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(batchBookRequest)))
+
+                //then
+                .andExpect(status().isOk())
+                .andDo(MockMvcResultHandlers.print());
+        verify(bookService, times(1)).applyBatch(batchBookRequest);
+    }
+
+
+    //test patchBook method passes the partial request and the path bookId through
+    @Test
+    void patchBook_success() throws Exception {
+        //create patch book request object
+        PatchBookRequest patchBookRequest = PatchBookRequest.builder()
+                .bookTitle("Brida")
+                .version(0)
+                .build();
+
+        //simulate data response for return object
+        DataResponse<Object> dataResponse = DataResponse.builder()
+                .data(BookResponse.builder()
+                        .bookId(bookModel.getBookId())
+                        .isbn(bookModel.getIsbn())
+                        .bookTitle("Brida")
+                        .bookAuthor(bookModel.getBookAuthor())
+                        .version(1)
+                        .build())
+                .build();
+
+        //given
+        when(bookService.patchBook(bookModel.getBookId(), patchBookRequest)).thenReturn(dataResponse);
+
+        //when
+        mockMvc.perform(MockMvcRequestBuilders.patch("/api/book/update/{bookId}", bookModel.getBookId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(patchBookRequest)))
+
+                //then
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.bookTitle").value("Brida"))
+                .andExpect(jsonPath("$.data.version").value(1));
+        verify(bookService, times(1)).patchBook(bookModel.getBookId(), patchBookRequest);
+    }
+
+    //test patchBook method rejects a blank title
+    @Test
+    void patchBook_badRequestBlankTitle() throws Exception {
+        //when
+        mockMvc.perform(MockMvcRequestBuilders.patch("/api/book/update/{bookId}", bookModel.getBookId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"bookTitle\":\"  \"}"))
+
+                //then
+                .andExpect(status().isBadRequest());
+        verify(bookService, never()).patchBook(any(), any());
+    }
+
+    //test patchBook method rejects a title longer than its column
+    @Test
+    void patchBook_badRequestLongTitle() throws Exception {
+        //when
+        mockMvc.perform(MockMvcRequestBuilders.patch("/api/book/update/{bookId}", bookModel.getBookId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"bookTitle\":\"" + "a".repeat(51) + "\"}"))
+
+                //then
+                .andExpect(status().isBadRequest());
+        verify(bookService, never()).patchBook(any(), any());
+    }
+
+    //test deleteBook method passes the version query parameter through
+    @Test
+    void deleteBook_conflictStaleVersion() throws Exception {
+        //given
+        when(bookService.deleteBook(bookModel.getBookId(), 3)).thenThrow(new ResponseStatusException(HttpStatus.CONFLICT));
+
+        //when
+        mockMvc.perform(delete("/api/book/delete/{bookId}", bookModel.getBookId()).param("version", "3"))
+
+                //then
+                .andExpect(status().isConflict());
+        verify(bookService, times(1)).deleteBook(bookModel.getBookId(), 3);
+    }
+
+    //test getChanges method returns the page with a tombstone for a deleted book
+    @Test
+    void getChanges_success() throws Exception {
+        //simulate data response for return object
+        DataResponse<Object> dataResponse = DataResponse.builder()
+                .data(BookChangePageResponse.builder()
+                        .changes(List.of(BookChangeResponse.builder()
+                                .seq(12L)
+                                .type(BookChangedEvent.Type.DELETED)
+                                .bookId(bookModel.getBookId())
+                                .build()))
+                        .nextSince(12L)
+                        .build())
+                .build();
+
+        //given
+        when(bookService.getChanges(11L, 50)).thenReturn(dataResponse);
+
+        //when
+        MockHttpServletResponse response = mockMvc.perform(get("/api/book/changes")
+                        .param("since", "11")
+                        .param("limit", "50"))
+
+                //then
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.changes[0].type").value("DELETED"))
+                .andExpect(jsonPath("$.data.changes[0].book").doesNotExist())
+                .andExpect(jsonPath("$.data.nextSince").value(12))
+                .andDo(MockMvcResultHandlers.print())
+                .andReturn().getResponse();
+
+        verify(bookService, times(1)).getChanges(11L, 50);
+        assertEquals(response.getStatus(), HttpStatus.OK.value());
+    }
+
+    //test getStats method returns totals and the top authors
+    @Test
+    void getStats_success() throws Exception {
+        //simulate data response for return object
+        DataResponse<Object> dataResponse = DataResponse.builder()
+                .data(BookStatsResponse.builder()
+                        .totalBooks(3L)
+                        .distinctAuthors(2)
+                        .topAuthors(List.of(AuthorCountResponse.builder()
+                                .bookAuthor("J.K. Rowling")
+                                .bookCount(2)
+                                .build()))
+                        .build())
+                .build();
+
+        //given
+        when(bookService.getStats(1, null)).thenReturn(dataResponse);
+
+        //when
+        MockHttpServletResponse response = mockMvc.perform(get("/api/book/stats")
+                        .param("top", "1"))
+
+                //then
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.totalBooks").value(3))
+                .andExpect(jsonPath("$.data.topAuthors[0].bookAuthor").value("J.K. Rowling"))
+                .andDo(MockMvcResultHandlers.print())
+                .andReturn().getResponse();
+
+        verify(bookService, times(1)).getStats(1, null);
+        assertEquals(response.getStatus(), HttpStatus.OK.value());
+    }
+}
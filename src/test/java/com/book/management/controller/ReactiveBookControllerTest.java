@@ -0,0 +1,141 @@
+package com.book.management.controller;
+
+import com.book.management.dto.request.FindAllBooksFromAuthorRequest;
+import com.book.management.dto.response.BookResponse;
+import com.book.management.dto.response.DataResponse;
+import com.book.management.service.ReactiveBookService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ActiveProfiles("reactive")
+@WebFluxTest(controllers = ReactiveBookController.class)
+class ReactiveBookControllerTest {
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @MockBean
+    ReactiveBookService reactiveBookService;
+
+    BookResponse bookResponse;
+
+    @BeforeEach
+    void setUp() {
+        bookResponse = BookResponse.builder()
+                .bookId(1)
+                .isbn(9780062315007L)
+                .bookTitle("The Alchemist")
+                .bookAuthor("Paulo Coelho")
+                .build();
+    }
+
+    //test getBook route when success
+    @Test
+    void getBook_success() {
+        //given
+        when(reactiveBookService.getBook(1)).thenReturn(Mono.just(DataResponse.builder().data(bookResponse).build()));
+
+        //when then
+        webTestClient.get().uri("/api/book/id/1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.data.bookTitle").isEqualTo(bookResponse.getBookTitle());
+        verify(reactiveBookService, times(1)).getBook(1);
+    }
+
+    //test getBook route when book not found
+    @Test
+    void getBook_bookNotFound() {
+        //given
+        when(reactiveBookService.getBook(100)).thenReturn(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)));
+
+        //when then
+        webTestClient.get().uri("/api/book/id/100")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    //test list route streams ndjson when asked for
+    @Test
+    void getAllBooks_streamNdjson() {
+        BookResponse secondBook = BookResponse.builder()
+                .bookId(2)
+                .isbn(9780439708180L)
+                .bookTitle("Harry Potter and the Sorcerer's Stone (#1)")
+                .bookAuthor("J.K. Rowling")
+                .build();
+
+        //given
+        when(reactiveBookService.getAllBooks(null, null)).thenReturn(Flux.just(bookResponse, secondBook));
+
+        //when
+        List<BookResponse> books = webTestClient.get().uri("/api/book/list")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(BookResponse.class)
+                .getResponseBody()
+                .collectList()
+                .block();
+
+        //then
+        assertEquals(List.of(bookResponse, secondBook), books);
+    }
+
+    //test list route passes the limit and cursor on
+    @Test
+    void getAllBooks_afterCursor() {
+        //given
+        when(reactiveBookService.getAllBooks(10, "MQ")).thenReturn(Flux.just(bookResponse));
+
+        //when then
+        webTestClient.get().uri("/api/book/list?limit=10&after=MQ")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].bookId").isEqualTo(bookResponse.getBookId());
+        verify(reactiveBookService, times(1)).getAllBooks(10, "MQ");
+    }
+
+    //test author route rejects a blank author before reaching the service
+    @Test
+    void findAllBooksFromAuthor_badRequest() {
+        //when then
+        webTestClient.post().uri("/api/book/author")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(FindAllBooksFromAuthorRequest.builder().bookAuthor("").build())
+                .exchange()
+                .expectStatus().isBadRequest();
+        verifyNoInteractions(reactiveBookService);
+    }
+
+    //test delete route passes the version on and answers a stale one with 409
+    @Test
+    void deleteBook_staleVersion() {
+        //given
+        when(reactiveBookService.deleteBook(1, 3)).thenReturn(Mono.error(new ResponseStatusException(HttpStatus.CONFLICT)));
+
+        //when then
+        webTestClient.delete().uri("/api/book/delete/1?version=3")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.CONFLICT);
+        verify(reactiveBookService, times(1)).deleteBook(1, 3);
+    }
+
+}
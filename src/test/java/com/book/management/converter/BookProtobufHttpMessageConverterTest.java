@@ -0,0 +1,163 @@
+package com.book.management.converter;
+
+import com.book.management.dto.response.AuthorCountResponse;
+import com.book.management.dto.response.BookChangePageResponse;
+import com.book.management.dto.response.BookChangeResponse;
+import com.book.management.dto.response.BookResponse;
+import com.book.management.dto.response.BookStatsResponse;
+import com.book.management.dto.response.BulkAddBookResponse;
+import com.book.management.dto.response.DataResponse;
+import com.book.management.event.BookChangedEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.MockHttpOutputMessage;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookProtobufHttpMessageConverterTest {
+
+    BookProtobufHttpMessageConverter converter = new BookProtobufHttpMessageConverter();
+
+    //test a single book is written as one books entry flagged single, byte for byte what protoc generated code writes
+    @Test
+    void write_singleBook() throws Exception {
+        //given
+        DataResponse<Object> dataResponse = DataResponse.builder()
+                .data(BookResponse.builder()
+                        .bookId(1)
+                        .isbn(9780062315007L)
+                        .bookTitle("The Alchemist")
+                        .bookAuthor("Paulo Coelho")
+                        .build())
+                .build();
+        MockHttpOutputMessage outputMessage = new MockHttpOutputMessage();
+
+        //when
+        converter.write(dataResponse, BookProtobufHttpMessageConverter.APPLICATION_PROTOBUF, outputMessage);
+
+        //then
+        assertEquals("0a27080110ffc38fc9d19c021a0d54686520416c6368656d697374220c5061756c6f20436f656c686f2801",
+                HexFormat.of().formatHex(outputMessage.getBodyAsBytes()));
+        assertEquals(BookProtobufHttpMessageConverter.APPLICATION_PROTOBUF, outputMessage.getHeaders().getContentType());
+    }
+
+    //test a bulk response writes its books and the packed duplicate isbn
+    @Test
+    void write_bulkAddBookResponse() throws Exception {
+        //given
+        DataResponse<Object> dataResponse = DataResponse.builder()
+                .data(BulkAddBookResponse.builder()
+                        .books(List.of(BookResponse.builder()
+                                .bookId(2)
+                                .isbn(9780439708180L)
+                                .bookTitle("Harry Potter")
+                                .bookAuthor("J.K. Rowling")
+                                .build()))
+                        .duplicateIsbns(List.of(9780439708180L, 9780062315007L))
+                        .build())
+                .build();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        //when
+        BookProtobufHttpMessageConverter.writeTo(dataResponse, outputStream);
+
+        //then
+        assertEquals("0a2608021094e489fdd29c021a0c486172727920506f74746572220c4a2e4b2e20526f776c696e67"
+                        + "220e94e489fdd29c02ffc38fc9d19c02",
+                HexFormat.of().formatHex(outputStream.toByteArray()));
+    }
+
+    //test a change feed page writes each change with its nested book, a tombstone without one, and the next since
+    @Test
+    void write_bookChangePageResponse() throws Exception {
+        //given
+        DataResponse<Object> dataResponse = DataResponse.builder()
+                .data(BookChangePageResponse.builder()
+                        .changes(List.of(BookChangeResponse.builder()
+                                        .seq(7L)
+                                        .type(BookChangedEvent.Type.UPDATED)
+                                        .bookId(1)
+                                        .book(BookResponse.builder()
+                                                .bookId(1)
+                                                .isbn(9780062315007L)
+                                                .bookTitle("The Alchemist")
+                                                .bookAuthor("Paulo Coelho")
+                                                .version(1)
+                                                .build())
+                                        .build(),
+                                BookChangeResponse.builder()
+                                        .seq(8L)
+                                        .type(BookChangedEvent.Type.DELETED)
+                                        .bookId(2)
+                                        .build()))
+                        .nextSince(8L)
+                        .hasMore(false)
+                        .build())
+                .build();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        //when
+        BookProtobufHttpMessageConverter.writeTo(dataResponse, outputStream);
+
+        //then
+        assertEquals("4a38080712075550444154454418012229080110ffc38fc9d19c021a0d54686520416c6368656d697374"
+                        + "220c5061756c6f20436f656c686f28014a0d0808120744454c4554454418025008",
+                HexFormat.of().formatHex(outputStream.toByteArray()));
+    }
+
+    //test stats are written as one nested message with the top authors
+    @Test
+    void write_bookStatsResponse() throws Exception {
+        //given
+        DataResponse<Object> dataResponse = DataResponse.builder()
+                .data(BookStatsResponse.builder()
+                        .totalBooks(3L)
+                        .distinctAuthors(2)
+                        .topAuthors(List.of(AuthorCountResponse.builder()
+                                .bookAuthor("J.K. Rowling")
+                                .bookCount(2)
+                                .build()))
+                        .build())
+                .build();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        //when
+        BookProtobufHttpMessageConverter.writeTo(dataResponse, outputStream);
+
+        //then
+        assertEquals("6216080310021a100a0c4a2e4b2e20526f776c696e671002",
+                HexFormat.of().formatHex(outputStream.toByteArray()));
+    }
+
+    //test data without a protobuf message is refused with 406 before anything is written
+    @Test
+    void write_unsupportedData() {
+        //given
+        DataResponse<Object> dataResponse = DataResponse.builder()
+                .data(Map.of("bookCount", 1))
+                .build();
+        MockHttpOutputMessage outputMessage = new MockHttpOutputMessage();
+
+        //when
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () ->
+                converter.write(dataResponse, BookProtobufHttpMessageConverter.APPLICATION_PROTOBUF, outputMessage));
+
+        //then
+        assertEquals(HttpStatus.NOT_ACCEPTABLE, exception.getStatus());
+        assertEquals(0, outputMessage.getBodyAsBytes().length);
+    }
+
+    //test protobuf is only offered for DataResponse and never read
+    @Test
+    void canReadAndWrite() {
+        assertTrue(converter.canWrite(DataResponse.class, BookProtobufHttpMessageConverter.APPLICATION_PROTOBUF));
+        assertFalse(converter.canWrite(BookResponse.class, BookProtobufHttpMessageConverter.APPLICATION_PROTOBUF));
+        assertFalse(converter.canRead(DataResponse.class, BookProtobufHttpMessageConverter.APPLICATION_PROTOBUF));
+    }
+}
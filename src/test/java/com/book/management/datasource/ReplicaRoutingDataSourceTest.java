@@ -0,0 +1,115 @@
+package com.book.management.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReplicaRoutingDataSourceTest {
+
+    @Mock
+    DataSource primary;
+
+    @Mock
+    DataSource firstReplica;
+
+    @Mock
+    DataSource secondReplica;
+
+    @Mock
+    Connection connection;
+
+    ReplicaRoutingDataSource replicaRoutingDataSource;
+
+    @BeforeEach
+    void setUp() {
+        replicaRoutingDataSource = new ReplicaRoutingDataSource(primary, List.of(firstReplica, secondReplica), Duration.ZERO);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+        ReplicaRoutingContext.clear();
+        replicaRoutingDataSource.close();
+    }
+
+    //test read-only transactions are spread over the replicas
+    @Test
+    void readOnlyTransaction_roundRobinReplicas() {
+        //given
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        //when then
+        assertEquals("replica-0", replicaRoutingDataSource.determineCurrentLookupKey());
+        assertEquals("replica-1", replicaRoutingDataSource.determineCurrentLookupKey());
+        assertEquals("replica-0", replicaRoutingDataSource.determineCurrentLookupKey());
+    }
+
+    //test a write goes to the primary and keeps later reads of the same request there
+    @Test
+    void writeTransaction_pinsReadsToPrimary() {
+        AtomicInteger writes = new AtomicInteger();
+        ReplicaRoutingContext.onWrite(writes::incrementAndGet);
+
+        //given
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+
+        //when then
+        assertEquals(ReplicaRoutingDataSource.PRIMARY, replicaRoutingDataSource.determineCurrentLookupKey());
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertEquals(ReplicaRoutingDataSource.PRIMARY, replicaRoutingDataSource.determineCurrentLookupKey());
+        assertEquals(ReplicaRoutingDataSource.PRIMARY, replicaRoutingDataSource.determineCurrentLookupKey());
+        assertEquals(1, writes.get());
+    }
+
+    //test reads asked to run on the primary skip the replicas
+    @Test
+    void callOnPrimary_readsFromPrimary() {
+        //given
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        //when then
+        assertEquals(ReplicaRoutingDataSource.PRIMARY,
+                ReplicaRoutingContext.callOnPrimary(replicaRoutingDataSource::determineCurrentLookupKey));
+        assertFalse(ReplicaRoutingContext.isPinnedToPrimary());
+        assertEquals("replica-0", replicaRoutingDataSource.determineCurrentLookupKey());
+    }
+
+    //test an unhealthy replica is skipped and the primary takes reads once none is left
+    @Test
+    void checkHealth_skipsUnhealthyReplica() throws Exception {
+        //given
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        when(firstReplica.getConnection()).thenThrow(new SQLException("connection refused"));
+        when(secondReplica.getConnection()).thenReturn(connection);
+        when(connection.isValid(anyInt())).thenReturn(true, false);
+
+        //when then
+        replicaRoutingDataSource.checkHealth();
+        assertEquals("replica-1", replicaRoutingDataSource.determineCurrentLookupKey());
+        assertEquals("replica-1", replicaRoutingDataSource.determineCurrentLookupKey());
+
+        replicaRoutingDataSource.checkHealth();
+        assertEquals(ReplicaRoutingDataSource.PRIMARY, replicaRoutingDataSource.determineCurrentLookupKey());
+        verify(connection, times(2)).close();
+    }
+
+}
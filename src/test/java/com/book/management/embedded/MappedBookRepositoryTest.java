@@ -0,0 +1,352 @@
+package com.book.management.embedded;
+
+import com.book.management.dto.response.BookResponse;
+import com.book.management.entity.Book;
+import com.book.management.repository.IsbnConstraint;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedBookRepositoryTest {
+
+    @TempDir
+    Path tempDir;
+
+    Path path;
+
+    MappedBookRepository bookRepository;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        path = tempDir.resolve("books.log");
+        bookRepository = open();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        bookRepository.close();
+    }
+
+    //test save assigns bookId, version and dates like the jpa entity
+    @Test
+    void save_newBook() {
+        //given
+        Book bookModel = book(9780062315007L, "The Alchemist", "Paulo Coelho");
+
+        //when
+        Book saved = bookRepository.save(bookModel);
+
+        //then
+        assertEquals(1, saved.getBookId());
+        assertEquals(0, saved.getVersion());
+        assertNotNull(saved.getCreatedDate());
+        assertEquals(saved.getCreatedDate(), saved.getUpdatedDate());
+        assertEquals(saved, bookRepository.findById(1).orElseThrow());
+        assertEquals(saved, bookRepository.findByIsbn(9780062315007L).orElseThrow());
+    }
+
+    //test a second book with the same isbn is refused
+    @Test
+    void save_duplicateIsbn() {
+        //given
+        bookRepository.save(book(9780062315007L, "The Alchemist", "Paulo Coelho"));
+
+        //when
+        //then
+        assertTrue(IsbnConstraint.isViolatedBy(assertThrows(DataIntegrityViolationException.class,
+                () -> bookRepository.save(book(9780062315007L, "Other", "Other")))));
+        assertEquals(Optional.empty(), bookRepository.insertIfAbsent(9780062315007L, "Other", "Other"));
+        assertEquals(1, bookRepository.count());
+    }
+
+    //test a batch with a taken isbn, stored or earlier in the batch, writes none of its books
+    @Test
+    void saveAll_duplicateWritesNothing() {
+        //given
+        bookRepository.save(book(9780062315007L, "The Alchemist", "Paulo Coelho"));
+
+        //when
+        //then
+        assertTrue(IsbnConstraint.isViolatedBy(assertThrows(DataIntegrityViolationException.class,
+                () -> bookRepository.saveAll(List.of(book(9780439708180L, "Harry Potter", "J.K. Rowling"),
+                        book(9780062315007L, "Other", "Other"))))));
+        assertThrows(DataIntegrityViolationException.class,
+                () -> bookRepository.saveAll(List.of(book(9780439708180L, "Harry Potter", "J.K. Rowling"),
+                        book(9780439708180L, "Harry Potter", "J.K. Rowling"))));
+        assertEquals(1, bookRepository.count());
+        assertTrue(bookRepository.findByIsbn(9780439708180L).isEmpty());
+    }
+
+    //test a batch may take an isbn an earlier update in the same batch gave up
+    @Test
+    void saveAll_isbnFreedInBatch() {
+        //given
+        Book stored = bookRepository.save(book(9780062315007L, "The Alchemist", "Paulo Coelho"));
+        stored.setIsbn(9780062315008L);
+
+        //when
+        bookRepository.saveAll(List.of(stored, book(9780062315007L, "Brida", "Paulo Coelho")));
+
+        //then
+        assertEquals("The Alchemist", bookRepository.findByIsbn(9780062315008L).orElseThrow().getBookTitle());
+        assertEquals("Brida", bookRepository.findByIsbn(9780062315007L).orElseThrow().getBookTitle());
+    }
+
+    //test saving a stale copy fails and the stored book is left as is
+    @Test
+    void save_staleVersion() {
+        //given
+        Book stored = bookRepository.save(book(9780062315007L, "The Alchemist", "Paulo Coelho"));
+        Book stale = book(stored.getIsbn(), stored.getBookTitle(), stored.getBookAuthor());
+        stale.setBookId(stored.getBookId());
+        stale.setVersion(stored.getVersion());
+        stored.setBookTitle("The Alchemist, 25th Anniversary");
+        bookRepository.save(stored);
+
+        //when
+        stale.setBookTitle("Stale");
+
+        //then
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> bookRepository.save(stale));
+        Book book = bookRepository.findById(stored.getBookId()).orElseThrow();
+        assertEquals("The Alchemist, 25th Anniversary", book.getBookTitle());
+        assertEquals(1, book.getVersion());
+    }
+
+    //test updateBook changes only the given columns and bumps the version, a wrong version changes nothing
+    @Test
+    void updateBook_versioned() {
+        //given
+        Integer bookId = bookRepository.insertIfAbsent(9780062315007L, "The Alchemist", "Paulo Coelho").orElseThrow();
+
+        //when
+        Optional<Book> stale = bookRepository.updateBook(bookId, 3, null, "Stale", null);
+        Optional<Book> updated = bookRepository.updateBook(bookId, 0, null, "O Alquimista", null);
+
+        //then
+        assertTrue(stale.isEmpty());
+        assertEquals("O Alquimista", updated.orElseThrow().getBookTitle());
+        assertEquals("Paulo Coelho", updated.get().getBookAuthor());
+        assertEquals(1, updated.get().getVersion());
+        assertTrue(bookRepository.updateBook(99, null, null, "Missing", null).isEmpty());
+    }
+
+    //test moving a book to another author moves it between the author index entries
+    @Test
+    void updateBook_reindexesAuthor() {
+        //given
+        Integer bookId = bookRepository.insertIfAbsent(9780062315007L, "The Alchemist", "Paulo Coelho").orElseThrow();
+        bookRepository.insertIfAbsent(9780061122415L, "Brida", "Paulo Coelho");
+
+        //when
+        bookRepository.updateBook(bookId, null, null, null, "Coelho");
+
+        //then
+        assertEquals(List.of("Brida"), titles(bookRepository.findAllBooksFromAuthor("Paulo Coelho")));
+        assertEquals(List.of("The Alchemist"), titles(bookRepository.findAllBooksFromAuthor("Coelho")));
+        assertEquals(2, bookRepository.count());
+    }
+
+    //test delete frees the isbn and respects the version
+    @Test
+    void deleteReturningBookId_versioned() {
+        //given
+        Integer bookId = bookRepository.insertIfAbsent(9780062315007L, "The Alchemist", "Paulo Coelho").orElseThrow();
+
+        //when
+        Optional<Integer> stale = bookRepository.deleteReturningBookId(bookId, 1);
+        Optional<Integer> deleted = bookRepository.deleteReturningBookId(bookId, 0);
+
+        //then
+        assertTrue(stale.isEmpty());
+        assertEquals(Optional.of(bookId), deleted);
+        assertFalse(bookRepository.existsById(bookId));
+        assertTrue(bookRepository.findAllBooksFromAuthor("Paulo Coelho").isEmpty());
+        assertTrue(bookRepository.insertIfAbsent(9780062315007L, "The Alchemist", "Paulo Coelho").isPresent());
+    }
+
+    //test keyset pages walk the bookIds after the cursor and skip deleted ones
+    @Test
+    void findByBookIdGreaterThanOrderByBookIdAsc_pages() {
+        //given
+        for (long isbn = 9780000000001L; isbn <= 9780000000005L; isbn++) {
+            bookRepository.insertIfAbsent(isbn, "Title " + isbn, "Author");
+        }
+        bookRepository.deleteById(2);
+
+        //when
+        List<BookResponse> first = bookRepository.findByBookIdGreaterThanOrderByBookIdAsc(0, PageRequest.of(0, 2));
+        List<BookResponse> second = bookRepository.findByBookIdGreaterThanOrderByBookIdAsc(3, PageRequest.of(0, 2));
+
+        //then
+        assertEquals(List.of(1, 3), bookIds(first));
+        assertEquals(List.of(4, 5), bookIds(second));
+    }
+
+    //test isbn order is descending as in the jpa query
+    @Test
+    void findAllBooksOrderByIsbn_descending() {
+        //given
+        bookRepository.insertIfAbsent(9780000000002L, "Second", "Author");
+        bookRepository.insertIfAbsent(9780000000003L, "Third", "Author");
+        bookRepository.insertIfAbsent(9780000000001L, "First", "Author");
+
+        //when
+        List<BookResponse> bookResponses = bookRepository.findAllBooksOrderByIsbn();
+
+        //then
+        assertEquals(List.of("Third", "Second", "First"), titles(bookResponses));
+    }
+
+    //test the store declares it has no change feed and its reads stay harmless
+    @Test
+    void supportsChangeFeed_none() {
+        //given
+        bookRepository.insertIfAbsent(9780062315007L, "The Alchemist", "Paulo Coelho");
+
+        //when
+        //then
+        assertFalse(bookRepository.supportsChangeFeed());
+        assertEquals(0, bookRepository.sequenceChanges());
+        assertTrue(bookRepository.findChangesAfter(0, 10).isEmpty());
+    }
+
+    //test the change version moves with every write and never repeats after a reopen
+    @Test
+    void findChangeVersion_movesWithWrites() throws IOException {
+        //given
+        String empty = bookRepository.findChangeVersion();
+        Integer bookId = bookRepository.insertIfAbsent(9780062315007L, "The Alchemist", "Paulo Coelho").orElseThrow();
+        String added = bookRepository.findChangeVersion();
+        bookRepository.deleteById(bookId);
+        String deleted = bookRepository.findChangeVersion();
+
+        //when
+        bookRepository.close();
+        bookRepository = open();
+
+        //then
+        assertNotEquals(empty, added);
+        assertNotEquals(added, deleted);
+        assertNotEquals(empty, bookRepository.findChangeVersion());
+    }
+
+    //test a reopened log holds the same books and keeps handing out new bookIds
+    @Test
+    void open_replaysLog() throws IOException {
+        //given
+        bookRepository.insertIfAbsent(9780062315007L, "The Alchemist", "Paulo Coelho");
+        Integer bookId = bookRepository.insertIfAbsent(9780061122415L, "Brida", "Paulo Coelho").orElseThrow();
+        bookRepository.updateBook(1, 0, null, "O Alquimista", null);
+        bookRepository.deleteById(bookId);
+        Book expected = bookRepository.findById(1).orElseThrow();
+
+        //when
+        bookRepository.close();
+        bookRepository = open();
+
+        //then
+        assertEquals(1, bookRepository.count());
+        assertEquals(expected, bookRepository.findById(1).orElseThrow());
+        assertFalse(bookRepository.existsById(bookId));
+        assertEquals(3, bookRepository.insertIfAbsent(9780061122415L, "Brida", "Paulo Coelho").orElseThrow());
+    }
+
+    //test a torn last record is dropped on open and the log stays writable after it
+    @Test
+    void open_dropsTornTail() throws IOException {
+        //given
+        bookRepository.insertIfAbsent(9780062315007L, "The Alchemist", "Paulo Coelho");
+        bookRepository.insertIfAbsent(9780061122415L, "Brida", "Paulo Coelho");
+        bookRepository.close();
+        int lastOffset = lastRecordOffset();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) 0xff}), lastOffset + 20);
+        }
+
+        //when
+        bookRepository = open();
+        bookRepository.insertIfAbsent(9780743273565L, "The Great Gatsby", "F. Scott Fitzgerald");
+        bookRepository.close();
+        bookRepository = open();
+
+        //then
+        assertEquals(2, bookRepository.count());
+        assertTrue(bookRepository.findByIsbn(9780061122415L).isEmpty());
+        assertEquals("The Great Gatsby", bookRepository.findByIsbn(9780743273565L).orElseThrow().getBookTitle());
+    }
+
+    //test compaction drops overwritten and deleted records but keeps every live book
+    @Test
+    void compact_dropsGarbage() throws IOException {
+        //given
+        Integer bookId = bookRepository.insertIfAbsent(9780062315007L, "The Alchemist", "Paulo Coelho").orElseThrow();
+        Integer deleted = bookRepository.insertIfAbsent(9780061122415L, "Brida", "Paulo Coelho").orElseThrow();
+        for (int version = 0; version < 100; version++) {
+            bookRepository.updateBook(bookId, version, null, "The Alchemist " + version, null);
+        }
+        bookRepository.deleteById(deleted);
+        long before = Files.size(path);
+        assertTrue(bookRepository.garbage() > 0);
+
+        //when
+        bookRepository.compact();
+
+        //then
+        assertEquals(0, bookRepository.garbage());
+        assertFalse(Files.exists(path.resolveSibling("books.log.compact")));
+        assertEquals("The Alchemist 99", bookRepository.findById(bookId).orElseThrow().getBookTitle());
+        bookRepository.close();
+        bookRepository = open();
+        assertEquals(1, bookRepository.count());
+        assertEquals(100, bookRepository.findById(bookId).orElseThrow().getVersion());
+        assertEquals(3, bookRepository.insertIfAbsent(9780061122415L, "Brida", "Paulo Coelho").orElseThrow());
+        assertTrue(before >= Files.size(path));
+    }
+
+    private MappedBookRepository open() throws IOException {
+        return new MappedBookRepository(path, 4096, Duration.ZERO, Duration.ZERO);
+    }
+
+    private int lastRecordOffset() throws IOException {
+        AtomicInteger lastOffset = new AtomicInteger();
+        try (BookLog bookLog = BookLog.open(path, 4096)) {
+            bookLog.replay((offset, type, bookId) -> lastOffset.set(offset));
+        }
+        return lastOffset.get();
+    }
+
+    private static Book book(Long isbn, String bookTitle, String bookAuthor) {
+        return Book.builder()
+                .isbn(isbn)
+                .bookTitle(bookTitle)
+                .bookAuthor(bookAuthor)
+                .build();
+    }
+
+    private static List<String> titles(List<BookResponse> bookResponses) {
+        return bookResponses.stream().map(BookResponse::getBookTitle).collect(Collectors.toList());
+    }
+
+    private static List<Integer> bookIds(List<BookResponse> bookResponses) {
+        return bookResponses.stream().map(BookResponse::getBookId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,140 @@
+package com.book.management.index;
+
+import com.book.management.dto.response.AuthorCountResponse;
+import com.book.management.dto.response.BookResponse;
+import com.book.management.event.BookChangedEvent;
+import com.book.management.repository.BookRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AuthorStatsIndexTest {
+
+    @Mock
+    BookRepository bookRepository;
+
+    @Mock
+    PlatformTransactionManager transactionManager;
+
+    MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    AuthorStatsIndex authorStatsIndex;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        authorStatsIndex = new AuthorStatsIndex(Duration.ZERO);
+        ReflectionTestUtils.setField(authorStatsIndex, "bookRepository", bookRepository);
+        ReflectionTestUtils.setField(authorStatsIndex, "transactionManager", transactionManager);
+        authorStatsIndex.bindTo(meterRegistry);
+
+        authorStatsIndex.index(book(1, "Paulo Coelho"));
+        authorStatsIndex.index(book(2, "J.K. Rowling"));
+        authorStatsIndex.index(book(3, "J.K. Rowling"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        authorStatsIndex.close();
+    }
+
+    //test counts, distinct authors and top authors with ties ordered by name
+    @Test
+    void topAuthors_ordering() {
+        authorStatsIndex.index(book(4, "Agatha Christie"));
+
+        assertEquals(4, authorStatsIndex.totalBooks());
+        assertEquals(3, authorStatsIndex.distinctAuthors());
+        assertEquals(2, authorStatsIndex.bookCount("J.K. Rowling"));
+        assertEquals(0, authorStatsIndex.bookCount("Tolkien"));
+        assertEquals(List.of(authorCount("J.K. Rowling", 2), authorCount("Agatha Christie", 1)),
+                authorStatsIndex.topAuthors(2));
+        assertTrue(authorStatsIndex.topAuthors(0).isEmpty());
+    }
+
+    //test an update moves the book to its new author and a delete drops an author left without books
+    @Test
+    void onBookChanged_updateAndDelete() {
+        authorStatsIndex.onBookChanged(BookChangedEvent.builder()
+                .type(BookChangedEvent.Type.UPDATED)
+                .bookId(2)
+                .book(book(2, "Paulo Coelho"))
+                .build());
+        authorStatsIndex.onBookChanged(BookChangedEvent.builder()
+                .type(BookChangedEvent.Type.DELETED)
+                .bookId(3)
+                .build());
+
+        assertEquals(2, authorStatsIndex.totalBooks());
+        assertEquals(1, authorStatsIndex.distinctAuthors());
+        assertEquals(List.of(authorCount("Paulo Coelho", 2)), authorStatsIndex.topAuthors(10));
+    }
+
+    //test the recount replaces drifted counts but keeps books changed while it ran
+    @Test
+    void reconcile_fixesDrift() {
+        //given
+        //book 2 changed author and book 4 was added without an event, book 5 is added while the scan runs
+        when(bookRepository.streamAllBooks()).thenAnswer(invocation -> {
+            authorStatsIndex.index(book(5, "Agatha Christie"));
+            return Stream.of(book(1, "Paulo Coelho"), book(2, "Paulo Coelho"), book(3, "J.K. Rowling"),
+                    book(4, "Agatha Christie"));
+        });
+
+        //when
+        authorStatsIndex.reconcile();
+
+        //then
+        assertEquals(5, authorStatsIndex.totalBooks());
+        assertEquals(List.of(authorCount("Agatha Christie", 2), authorCount("Paulo Coelho", 2),
+                authorCount("J.K. Rowling", 1)), authorStatsIndex.topAuthors(10));
+        assertEquals(3, meterRegistry.get("book.author.stats.corrections").counter().count());
+        verify(transactionManager, times(1)).commit(any());
+    }
+
+    //test a failed recount keeps the incremental counts
+    @Test
+    void reconcile_failureKeepsCounts() {
+        //given
+        when(bookRepository.streamAllBooks()).thenThrow(new IllegalStateException("database down"));
+
+        //when
+        authorStatsIndex.reconcile();
+
+        //then
+        assertEquals(3, authorStatsIndex.totalBooks());
+        assertEquals(2, authorStatsIndex.bookCount("J.K. Rowling"));
+    }
+
+    private static BookResponse book(Integer bookId, String bookAuthor) {
+        return BookResponse.builder()
+                .bookId(bookId)
+                .isbn(9780000000000L + bookId)
+                .bookTitle("Title " + bookId)
+                .bookAuthor(bookAuthor)
+                .build();
+    }
+
+    private static AuthorCountResponse authorCount(String bookAuthor, Integer bookCount) {
+        return AuthorCountResponse.builder()
+                .bookAuthor(bookAuthor)
+                .bookCount(bookCount)
+                .build();
+    }
+}
@@ -0,0 +1,101 @@
+package com.book.management.index;
+
+import com.book.management.dto.response.BookResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookSearchIndexTest {
+
+    BookSearchIndex bookSearchIndex;
+
+    BookResponse alchemist;
+    BookResponse sorcerersStone;
+    BookResponse chamberOfSecrets;
+
+    @BeforeEach
+    void setUp() {
+        alchemist = BookResponse.builder()
+                .bookId(1)
+                .isbn(9780062315007L)
+                .bookTitle("The Alchemist")
+                .bookAuthor("Paulo Coelho")
+                .build();
+        sorcerersStone = BookResponse.builder()
+                .bookId(2)
+                .isbn(9780439708180L)
+                .bookTitle("Harry Potter and the Sorcerer's Stone (#1)")
+                .bookAuthor("J.K. Rowling")
+                .build();
+        chamberOfSecrets = BookResponse.builder()
+                .bookId(3)
+                .isbn(9780439064873L)
+                .bookTitle("Harry Potter and the Chamber of Secrets (#2)")
+                .bookAuthor("J.K. Rowling")
+                .build();
+
+        bookSearchIndex = new BookSearchIndex();
+        bookSearchIndex.index(alchemist);
+        bookSearchIndex.index(sorcerersStone);
+        bookSearchIndex.index(chamberOfSecrets);
+    }
+
+    //test search ranks the book matching more query words first
+    @Test
+    void search_ranking() {
+        List<BookResponse> response = bookSearchIndex.search("Harry CHAMBER", 10);
+
+        assertEquals(List.of(chamberOfSecrets, sorcerersStone), response);
+        assertEquals(List.of(alchemist), bookSearchIndex.search("coelho", 10));
+        assertEquals(List.of(sorcerersStone), bookSearchIndex.search("harry potter", 1));
+        assertTrue(bookSearchIndex.search("tolkien", 10).isEmpty());
+    }
+
+    //test search reflects updated and deleted books
+    @Test
+    void search_afterUpdateAndRemove() {
+        BookResponse spy = BookResponse.builder()
+                .bookId(1)
+                .isbn(9780525432791L)
+                .bookTitle("The Spy")
+                .bookAuthor("Paulo Coelho")
+                .build();
+
+        bookSearchIndex.index(spy);
+        bookSearchIndex.remove(3);
+
+        assertTrue(bookSearchIndex.search("alchemist", 10).isEmpty());
+        assertEquals(List.of(spy), bookSearchIndex.search("spy", 10));
+        assertEquals(List.of(sorcerersStone), bookSearchIndex.search("harry", 10));
+        assertEquals(2, bookSearchIndex.size());
+    }
+
+    //test dead entries are compacted without losing live books
+    @Test
+    void index_compaction() {
+        for (int i = 0; i < 5000; i++) {
+            bookSearchIndex.index(BookResponse.builder()
+                    .bookId(1000 + i % 10)
+                    .isbn(9780000000000L + i)
+                    .bookTitle("Volume " + i)
+                    .bookAuthor("Anonymous")
+                    .build());
+        }
+
+        assertEquals(13, bookSearchIndex.size());
+        assertEquals(10, bookSearchIndex.search("anonymous", 100).size());
+        assertEquals(1, bookSearchIndex.search("4999", 10).size());
+        assertTrue(bookSearchIndex.search("10", 10).isEmpty());
+    }
+
+    //test tokenizer splits on punctuation and lower cases words
+    @Test
+    void tokenize() {
+        assertEquals(List.of("j", "k", "rowling", "sorcerer", "s", "1"),
+                BookSearchIndex.tokenize("J.K. Rowling: Sorcerer's (#1)"));
+    }
+
+}
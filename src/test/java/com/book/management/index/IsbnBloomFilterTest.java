@@ -0,0 +1,41 @@
+package com.book.management.index;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IsbnBloomFilterTest {
+
+    //test every isbn put is reported as possibly present
+    @Test
+    void mightContain_noFalseNegative() {
+        IsbnBloomFilter isbnBloomFilter = new IsbnBloomFilter(10000, 0.01);
+        for (long isbn = 9780000000000L; isbn < 9780000010000L; isbn++) {
+            isbnBloomFilter.put(isbn);
+        }
+
+        for (long isbn = 9780000000000L; isbn < 9780000010000L; isbn++) {
+            assertTrue(isbnBloomFilter.mightContain(isbn));
+        }
+        assertFalse(isbnBloomFilter.mightContain(null));
+    }
+
+    //test observed false positive rate stays near the configured probability
+    @Test
+    void mightContain_falsePositiveRate() {
+        IsbnBloomFilter isbnBloomFilter = new IsbnBloomFilter(10000, 0.01);
+        for (long isbn = 9780000000000L; isbn < 9780000010000L; isbn++) {
+            isbnBloomFilter.put(isbn);
+        }
+
+        int falsePositives = 0;
+        for (long isbn = 9790000000000L; isbn < 9790000010000L; isbn++) {
+            if (isbnBloomFilter.mightContain(isbn)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 200, "false positives: " + falsePositives);
+        assertEquals(0.01, isbnBloomFilter.expectedFalsePositiveRate(), 0.005);
+    }
+
+}
@@ -0,0 +1,265 @@
+package com.book.management.ingest;
+
+import com.book.management.dto.request.AddBookRequest;
+import com.book.management.dto.response.BookResponse;
+import com.book.management.entity.Book;
+import com.book.management.event.BookChangedEvent;
+import com.book.management.index.IsbnBloomFilter;
+import com.book.management.repository.BookRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class GroupCommitBookWriterTest {
+
+    @Mock
+    BookRepository bookRepository;
+
+    @Mock
+    PlatformTransactionManager transactionManager;
+
+    @Mock
+    ApplicationEventPublisher applicationEventPublisher;
+
+    IsbnBloomFilter isbnBloomFilter = new IsbnBloomFilter(1000, 0.01);
+
+    MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    ExecutorService callers = Executors.newFixedThreadPool(3);
+
+    GroupCommitBookWriter groupCommitBookWriter;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        //saveAll hands out ids in order, like the sequence would
+        lenient().when(bookRepository.saveAll(any())).thenAnswer(invocation -> {
+            List<Book> books = invocation.getArgument(0);
+            for (int i = 0; i < books.size(); i++) {
+                books.get(i).setBookId(i + 1);
+                books.get(i).setVersion(0);
+            }
+            return books;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+        if (groupCommitBookWriter != null) {
+            groupCommitBookWriter.close();
+        }
+    }
+
+    //test adds queued within the linger share one saveAll and one commit
+    @Test
+    void add_coalescesConcurrentAdds() throws Exception {
+        //given
+        groupCommitBookWriter = writer(3, Duration.ofSeconds(5), 100, GroupCommitBookWriter.QueueFullPolicy.WAIT);
+
+        //when
+        List<Future<Optional<BookResponse>>> results = new ArrayList<>();
+        for (long isbn = 9780000000001L; isbn <= 9780000000003L; isbn++) {
+            AddBookRequest addBookRequest = addBookRequest(isbn);
+            results.add(callers.submit(() -> groupCommitBookWriter.add(addBookRequest)));
+        }
+
+        //then
+        for (Future<Optional<BookResponse>> result : results) {
+            assertTrue(result.get(5, TimeUnit.SECONDS).isPresent());
+        }
+        verify(bookRepository, times(1)).saveAll(argThat(books -> ((List<?>) books).size() == 3));
+        verify(transactionManager, times(1)).commit(any());
+        assertEquals(1, meterRegistry.get("book.group.commit.batch.size").summary().count());
+        assertEquals(3, meterRegistry.get("book.group.commit.batch.size").summary().totalAmount());
+        assertEquals(3, meterRegistry.get("book.group.commit.wait").timer().count());
+        verify(applicationEventPublisher, times(3)).publishEvent(any(BookChangedEvent.class));
+    }
+
+    //test an isbn already stored comes back empty without an insert
+    @Test
+    void add_duplicateIsbnIsEmpty() {
+        //given
+        groupCommitBookWriter = writer(10, Duration.ofMillis(10), 100, GroupCommitBookWriter.QueueFullPolicy.WAIT);
+        isbnBloomFilter.put(9780062315007L);
+        when(bookRepository.findExistingIsbns(Set.of(9780062315007L))).thenReturn(List.of(9780062315007L));
+
+        //when
+        Optional<BookResponse> response = groupCommitBookWriter.add(addBookRequest(9780062315007L));
+
+        //then
+        assertTrue(response.isEmpty());
+        verify(bookRepository, never()).saveAll(any());
+        verify(applicationEventPublisher, never()).publishEvent(any());
+    }
+
+    //test a concurrent duplicate at commit falls back to one insert per add
+    @Test
+    void flush_retriesOneByOneOnConcurrentDuplicate() {
+        //given
+        groupCommitBookWriter = writer(10, Duration.ofMillis(10), 100, GroupCommitBookWriter.QueueFullPolicy.WAIT);
+        doThrow(duplicateIsbn()).when(transactionManager).commit(any());
+        when(bookRepository.insertIfAbsent(9780439708180L, "Title", "Author")).thenReturn(Optional.empty());
+
+        //when
+        Optional<BookResponse> response = groupCommitBookWriter.add(addBookRequest(9780439708180L));
+
+        //then
+        assertTrue(response.isEmpty());
+        verify(bookRepository, times(1)).insertIfAbsent(9780439708180L, "Title", "Author");
+    }
+
+    //test a retry that fails fails only its own add and leaves the flusher running for later adds
+    @Test
+    void flush_retryFailureFailsOnlyThatAdd() throws Exception {
+        //given
+        groupCommitBookWriter = writer(2, Duration.ofSeconds(5), 100, GroupCommitBookWriter.QueueFullPolicy.WAIT);
+        doThrow(duplicateIsbn()).doNothing().when(transactionManager).commit(any());
+        when(bookRepository.insertIfAbsent(9780000000001L, "Title", "Author"))
+                .thenThrow(new DataAccessResourceFailureException("connection is not available"));
+        when(bookRepository.insertIfAbsent(9780000000002L, "Title", "Author")).thenReturn(Optional.of(2));
+
+        //when
+        Future<Optional<BookResponse>> failed =
+                callers.submit(() -> groupCommitBookWriter.add(addBookRequest(9780000000001L)));
+        Future<Optional<BookResponse>> retried =
+                callers.submit(() -> groupCommitBookWriter.add(addBookRequest(9780000000002L)));
+
+        //then
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(DataAccessResourceFailureException.class, exception.getCause());
+        assertEquals(2, retried.get(5, TimeUnit.SECONDS).orElseThrow().getBookId());
+        Future<Optional<BookResponse>> later =
+                callers.submit(() -> groupCommitBookWriter.add(addBookRequest(9780000000003L)));
+        Future<Optional<BookResponse>> laterPair =
+                callers.submit(() -> groupCommitBookWriter.add(addBookRequest(9780000000004L)));
+        assertTrue(later.get(5, TimeUnit.SECONDS).isPresent());
+        assertTrue(laterPair.get(5, TimeUnit.SECONDS).isPresent());
+    }
+
+    //test a caller stops waiting with 503 once its batch is not committed within the commit timeout, and the flusher
+    //still publishes the add once it commits
+    @Test
+    void add_timesOutWaitingForCommit() {
+        //given
+        groupCommitBookWriter = writer(1, Duration.ZERO, 100, GroupCommitBookWriter.QueueFullPolicy.WAIT,
+                Duration.ofMillis(50));
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            List<Book> books = invocation.getArgument(0);
+            books.get(0).setBookId(1);
+            books.get(0).setVersion(0);
+            return books;
+        }).when(bookRepository).saveAll(any());
+
+        //when
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> groupCommitBookWriter.add(addBookRequest(9780000000001L)));
+        release.countDown();
+
+        //then
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, exception.getStatus());
+        verify(applicationEventPublisher, timeout(5000)).publishEvent(BookChangedEvent.builder()
+                .type(BookChangedEvent.Type.ADDED)
+                .bookId(1)
+                .book(BookResponse.builder()
+                        .bookId(1)
+                        .isbn(9780000000001L)
+                        .bookTitle("Title")
+                        .bookAuthor("Author")
+                        .version(0)
+                        .build())
+                .build());
+    }
+
+    //test the reject policy answers 503 at once when the queue is full
+    @Test
+    void add_rejectsWhenQueueFull() throws Exception {
+        //given
+        groupCommitBookWriter = writer(1, Duration.ZERO, 1, GroupCommitBookWriter.QueueFullPolicy.REJECT);
+        CountDownLatch flushing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            flushing.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return invocation.getArgument(0);
+        }).when(bookRepository).saveAll(any());
+
+        //when
+        callers.submit(() -> groupCommitBookWriter.add(addBookRequest(9780000000001L)));
+        assertTrue(flushing.await(5, TimeUnit.SECONDS));
+        callers.submit(() -> groupCommitBookWriter.add(addBookRequest(9780000000002L)));
+        while (meterRegistry.get("book.group.commit.queue").gauge().value() < 1) {
+            Thread.sleep(1);
+        }
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> groupCommitBookWriter.add(addBookRequest(9780000000003L)));
+        release.countDown();
+
+        //then
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, exception.getStatus());
+        assertEquals(1, meterRegistry.get("book.group.commit.rejected").counter().count());
+    }
+
+    private GroupCommitBookWriter writer(int batchSize, Duration maxLinger, int queueCapacity,
+                                         GroupCommitBookWriter.QueueFullPolicy queueFullPolicy) {
+        return writer(batchSize, maxLinger, queueCapacity, queueFullPolicy, Duration.ofSeconds(5));
+    }
+
+    private GroupCommitBookWriter writer(int batchSize, Duration maxLinger, int queueCapacity,
+                                         GroupCommitBookWriter.QueueFullPolicy queueFullPolicy, Duration commitTimeout) {
+        GroupCommitBookWriter writer = new GroupCommitBookWriter(true, batchSize, maxLinger, queueCapacity,
+                queueFullPolicy, Duration.ofSeconds(1), commitTimeout);
+        ReflectionTestUtils.setField(writer, "bookRepository", bookRepository);
+        ReflectionTestUtils.setField(writer, "isbnBloomFilter", isbnBloomFilter);
+        ReflectionTestUtils.setField(writer, "transactionManager", transactionManager);
+        ReflectionTestUtils.setField(writer, "applicationEventPublisher", applicationEventPublisher);
+        writer.bindTo(meterRegistry);
+        return writer;
+    }
+
+    private static AddBookRequest addBookRequest(Long isbn) {
+        return AddBookRequest.builder()
+                .isbn(isbn)
+                .bookTitle("Title")
+                .bookAuthor("Author")
+                .build();
+    }
+
+    //as hibernate and the postgres driver report a second row for an isbn
+    static DataIntegrityViolationException duplicateIsbn() {
+        return new DataIntegrityViolationException("could not execute statement", new SQLException(
+                "ERROR: duplicate key value violates unique constraint \"book_isbn_key\"", "23505"));
+    }
+}
@@ -0,0 +1,173 @@
+package com.book.management.limit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimitTest {
+
+    static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    static final long SLOW = TimeUnit.MILLISECONDS.toNanos(100);
+    static final String GET_BOOK = "GET /api/book/id/{bookId}";
+    static final String LIST = "GET /api/book/list";
+
+    //test requests over the limit are refused until a slot is released
+    @Test
+    void tryAcquire_refusesOverLimit() {
+        //given
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(2, 1, 10, 2.0, 0.5);
+
+        //when
+        boolean first = limit.tryAcquire();
+        boolean second = limit.tryAcquire();
+        boolean third = limit.tryAcquire();
+        limit.release(GET_BOOK, System.nanoTime(), FAST, false);
+
+        //then
+        assertTrue(first);
+        assertTrue(second);
+        assertFalse(third);
+        assertTrue(limit.tryAcquire());
+    }
+
+    //test fast requests with the limit in use raise it by about one per round trip
+    @Test
+    void release_fastSamplesIncreaseLimit() {
+        //given
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(4, 1, 10, 2.0, 0.5);
+
+        //when
+        for (int i = 0; i < 8; i++) {
+            while (limit.tryAcquire()) {
+                //fill every slot so the limit counts as used
+            }
+            limit.release(GET_BOOK, System.nanoTime(), FAST, false);
+        }
+
+        //then
+        assertTrue(limit.getLimit() > 4);
+    }
+
+    //test a slow request cuts the limit once, later ones started before the cut do not cut again
+    @Test
+    void release_slowSampleDecreasesLimitOncePerRoundTrip() {
+        //given
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(8, 1, 10, 2.0, 0.5);
+        long startTime = System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            limit.tryAcquire();
+        }
+        limit.release(GET_BOOK, startTime, FAST, false);
+
+        //when
+        limit.release(GET_BOOK, startTime, SLOW, false);
+        limit.release(GET_BOOK, startTime, SLOW, false);
+
+        //then
+        assertEquals(4, limit.getLimit());
+        assertEquals(0, limit.getInFlight());
+    }
+
+    //test a failed request cuts the limit but never below the minimum
+    @Test
+    void release_failureDecreasesLimitToMinimum() {
+        //given
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(4, 3, 10, 2.0, 0.5);
+
+        //when
+        limit.tryAcquire();
+        limit.release(GET_BOOK, System.nanoTime(), FAST, true);
+
+        //then
+        assertEquals(3, limit.getLimit());
+    }
+
+    //test a slower operation is compared with its own baseline, not with the fastest operation seen
+    @Test
+    void release_baselinePerOperation() {
+        //given
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(8, 1, 10, 2.0, 0.5);
+        limit.tryAcquire();
+        limit.release(GET_BOOK, System.nanoTime(), FAST, false);
+
+        //when
+        limit.tryAcquire();
+        limit.release(LIST, System.nanoTime(), SLOW, false);
+        limit.tryAcquire();
+        limit.release(LIST, System.nanoTime(), SLOW, false);
+
+        //then
+        assertEquals(8, limit.getLimit());
+    }
+
+    //test a request that is no latency sample frees its slot without moving the limit unless it failed
+    @Test
+    void release_withoutOperationOnlyCountsFailures() {
+        //given
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(4, 1, 10, 2.0, 0.5);
+        limit.tryAcquire();
+        limit.release(GET_BOOK, System.nanoTime(), FAST, false);
+
+        //when
+        limit.tryAcquire();
+        limit.release(null, System.nanoTime(), SLOW, false);
+        int afterSlow = limit.getLimit();
+        limit.tryAcquire();
+        limit.release(null, System.nanoTime(), FAST, true);
+
+        //then
+        assertEquals(4, afterSlow);
+        assertEquals(2, limit.getLimit());
+        assertEquals(0, limit.getInFlight());
+    }
+
+    //test a route with an ordinary long tail keeps its limit: a lognormal rtt around 10ms with 1% of requests five
+    //times slower, as gc pauses and cold pages give, every slot in use and every request allowed to cut
+    @Test
+    void release_tailLatencyKeepsLimit() {
+        //given
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(50, 5, 400, 2.0, 0.9);
+        Random random = new Random(42);
+
+        //when
+        for (int i = 0; i < 20_000; i++) {
+            while (limit.tryAcquire()) {
+                //fill every slot so the limit counts as used
+            }
+            limit.release(GET_BOOK, System.nanoTime(), realisticRtt(random), false);
+        }
+
+        //then
+        assertTrue(limit.getLimit() >= 50, "limit fell to " + limit.getLimit());
+    }
+
+    //test latency rising and staying up cuts the limit within a few requests
+    @Test
+    void release_sustainedSlowdownDecreasesLimit() {
+        //given
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(50, 5, 400, 2.0, 0.9);
+        Random random = new Random(42);
+        for (int i = 0; i < 2_000; i++) {
+            limit.tryAcquire();
+            limit.release(GET_BOOK, System.nanoTime(), realisticRtt(random), false);
+        }
+        int before = limit.getLimit();
+
+        //when
+        for (int i = 0; i < 20; i++) {
+            limit.tryAcquire();
+            limit.release(GET_BOOK, System.nanoTime(), 3 * realisticRtt(random), false);
+        }
+
+        //then
+        assertTrue(limit.getLimit() < before, "limit stayed at " + limit.getLimit());
+    }
+
+    private static long realisticRtt(Random random) {
+        double rtt = FAST * Math.exp(0.5 * random.nextGaussian());
+        return (long) (random.nextInt(100) == 0 ? 5 * rtt : rtt);
+    }
+}
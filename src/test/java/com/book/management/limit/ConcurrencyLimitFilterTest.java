@@ -0,0 +1,113 @@
+package com.book.management.limit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrencyLimitFilterTest {
+
+    MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    ConcurrencyLimitFilter concurrencyLimitFilter;
+
+    @BeforeEach
+    void setUp() {
+        //one read and one write slot
+        concurrencyLimitFilter = new ConcurrencyLimitFilter(true, 1, 1, 1, 1, 1, 1, 2.0, 0.9, Duration.ofSeconds(2));
+        concurrencyLimitFilter.bindTo(meterRegistry);
+    }
+
+    //test a read over the limit is shed with 503 and Retry-After while a write still has its own slot
+    @Test
+    void doFilter_shedsReadOverLimit() throws Exception {
+        //given
+        MockHttpServletResponse shed = new MockHttpServletResponse();
+        MockHttpServletResponse write = new MockHttpServletResponse();
+        //the first read holds the only read slot while the others arrive
+        FilterChain slowRead = (request, response) -> {
+            concurrencyLimitFilter.doFilter(new MockHttpServletRequest("GET", "/api/book/list"), shed,
+                    new MockFilterChain());
+            concurrencyLimitFilter.doFilter(new MockHttpServletRequest("POST", "/api/book/add"), write,
+                    new MockFilterChain());
+        };
+
+        //when
+        concurrencyLimitFilter.doFilter(new MockHttpServletRequest("GET", "/api/book/list"),
+                new MockHttpServletResponse(), slowRead);
+
+        //then
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE.value(), shed.getStatus());
+        assertEquals("2", shed.getHeader(HttpHeaders.RETRY_AFTER));
+        assertEquals(HttpStatus.OK.value(), write.getStatus());
+        assertEquals(1, meterRegistry.get("book.concurrency.rejected").tag("kind", "read").counter().count());
+        assertEquals(0, meterRegistry.get("book.concurrency.inflight").tag("kind", "read").gauge().value());
+    }
+
+    //test routes outside /api/book are never limited
+    @Test
+    void doFilter_skipsOtherRoutes() throws Exception {
+        //given
+        MockHttpServletResponse actuator = new MockHttpServletResponse();
+        FilterChain slowRead = (request, response) -> concurrencyLimitFilter.doFilter(
+                new MockHttpServletRequest("GET", "/actuator/health"), actuator, new MockFilterChain());
+
+        //when
+        concurrencyLimitFilter.doFilter(new MockHttpServletRequest("GET", "/api/book/list"),
+                new MockHttpServletResponse(), slowRead);
+
+        //then
+        assertEquals(HttpStatus.OK.value(), actuator.getStatus());
+    }
+
+    //test only routed requests that reached the database are samples, bulk and batch never are
+    @Test
+    void operation_onlyDatabaseCallsOutsideBulkAndBatch() {
+        //given
+        MockHttpServletRequest getBook = routed("GET", "/api/book/id/{bookId}");
+        MockHttpServletRequest bulk = routed("POST", "/api/book/bulk");
+        MockHttpServletRequest batch = routed("POST", "/api/book/batch");
+
+        //when
+        //then
+        assertEquals("GET /api/book/id/{bookId}", ConcurrencyLimitFilter.operation(getBook, true));
+        assertNull(ConcurrencyLimitFilter.operation(getBook, false));
+        assertNull(ConcurrencyLimitFilter.operation(bulk, true));
+        assertNull(ConcurrencyLimitFilter.operation(batch, true));
+        assertNull(ConcurrencyLimitFilter.operation(new MockHttpServletRequest("GET", "/api/book/none"), true));
+    }
+
+    //test a repository call inside the request is seen by the filter and the note does not outlive the request
+    @Test
+    void doFilter_notesDatabaseCall() throws Exception {
+        //given
+        FilterChain repositoryCall = (request, response) -> ConcurrencyLimitContext.markDatabaseCall();
+
+        //when
+        concurrencyLimitFilter.doFilter(routed("GET", "/api/book/id/{bookId}"), new MockHttpServletResponse(),
+                repositoryCall);
+        Boolean afterRequest = ConcurrencyLimitContext.begin();
+
+        //then
+        assertNull(afterRequest);
+        assertFalse(ConcurrencyLimitContext.end(afterRequest));
+        assertEquals(0, meterRegistry.get("book.concurrency.inflight").tag("kind", "read").gauge().value());
+    }
+
+    private static MockHttpServletRequest routed(String method, String route) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, route);
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, route);
+        return request;
+    }
+}
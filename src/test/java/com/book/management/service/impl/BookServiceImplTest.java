@@ -1,35 +1,122 @@
 package com.book.management.service.impl;
 
+import com.book.management.cache.BookCache;
+import com.book.management.cache.CatalogueSnapshotCache;
 import com.book.management.dto.request.AddBookRequest;
+import com.book.management.dto.request.BatchBookRequest;
+import com.book.management.dto.request.BatchOperationRequest;
+import com.book.management.dto.request.BulkAddBookRequest;
 import com.book.management.dto.request.FindAllBooksFromAuthorRequest;
+import com.book.management.dto.request.MultiGetBookRequest;
+import com.book.management.dto.request.PatchBookRequest;
 import com.book.management.dto.request.UpdateBookRequest;
+import com.book.management.dto.response.AuthorCountResponse;
+import com.book.management.dto.response.BatchBookResponse;
+import com.book.management.dto.response.BatchOperationResponse;
+import com.book.management.dto.response.BookChangePageResponse;
+import com.book.management.dto.response.BookChangeResponse;
+import com.book.management.dto.response.BookPageResponse;
 import com.book.management.dto.response.BookResponse;
+import com.book.management.dto.response.BookStatsResponse;
+import com.book.management.dto.response.BulkAddBookResponse;
 import com.book.management.dto.response.DataResponse;
+import com.book.management.dto.response.MultiGetBookResponse;
+import com.book.management.dto.response.ResourceVersion;
+import com.book.management.embedded.MappedBookRepository;
 import com.book.management.entity.Book;
+import com.book.management.event.BookChangedEvent;
+import com.book.management.index.AuthorStatsIndex;
+import com.book.management.index.BookSearchIndex;
+import com.book.management.index.IsbnBloomFilter;
+import com.book.management.ingest.GroupCommitBookWriter;
 import com.book.management.repository.BookRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.AdditionalAnswers.delegatesTo;
 import static org.mockito.Mockito.*;
 
+//cases that depend on what is stored run on both stores: JPA stubs the mocked repository, EMBEDDED stores the
+//books in a fresh memory-mapped store behind a mock that hands it every call, so the same when and then hold for
+//both and verify still sees what the service called
 @Slf4j
 @ExtendWith(MockitoExtension.class)
 class BookServiceImplTest {
 
+    enum Store { JPA, EMBEDDED }
+
+    @TempDir
+    Path tempDir;
+
+    MappedBookRepository embeddedStore;
+
     @Mock
     BookRepository bookRepository;
 
+    @Mock
+    ApplicationEventPublisher applicationEventPublisher;
+
+    @Spy
+    ObjectMapper objectMapper = new ObjectMapper();
+
+    @Spy
+    BookCache bookCache = new BookCache(100, Duration.ofMinutes(1));
+
+    @Spy
+    IsbnBloomFilter isbnBloomFilter = new IsbnBloomFilter(1000, 0.01);
+
+    @Spy
+    BookSearchIndex bookSearchIndex = new BookSearchIndex();
+
+    @Spy
+    AuthorStatsIndex authorStatsIndex = new AuthorStatsIndex(Duration.ZERO);
+
+    @Spy
+    MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Mock
+    GroupCommitBookWriter groupCommitBookWriter;
+
+    @Mock
+    PlatformTransactionManager transactionManager;
+
+    @Spy
+    CatalogueSnapshotCache catalogueSnapshotCache = new CatalogueSnapshotCache(false, Duration.ZERO, Duration.ZERO);
+
     @InjectMocks
     BookServiceImpl bookServiceImpl;
 
@@ -48,21 +135,35 @@ class BookServiceImplTest {
                 .build();
     }
 
+    @AfterEach
+    void tearDown() throws IOException {
+        if (embeddedStore != null) {
+            embeddedStore.close();
+        }
+    }
+
     //test getBook method when success
-    @Test
-    void getBook_success() {
+    @ParameterizedTest
+    @EnumSource(Store.class)
+    void getBook_success(Store store) {
+        use(store);
+
+        //given
+        if (store == Store.JPA) {
+            when(bookRepository.findById(bookModel.getBookId())).thenReturn(Optional.of(bookModel));
+        } else {
+            stored(bookModel);
+        }
         DataResponse<Object> dataBook = DataResponse.builder()
                 .data(BookResponse.builder()
                         .bookId(bookModel.getBookId())
                         .isbn(bookModel.getIsbn())
                         .bookTitle(bookModel.getBookTitle())
                         .bookAuthor(bookModel.getBookAuthor())
+                        .version(bookModel.getVersion())
                         .build())
                 .build();
 
-        //given
-        when(bookRepository.findById(bookModel.getBookId())).thenReturn(Optional.of(bookModel));
-
         //when
         DataResponse<Object> response = bookServiceImpl.getBook(bookModel.getBookId());
 
@@ -74,11 +175,15 @@ class BookServiceImplTest {
     }
 
     //test getBook method when fail because book not found
-    @Test
-    void getBook_bookNotFound() {
+    @ParameterizedTest
+    @EnumSource(Store.class)
+    void getBook_bookNotFound(Store store) {
+        use(store);
 
         //given
-        when(bookRepository.findById(3)).thenThrow(new ResponseStatusException(HttpStatus.NOT_FOUND));
+        if (store == Store.JPA) {
+            when(bookRepository.findById(3)).thenThrow(new ResponseStatusException(HttpStatus.NOT_FOUND));
+        }
 
         //when
         try{
@@ -94,11 +199,17 @@ class BookServiceImplTest {
     }
 
     //test findBookById method when success
-    @Test
-    void findBookById_success() {
+    @ParameterizedTest
+    @EnumSource(Store.class)
+    void findBookById_success(Store store) {
+        use(store);
 
         //given
-        when(bookRepository.findById(bookModel.getBookId())).thenReturn(Optional.of(bookModel));
+        if (store == Store.JPA) {
+            when(bookRepository.findById(bookModel.getBookId())).thenReturn(Optional.of(bookModel));
+        } else {
+            stored(bookModel);
+        }
 
         //when
         Book response = bookServiceImpl.findBookById(bookModel.getBookId());
@@ -111,10 +222,15 @@ class BookServiceImplTest {
     }
 
     //test findBookById method when fail because book not found
-    @Test
-    void findBookById_bookNotFound() {
+    @ParameterizedTest
+    @EnumSource(Store.class)
+    void findBookById_bookNotFound(Store store) {
+        use(store);
+
         //given
-        when(bookRepository.findById(3)).thenThrow(new ResponseStatusException(HttpStatus.NOT_FOUND));
+        if (store == Store.JPA) {
+            when(bookRepository.findById(3)).thenThrow(new ResponseStatusException(HttpStatus.NOT_FOUND));
+        }
 
         //when
         try{
@@ -131,8 +247,9 @@ class BookServiceImplTest {
     }
 
     //test addBook method when success
-    @Test
-    void addBook_success() {
+    @ParameterizedTest
+    @EnumSource(Store.class)
+    void addBook_success(Store store) {
         //create add book request object
         AddBookRequest addBookRequest = AddBookRequest.builder()
                 .isbn(9780439708180L)
@@ -154,6 +271,7 @@ class BookServiceImplTest {
                 .isbn(addBookRequest.getIsbn())
                 .bookTitle(addBookRequest.getBookTitle())
                 .bookAuthor(addBookRequest.getBookAuthor())
+                .version(0)
                 .build();
 
         //simulate data response for return object to be compared
@@ -163,18 +281,25 @@ class BookServiceImplTest {
                         .isbn(savedBook.getIsbn())
                         .bookTitle(savedBook.getBookTitle())
                         .bookAuthor(savedBook.getBookAuthor())
+                        .version(savedBook.getVersion())
                         .build())
                 .build();
 
+        use(store);
+
         //given
-        when(bookRepository.findByIsbn(addBookRequest.getIsbn())).thenReturn(Optional.empty());
-        when(bookRepository.save(addBook)).thenReturn(savedBook);
+        if (store == Store.JPA) {
+            when(bookRepository.save(addBook)).thenReturn(savedBook);
+        } else {
+            stored(bookModel);
+        }
 
         //when
         DataResponse<Object> response = bookServiceImpl.addBook(addBookRequest);
 
         //then
-        verify(bookRepository, times(1)).save(addBook);
+        verify(bookRepository, times(1)).save(argThat(book -> addBook.getIsbn().equals(book.getIsbn())));
+        verify(bookRepository, never()).insertIfAbsent(any(), any(), any());
         assertFalse(response.toString().isEmpty());
         assertEquals(response, dataResponse);
     }
@@ -210,8 +335,11 @@ class BookServiceImplTest {
     }
 
     //test addBook method when fail because book already exist
-    @Test
-    void addBook_failBookAlreadyExist() {
+    @ParameterizedTest
+    @EnumSource(Store.class)
+    void addBook_failBookAlreadyExist(Store store) {
+        use(store);
+
         //create addBookRequest object
         AddBookRequest addBookRequest = AddBookRequest.builder()
                 .isbn(bookModel.getIsbn())
@@ -225,20 +353,31 @@ class BookServiceImplTest {
                 .build();
 
         //given
-        when(bookRepository.findByIsbn(addBookRequest.getIsbn())).thenReturn(Optional.of(bookModel));
+        isbnBloomFilter.put(addBookRequest.getIsbn());
+        if (store == Store.JPA) {
+            when(bookRepository.insertIfAbsent(addBookRequest.getIsbn(), addBookRequest.getBookTitle(),
+                    addBookRequest.getBookAuthor())).thenReturn(Optional.empty());
+        } else {
+            stored(bookModel);
+        }
 
         //when
         DataResponse<Object> response = bookServiceImpl.addBook(addBookRequest);
 
         //then
-        verify(bookRepository, times(1)).findByIsbn(addBookRequest.getIsbn());
+        verify(bookRepository, times(1)).insertIfAbsent(addBookRequest.getIsbn(), addBookRequest.getBookTitle(),
+                addBookRequest.getBookAuthor());
+        verify(bookRepository, never()).save(any());
         assertEquals(response, dataResponse);
 
     }
 
     //test getAllBooks method when success
-    @Test
-    void getAllBooks_success() {
+    @ParameterizedTest
+    @EnumSource(Store.class)
+    void getAllBooks_success(Store store) {
+        use(store);
+
         //simulate result after calling findAll method from repository
         Book secondBook = Book.builder()
                 .createdDate(LocalDateTime.now())
@@ -249,6 +388,9 @@ class BookServiceImplTest {
                 .bookAuthor("J.K. Rowling")
                 .build();
         Iterable<Book> bookIterable = List.of(bookModel, secondBook);
+        if (store == Store.EMBEDDED) {
+            stored(bookModel, secondBook);
+        }
 
         List<BookResponse> bookList = new ArrayList<>();
         bookIterable.forEach(
@@ -258,6 +400,7 @@ class BookServiceImplTest {
                                 .isbn(data.getIsbn())
                                 .bookTitle(data.getBookTitle())
                                 .bookAuthor(data.getBookAuthor())
+                                .version(data.getVersion())
                                 .build())
                 );
 
@@ -267,40 +410,50 @@ class BookServiceImplTest {
                 .build();
 
         //given
-        when(bookRepository.findAll()).thenReturn(bookIterable);
+        if (store == Store.JPA) {
+            when(bookRepository.findAllBookResponses()).thenReturn(bookList);
+        }
 
         //when
         DataResponse<Object> response = bookServiceImpl.getAllBooks();
 
         //then
-        verify(bookRepository, times(1)).findAll();
+        verify(bookRepository, times(1)).findAllBookResponses();
         assertFalse(response.toString().isEmpty());
         assertEquals(response, dataBook);
     }
 
     //test getAllBooks method when no record found
-    @Test
-    void getAllBooks_noRecord() {
+    @ParameterizedTest
+    @EnumSource(Store.class)
+    void getAllBooks_noRecord(Store store) {
+        use(store);
+
         //simulate result after calling findAll method from repository
-        Iterable<Book> bookIterable = List.of();
+        List<BookResponse> bookList = List.of();
 
         //simulate data response for return object to be compared
-        DataResponse<Object> dataBook = DataResponse.builder().data(bookIterable).build();
+        DataResponse<Object> dataBook = DataResponse.builder().data(bookList).build();
 
         //given
-        when(bookRepository.findAll()).thenReturn(bookIterable);
+        if (store == Store.JPA) {
+            when(bookRepository.findAllBookResponses()).thenReturn(bookList);
+        }
 
         //when
         DataResponse<Object> response = bookServiceImpl.getAllBooks();
 
         //then
-        verify(bookRepository, times(1)).findAll();
+        verify(bookRepository, times(1)).findAllBookResponses();
         assertEquals(response, dataBook);
     }
 
     //test updateBook method when success
-    @Test
-    void updateBook_success() {
+    @ParameterizedTest
+    @EnumSource(Store.class)
+    void updateBook_success(Store store) {
+        use(store);
+
         //create add book request object
         UpdateBookRequest updateBookRequest = UpdateBookRequest.builder()
                 .bookId(1)
@@ -309,10 +462,20 @@ class BookServiceImplTest {
                 .bookAuthor("J.K. Rowling")
                 .build();
 
+        //given
+        if (store == Store.EMBEDDED) {
+            stored(bookModel);
+        }
+
         //simulate book object for update
         bookModel.setIsbn(updateBookRequest.getIsbn());
         bookModel.setBookTitle(updateBookRequest.getBookTitle());
         bookModel.setBookAuthor(updateBookRequest.getBookAuthor());
+        bookModel.setVersion(1);
+        if (store == Store.JPA) {
+            when(bookRepository.updateBook(updateBookRequest.getBookId(), null, updateBookRequest.getIsbn(),
+                    updateBookRequest.getBookTitle(), updateBookRequest.getBookAuthor())).thenReturn(Optional.of(bookModel));
+        }
 
         //simulate data response for return object to be compared
         DataResponse<Object> dataResponse = DataResponse.builder()
@@ -321,26 +484,26 @@ class BookServiceImplTest {
                         .isbn(bookModel.getIsbn())
                         .bookTitle(bookModel.getBookTitle())
                         .bookAuthor(bookModel.getBookAuthor())
+                        .version(bookModel.getVersion())
                         .build())
                 .build();
 
-        //given
-        when(bookRepository.findById(updateBookRequest.getBookId())).thenReturn(Optional.of(bookModel));
-        when(bookRepository.save(bookModel)).thenReturn(bookModel);
-
         //when
         DataResponse<Object> response = bookServiceImpl.updateBook(updateBookRequest);
 
         //then
-        verify(bookRepository, times(1)).findById(updateBookRequest.getBookId());
-        verify(bookRepository, times(1)).save(bookModel);
+        verify(bookRepository, never()).findById(any());
+        verify(bookRepository, never()).save(any());
         assertFalse(response.toString().isEmpty());
         assertEquals(response, dataResponse);
     }
 
     //test updateBook method when fail
-    @Test
-    void updateBook_failBookIdNotFound() {
+    @ParameterizedTest
+    @EnumSource(Store.class)
+    void updateBook_failBookIdNotFound(Store store) {
+        use(store);
+
         //create add book request object
         UpdateBookRequest updateBookRequest = UpdateBookRequest.builder()
                 .bookId(100)
@@ -350,8 +513,12 @@ class BookServiceImplTest {
                 .build();
 
         //given
-        when(bookRepository.findById(updateBookRequest.getBookId()))
-                .thenThrow(new ResponseStatusException(HttpStatus.NOT_FOUND));
+        if (store == Store.JPA) {
+            when(bookRepository.updateBook(updateBookRequest.getBookId(), null, updateBookRequest.getIsbn(),
+                    updateBookRequest.getBookTitle(), updateBookRequest.getBookAuthor())).thenReturn(Optional.empty());
+        } else {
+            stored(bookModel);
+        }
 
         //when
         try{
@@ -362,13 +529,16 @@ class BookServiceImplTest {
         }
 
         //then
-        verify(bookRepository, times(1)).findById(updateBookRequest.getBookId());
+        verify(bookRepository, never()).existsById(any());
         assertEquals(message, HttpStatus.NOT_FOUND.toString());
     }
 
     //test deleteBook method when success
-    @Test
-    void deleteBook_success() {
+    @ParameterizedTest
+    @EnumSource(Store.class)
+    void deleteBook_success(Store store) {
+        use(store);
+
         //simulate data response for return object to be compared
         String bookResponse = "Successfully Delete Book with bookId " + bookModel.getBookId();
         DataResponse<Object> dataBook = DataResponse.builder()
@@ -376,25 +546,33 @@ class BookServiceImplTest {
                 .build();
 
         //given
-        when(bookRepository.findById(bookModel.getBookId())).thenReturn(Optional.of(bookModel));
+        if (store == Store.JPA) {
+            when(bookRepository.deleteReturningBookId(bookModel.getBookId())).thenReturn(Optional.of(bookModel.getBookId()));
+        } else {
+            stored(bookModel);
+        }
 
         //when
         DataResponse<Object> response = bookServiceImpl.deleteBook(bookModel.getBookId());
 
         //then
-        verify(bookRepository, times(1)).findById(bookModel.getBookId());
-        verify(bookRepository, times(1)).deleteById(bookModel.getBookId());
+        verify(bookRepository, never()).findById(any());
+        verify(bookRepository, times(1)).deleteReturningBookId(bookModel.getBookId());
         assertFalse(response.toString().isEmpty());
         assertEquals(response, dataBook);
 
     }
 
     //test deleteBook method when fail
-    @Test
-    void deleteBook_bookNotFound() {
+    @ParameterizedTest
+    @EnumSource(Store.class)
+    void deleteBook_bookNotFound(Store store) {
+        use(store);
 
         //given
-        when(bookRepository.findById(100)).thenThrow(new ResponseStatusException(HttpStatus.NOT_FOUND));
+        if (store == Store.JPA) {
+            when(bookRepository.deleteReturningBookId(100)).thenReturn(Optional.empty());
+        }
 
         //when
         try{
@@ -405,13 +583,16 @@ class BookServiceImplTest {
         }
 
         //then
-        verify(bookRepository, times(1)).findById(100);
+        verify(bookRepository, times(1)).deleteReturningBookId(100);
         assertEquals(message, HttpStatus.NOT_FOUND.toString());
     }
 
     //test findAllBooksFromAuthor method when success
-    @Test
-    void findAllBooksFromAuthor_success() {
+    @ParameterizedTest
+    @EnumSource(Store.class)
+    void findAllBooksFromAuthor_success(Store store) {
+        use(store);
+
         //create findAllBooksFromAuthorRequest object
         FindAllBooksFromAuthorRequest findAllBooksFromAuthorRequest = FindAllBooksFromAuthorRequest.builder()
                 .bookAuthor(bookModel.getBookAuthor())
@@ -426,6 +607,9 @@ class BookServiceImplTest {
                 .bookAuthor("Paulo Coelho")
                 .build();
         List<Book> bookList = List.of(bookModel, secondBook);
+        if (store == Store.EMBEDDED) {
+            stored(bookModel, secondBook);
+        }
         List<BookResponse> bookResponseList = new ArrayList<>();
         bookList.forEach(
                 data -> bookResponseList.add(
@@ -434,6 +618,7 @@ class BookServiceImplTest {
                                 .isbn(data.getIsbn())
                                 .bookTitle(data.getBookTitle())
                                 .bookAuthor(data.getBookAuthor())
+                                .version(data.getVersion())
                                 .build())
         );
 
@@ -443,8 +628,10 @@ class BookServiceImplTest {
                 .build();
 
         //given
-        when(bookRepository.findAllBooksFromAuthor(findAllBooksFromAuthorRequest.getBookAuthor()))
-                .thenReturn(bookList);
+        if (store == Store.JPA) {
+            when(bookRepository.findAllBooksFromAuthor(findAllBooksFromAuthorRequest.getBookAuthor()))
+                    .thenReturn(bookResponseList);
+        }
 
         //when
         DataResponse<Object> response = bookServiceImpl.findAllBooksFromAuthor(findAllBooksFromAuthorRequest);
@@ -457,21 +644,28 @@ class BookServiceImplTest {
     }
 
     //test findAllBooksFromAuthor method when no record found
-    @Test
-    void findAllBooksFromAuthor_noRecord() {
+    @ParameterizedTest
+    @EnumSource(Store.class)
+    void findAllBooksFromAuthor_noRecord(Store store) {
+        use(store);
+
         //create findAllBooksFromAuthorRequest object
         FindAllBooksFromAuthorRequest findAllBooksFromAuthorRequest = FindAllBooksFromAuthorRequest.builder()
                 .bookAuthor("John Doe")
                 .build();
 
-        List<Book> bookList = new ArrayList<>();
+        List<BookResponse> bookList = new ArrayList<>();
 
         //simulate data response for return object to be compared
         DataResponse<Object> dataBook = DataResponse.builder().data(bookList).build();
 
         //given
-        when(bookRepository.findAllBooksFromAuthor(findAllBooksFromAuthorRequest.getBookAuthor()))
-                .thenReturn(bookList);
+        if (store == Store.JPA) {
+            when(bookRepository.findAllBooksFromAuthor(findAllBooksFromAuthorRequest.getBookAuthor()))
+                    .thenReturn(bookList);
+        } else {
+            stored(bookModel);
+        }
 
         //when
         DataResponse<Object> response = bookServiceImpl.findAllBooksFromAuthor(findAllBooksFromAuthorRequest);
@@ -482,8 +676,11 @@ class BookServiceImplTest {
     }
 
     //test findAllBooksOrderByIsbn method when success
-    @Test
-    void findAllBooksOrderByIsbn_success() {
+    @ParameterizedTest
+    @EnumSource(Store.class)
+    void findAllBooksOrderByIsbn_success(Store store) {
+        use(store);
+
         Book secondBook = Book.builder()
                 .createdDate(LocalDateTime.now())
                 .updatedDate(LocalDateTime.now())
@@ -493,6 +690,9 @@ class BookServiceImplTest {
                 .bookAuthor("J.K. Rowling")
                 .build();
         List<Book> bookList = List.of(secondBook, bookModel);
+        if (store == Store.EMBEDDED) {
+            stored(bookModel, secondBook);
+        }
         List<BookResponse> bookResponseList = new ArrayList<>();
         bookList.forEach(
                 data -> bookResponseList.add(
@@ -501,6 +701,7 @@ class BookServiceImplTest {
                                 .isbn(data.getIsbn())
                                 .bookTitle(data.getBookTitle())
                                 .bookAuthor(data.getBookAuthor())
+                                .version(data.getVersion())
                                 .build())
         );
 
@@ -510,8 +711,10 @@ class BookServiceImplTest {
                 .build();
 
         //given
-        when(bookRepository.findAllBooksOrderByIsbn())
-                .thenReturn(bookList);
+        if (store == Store.JPA) {
+            when(bookRepository.findAllBooksOrderByIsbn())
+                    .thenReturn(bookResponseList);
+        }
 
         //when
         DataResponse<Object> response = bookServiceImpl.findAllBooksOrderByIsbn();
@@ -524,16 +727,21 @@ class BookServiceImplTest {
     }
 
     //test findAllBooksOrderByIsbn method when no record found
-    @Test
-    void findAllBooksOrderByIsbn_noRecord() {
-        List<Book> bookList = new ArrayList<>();
+    @ParameterizedTest
+    @EnumSource(Store.class)
+    void findAllBooksOrderByIsbn_noRecord(Store store) {
+        use(store);
+
+        List<BookResponse> bookList = new ArrayList<>();
 
         //simulate data response for return object to be compared
         DataResponse<Object> dataBook = DataResponse.builder().data(bookList).build();
 
         //given
-        when(bookRepository.findAllBooksOrderByIsbn())
-                .thenReturn(bookList);
+        if (store == Store.JPA) {
+            when(bookRepository.findAllBooksOrderByIsbn())
+                    .thenReturn(bookList);
+        }
 
         //when
         DataResponse<Object> response = bookServiceImpl.findAllBooksOrderByIsbn();
@@ -543,4 +751,1128 @@ class BookServiceImplTest {
         assertEquals(response, dataBook);
     }
 
-}
\ No newline at end of file
+    //test getAllBooks page method when another page exists
+    @ParameterizedTest
+    @EnumSource(Store.class)
+    void getAllBooksPage_hasNextPage(Store store) {
+        use(store);
+
+        Book secondBook = Book.builder()
+                .createdDate(LocalDateTime.now())
+                .updatedDate(LocalDateTime.now())
+                .bookId(2)
+                .isbn(9780439708180L)
+                .bookTitle("Harry Potter and the Sorcerer's Stone (#1)")
+                .bookAuthor("J.K. Rowling")
+                .build();
+
+        //given
+        if (store == Store.JPA) {
+            when(bookRepository.findByBookIdGreaterThanOrderByBookIdAsc(0, PageRequest.of(0, 2)))
+                    .thenReturn(List.of(BookServiceImpl.toBookResponse(bookModel),
+                            BookServiceImpl.toBookResponse(secondBook)));
+        } else {
+            stored(bookModel, secondBook);
+        }
+
+        //simulate data response for return object to be compared
+        DataResponse<Object> dataBook = DataResponse.builder()
+                .data(BookPageResponse.builder()
+                        .books(List.of(BookResponse.builder()
+                                .bookId(bookModel.getBookId())
+                                .isbn(bookModel.getIsbn())
+                                .bookTitle(bookModel.getBookTitle())
+                                .bookAuthor(bookModel.getBookAuthor())
+                                .version(bookModel.getVersion())
+                                .build()))
+                        .nextCursor(BookServiceImpl.encodeCursor(bookModel.getBookId()))
+                        .build())
+                .build();
+
+        //when
+        DataResponse<Object> response = bookServiceImpl.getAllBooks(1, null);
+
+        //then
+        verify(bookRepository, times(1)).findByBookIdGreaterThanOrderByBookIdAsc(0, PageRequest.of(0, 2));
+        assertEquals(response, dataBook);
+    }
+
+    //test getAllBooks page method when reading the last page from a cursor
+    @ParameterizedTest
+    @EnumSource(Store.class)
+    void getAllBooksPage_lastPage(Store store) {
+        use(store);
+
+        String cursor = BookServiceImpl.encodeCursor(bookModel.getBookId());
+
+        //simulate data response for return object to be compared
+        DataResponse<Object> dataBook = DataResponse.builder()
+                .data(BookPageResponse.builder()
+                        .books(List.of())
+                        .build())
+                .build();
+
+        //given
+        if (store == Store.JPA) {
+            when(bookRepository.findByBookIdGreaterThanOrderByBookIdAsc(bookModel.getBookId(), PageRequest.of(0, 11)))
+                    .thenReturn(List.of());
+        } else {
+            stored(bookModel);
+        }
+
+        //when
+        DataResponse<Object> response = bookServiceImpl.getAllBooks(10, cursor);
+
+        //then
+        verify(bookRepository, times(1))
+                .findByBookIdGreaterThanOrderByBookIdAsc(bookModel.getBookId(), PageRequest.of(0, 11));
+        assertEquals(response, dataBook);
+    }
+
+    //test getAllBooks page method when fail because of invalid limit or cursor
+    @Test
+    void getAllBooksPage_badRequest() {
+        assertThrows(ResponseStatusException.class, () -> bookServiceImpl.getAllBooks(0, null));
+        assertThrows(ResponseStatusException.class,
+                () -> bookServiceImpl.getAllBooks(BookServiceImpl.MAX_PAGE_LIMIT + 1, null));
+        assertThrows(ResponseStatusException.class, () -> bookServiceImpl.getAllBooks(10, "not-a-cursor"));
+        verifyNoInteractions(bookRepository);
+    }
+
+    //test exportBooks method writes one json line per book
+    @ParameterizedTest
+    @EnumSource(Store.class)
+    void exportBooks_success(Store store) throws Exception {
+        use(store);
+
+        Book secondBook = Book.builder()
+                .bookId(2)
+                .isbn(9780439708180L)
+                .bookTitle("Harry Potter and the Sorcerer's Stone (#1)")
+                .bookAuthor("J.K. Rowling")
+                .build();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        //given
+        if (store == Store.JPA) {
+            when(bookRepository.streamAllBooksOrderByIsbn()).thenReturn(Stream.of(
+                    BookServiceImpl.toBookResponse(secondBook), BookServiceImpl.toBookResponse(bookModel)));
+        } else {
+            stored(bookModel, secondBook);
+        }
+
+        //when
+        bookServiceImpl.exportBooks(outputStream);
+
+        //then
+        String[] lines = outputStream.toString(StandardCharsets.UTF_8).split("\n");
+        verify(bookRepository, times(1)).streamAllBooksOrderByIsbn();
+        assertEquals(2, lines.length);
+        assertEquals(secondBook.getBookId(), objectMapper.readValue(lines[0], Map.class).get("bookId"));
+        assertEquals(bookModel.getBookTitle(), objectMapper.readValue(lines[1], Map.class).get("bookTitle"));
+    }
+
+    //test bulkAddBook method skips isbn already stored or repeated in the batch
+    @ParameterizedTest
+    @EnumSource(Store.class)
+    void bulkAddBook_success(Store store) {
+        use(store);
+
+        AddBookRequest newBook = AddBookRequest.builder()
+                .isbn(9780439708180L)
+                .bookTitle("Harry Potter and the Sorcerer's Stone (#1)")
+                .bookAuthor("J.K. Rowling")
+                .build();
+        AddBookRequest existingBook = AddBookRequest.builder()
+                .isbn(bookModel.getIsbn())
+                .bookTitle(bookModel.getBookTitle())
+                .bookAuthor(bookModel.getBookAuthor())
+                .build();
+        BulkAddBookRequest bulkAddBookRequest = BulkAddBookRequest.builder()
+                .books(List.of(newBook, existingBook, newBook))
+                .build();
+
+        //simulate book object before and after calling saveAll method from repository
+        Book addBook = Book.builder()
+                .isbn(newBook.getIsbn())
+                .bookTitle(newBook.getBookTitle())
+                .bookAuthor(newBook.getBookAuthor())
+                .build();
+        Book savedBook = Book.builder()
+                .bookId(2)
+                .isbn(newBook.getIsbn())
+                .bookTitle(newBook.getBookTitle())
+                .bookAuthor(newBook.getBookAuthor())
+                .version(0)
+                .build();
+
+        //simulate data response for return object to be compared
+        DataResponse<Object> dataResponse = DataResponse.builder()
+                .data(BulkAddBookResponse.builder()
+                        .books(List.of(BookResponse.builder()
+                                .bookId(savedBook.getBookId())
+                                .isbn(savedBook.getIsbn())
+                                .bookTitle(savedBook.getBookTitle())
+                                .bookAuthor(savedBook.getBookAuthor())
+                                .version(savedBook.getVersion())
+                                .build()))
+                        .duplicateIsbns(List.of(existingBook.getIsbn(), newBook.getIsbn()))
+                        .build())
+                .build();
+
+        //given
+        isbnBloomFilter.put(existingBook.getIsbn());
+        if (store == Store.JPA) {
+            when(bookRepository.findExistingIsbns(Set.of(existingBook.getIsbn())))
+                    .thenReturn(List.of(existingBook.getIsbn()));
+            when(bookRepository.saveAll(List.of(addBook))).thenReturn(List.of(savedBook));
+        } else {
+            stored(bookModel);
+        }
+
+        //when
+        DataResponse<Object> response = bookServiceImpl.bulkAddBook(bulkAddBookRequest);
+
+        //then
+        verify(bookRepository, times(1)).findExistingIsbns(Set.of(existingBook.getIsbn()));
+        verify(bookRepository, times(1)).saveAll(anyList());
+        verify(bookRepository, never()).findByIsbn(any());
+        assertEquals(response, dataResponse);
+    }
+
+    //test bulkAddBook method retries row by row when an isbn was committed concurrently since the lookup; the
+    //embedded store has to refuse the whole batch for the retry to add the new book once
+    @ParameterizedTest
+    @EnumSource(Store.class)
+    void bulkAddBook_concurrentDuplicate(Store store) {
+        use(store);
+
+        AddBookRequest newBook = AddBookRequest.builder()
+                .isbn(9780439708180L)
+                .bookTitle("Harry Potter and the Sorcerer's Stone (#1)")
+                .bookAuthor("J.K. Rowling")
+                .build();
+        AddBookRequest raceBook = AddBookRequest.builder()
+                .isbn(9780439064873L)
+                .bookTitle("Harry Potter and the Chamber of Secrets (#2)")
+                .bookAuthor("J.K. Rowling")
+                .build();
+        BulkAddBookRequest bulkAddBookRequest = BulkAddBookRequest.builder()
+                .books(List.of(newBook, raceBook))
+                .build();
+
+        //simulate data response for return object to be compared
+        DataResponse<Object> dataResponse = DataResponse.builder()
+                .data(BulkAddBookResponse.builder()
+                        .books(List.of(BookResponse.builder()
+                                .bookId(2)
+                                .isbn(newBook.getIsbn())
+                                .bookTitle(newBook.getBookTitle())
+                                .bookAuthor(newBook.getBookAuthor())
+                                .version(0)
+                                .build()))
+                        .duplicateIsbns(List.of(raceBook.getIsbn()))
+                        .build())
+                .build();
+
+        //given
+        if (store == Store.JPA) {
+            when(bookRepository.saveAll(anyList())).thenThrow(duplicateIsbn());
+            when(bookRepository.insertIfAbsent(newBook.getIsbn(), newBook.getBookTitle(), newBook.getBookAuthor()))
+                    .thenReturn(Optional.of(2));
+            when(bookRepository.insertIfAbsent(raceBook.getIsbn(), raceBook.getBookTitle(), raceBook.getBookAuthor()))
+                    .thenReturn(Optional.empty());
+        } else {
+            //stored behind the isbn filter, as a commit after the lookup would be
+            embeddedStore.insertIfAbsent(raceBook.getIsbn(), raceBook.getBookTitle(), raceBook.getBookAuthor());
+        }
+
+        //when
+        DataResponse<Object> response = bookServiceImpl.bulkAddBook(bulkAddBookRequest);
+
+        //then
+        verify(transactionManager, times(1)).rollback(any());
+        verify(bookRepository, times(2)).insertIfAbsent(any(), any(), any());
+        assertEquals(response, dataResponse);
+    }
+
+    //test getBook method serves repeated reads from the cache
+    @ParameterizedTest
+    @EnumSource(Store.class)
+    void getBook_cacheHit(Store store) {
+        use(store);
+
+        //given
+        if (store == Store.JPA) {
+            when(bookRepository.findById(bookModel.getBookId())).thenReturn(Optional.of(bookModel));
+        } else {
+            stored(bookModel);
+        }
+
+        //when
+        DataResponse<Object> firstResponse = bookServiceImpl.getBook(bookModel.getBookId());
+        DataResponse<Object> secondResponse = bookServiceImpl.getBook(bookModel.getBookId());
+
+        //then
+        verify(bookRepository, times(1)).findById(bookModel.getBookId());
+        assertEquals(firstResponse, secondResponse);
+    }
+
+    //test getBook method reloads the book once an update has been committed
+    @ParameterizedTest
+    @EnumSource(Store.class)
+    void getBook_cacheEvictedAfterUpdate(Store store) {
+        use(store);
+
+        //given
+        if (store == Store.JPA) {
+            when(bookRepository.findById(bookModel.getBookId())).thenReturn(Optional.of(bookModel));
+        } else {
+            stored(bookModel);
+        }
+
+        //when
+        bookServiceImpl.getBook(bookModel.getBookId());
+        bookCache.onBookChanged(BookChangedEvent.builder()
+                .type(BookChangedEvent.Type.UPDATED)
+                .bookId(bookModel.getBookId())
+                .build());
+        bookServiceImpl.getBook(bookModel.getBookId());
+
+        //then
+        verify(bookRepository, times(2)).findById(bookModel.getBookId());
+    }
+
+    //test deleteBook method publishes a change event for after-commit listeners
+    @ParameterizedTest
+    @EnumSource(Store.class)
+    void deleteBook_publishesEvent(Store store) {
+        use(store);
+
+        //given
+        if (store == Store.JPA) {
+            when(bookRepository.deleteReturningBookId(bookModel.getBookId())).thenReturn(Optional.of(bookModel.getBookId()));
+        } else {
+            stored(bookModel);
+        }
+
+        //when
+        bookServiceImpl.deleteBook(bookModel.getBookId());
+
+        //then
+        verify(applicationEventPublisher, times(1)).publishEvent(BookChangedEvent.builder()
+                .type(BookChangedEvent.Type.DELETED)
+                .bookId(bookModel.getBookId())
+                .build());
+    }
+
+    //test addBook method when the bloom filter reports a false positive
+    @ParameterizedTest
+    @EnumSource(Store.class)
+    void addBook_successAfterFalsePositive(Store store) {
+        use(store);
+
+        //create add book request object
+        AddBookRequest addBookRequest = AddBookRequest.builder()
+                .isbn(9780439708180L)
+                .bookTitle("Harry Potter and the Sorcerer's Stone (#1)")
+                .bookAuthor("J.K. Rowling")
+                .build();
+
+        //simulate data response for return object to be compared
+        DataResponse<Object> dataResponse = DataResponse.builder()
+                .data(BookResponse.builder()
+                        .bookId(2)
+                        .isbn(addBookRequest.getIsbn())
+                        .bookTitle(addBookRequest.getBookTitle())
+                        .bookAuthor(addBookRequest.getBookAuthor())
+                        .version(0)
+                        .build())
+                .build();
+
+        //given
+        isbnBloomFilter.put(addBookRequest.getIsbn());
+        if (store == Store.JPA) {
+            when(bookRepository.insertIfAbsent(addBookRequest.getIsbn(), addBookRequest.getBookTitle(),
+                    addBookRequest.getBookAuthor())).thenReturn(Optional.of(2));
+        } else {
+            stored(bookModel);
+        }
+
+        //when
+        DataResponse<Object> response = bookServiceImpl.addBook(addBookRequest);
+
+        //then
+        verify(isbnBloomFilter, times(1)).recordFalsePositive();
+        verify(bookRepository, never()).save(any());
+        assertEquals(response, dataResponse);
+    }
+
+    //test addBook method when a concurrent request inserted the same isbn first
+    @ParameterizedTest
+    @EnumSource(Store.class)
+    void addBook_failConcurrentDuplicate(Store store) {
+        use(store);
+
+        //create add book request object
+        AddBookRequest addBookRequest = AddBookRequest.builder()
+                .isbn(bookModel.getIsbn())
+                .bookTitle(bookModel.getBookTitle())
+                .bookAuthor(bookModel.getBookAuthor())
+                .build();
+
+        //given
+        if (store == Store.JPA) {
+            when(bookRepository.save(any())).thenThrow(duplicateIsbn());
+        } else {
+            //stored behind the isbn filter, so the add goes straight to save
+            stored(bookModel);
+        }
+
+        //when
+        DataResponse<Object> response = bookServiceImpl.addBook(addBookRequest);
+
+        //then
+        verify(applicationEventPublisher, never()).publishEvent(any());
+        assertEquals(response.getData(), "Book with isbn " + addBookRequest.getIsbn() + " already exist");
+    }
+
+    //test addBook method does not report a violation other than the isbn index as a duplicate
+    @Test
+    void addBook_otherIntegrityViolation() {
+        //create add book request object
+        AddBookRequest addBookRequest = AddBookRequest.builder()
+                .isbn(bookModel.getIsbn())
+                .bookTitle(bookModel.getBookTitle())
+                .bookAuthor(bookModel.getBookAuthor())
+                .build();
+        DataIntegrityViolationException tooLong = new DataIntegrityViolationException("could not execute statement",
+                new SQLException("ERROR: value too long for type character varying(50)", "22001"));
+
+        //given
+        when(bookRepository.save(any())).thenThrow(tooLong);
+
+        //when
+        //then
+        assertSame(tooLong, assertThrows(DataIntegrityViolationException.class,
+                () -> bookServiceImpl.addBook(addBookRequest)));
+        verify(applicationEventPublisher, never()).publishEvent(any());
+    }
+
+    //test searchBooks method returns ranked books from the search index
+    @Test
+    void searchBooks_success() {
+        BookResponse bookResponse = BookResponse.builder()
+                .bookId(bookModel.getBookId())
+                .isbn(bookModel.getIsbn())
+                .bookTitle(bookModel.getBookTitle())
+                .bookAuthor(bookModel.getBookAuthor())
+                .build();
+        bookSearchIndex.index(bookResponse);
+
+        //simulate data response for return object to be compared
+        DataResponse<Object> dataBook = DataResponse.builder()
+                .data(List.of(bookResponse))
+                .build();
+
+        //when
+        DataResponse<Object> response = bookServiceImpl.searchBooks("alchemist", null);
+
+        //then
+        verify(bookSearchIndex, times(1)).search("alchemist", BookServiceImpl.DEFAULT_SEARCH_LIMIT);
+        verifyNoInteractions(bookRepository);
+        assertEquals(response, dataBook);
+    }
+
+    //test searchBooks method when fail because of blank query
+    @Test
+    void searchBooks_badRequest() {
+        assertThrows(ResponseStatusException.class, () -> bookServiceImpl.searchBooks(" ", null));
+        assertThrows(ResponseStatusException.class, () -> bookServiceImpl.searchBooks("alchemist", 0));
+    }
+
+    //test outcome counters for found and not found books
+    @ParameterizedTest
+    @EnumSource(Store.class)
+    void getBook_countsOutcome(Store store) {
+        use(store);
+
+        //given
+        if (store == Store.JPA) {
+            when(bookRepository.findById(bookModel.getBookId())).thenReturn(Optional.of(bookModel));
+            when(bookRepository.findById(3)).thenReturn(Optional.empty());
+        } else {
+            stored(bookModel);
+        }
+
+        //when
+        bookServiceImpl.getBook(bookModel.getBookId());
+        assertThrows(ResponseStatusException.class, () -> bookServiceImpl.getBook(3));
+
+        //then
+        assertEquals(1, meterRegistry.counter("book.outcome", "operation", "get", "outcome", "found").count());
+        assertEquals(1, meterRegistry.counter("book.outcome", "operation", "get", "outcome", "not_found").count());
+    }
+
+    //test getBookVersion reads only the updatedDate once and then serves it from the cache
+    @ParameterizedTest
+    @EnumSource(Store.class)
+    void getBookVersion_cached(Store store) {
+        use(store);
+
+        //given
+        if (store == Store.JPA) {
+            when(bookRepository.findUpdatedDateByBookId(bookModel.getBookId()))
+                    .thenReturn(Optional.of(bookModel.getUpdatedDate()));
+        } else {
+            stored(bookModel);
+        }
+
+        //when
+        ResourceVersion firstVersion = bookServiceImpl.getBookVersion(bookModel.getBookId());
+        ResourceVersion secondVersion = bookServiceImpl.getBookVersion(bookModel.getBookId());
+
+        //then
+        verify(bookRepository, times(1)).findUpdatedDateByBookId(bookModel.getBookId());
+        verify(bookRepository, never()).findById(any());
+        assertEquals(firstVersion, secondVersion);
+        assertTrue(firstVersion.getEtag().startsWith("\"b1-"));
+        assertNotNull(firstVersion.getLastModified());
+    }
+
+    //test getBookVersion method when book not found
+    @ParameterizedTest
+    @EnumSource(Store.class)
+    void getBookVersion_bookNotFound(Store store) {
+        use(store);
+
+        //given
+        if (store == Store.JPA) {
+            when(bookRepository.findUpdatedDateByBookId(3)).thenReturn(Optional.empty());
+        }
+
+        //when then
+        assertThrows(ResponseStatusException.class, () -> bookServiceImpl.getBookVersion(3));
+    }
+
+    //test catalogue etag is the outbox change version, whichever instance wrote the change
+    @Test
+    void getCatalogueVersion_followsChangeVersion() {
+        //given
+        when(bookRepository.findChangeVersion()).thenReturn("2a.1f").thenReturn("2b.1f");
+
+        //when
+        ResourceVersion before = bookServiceImpl.getCatalogueVersion();
+        ResourceVersion after = bookServiceImpl.getCatalogueVersion();
+
+        //then
+        assertEquals("\"c2a.1f\"", before.getEtag());
+        assertEquals("\"c2b.1f\"", after.getEtag());
+        assertNull(after.getLastModified());
+    }
+
+    //test multiGetBooks method resolves bookIds and isbns in one query, in request order, with the missing keys
+    @ParameterizedTest
+    @EnumSource(Store.class)
+    void multiGetBooks_success(Store store) {
+        use(store);
+
+        Book secondBook = Book.builder()
+                .bookId(2)
+                .isbn(9780439708180L)
+                .bookTitle("Harry Potter and the Sorcerer's Stone (#1)")
+                .bookAuthor("J.K. Rowling")
+                .build();
+        MultiGetBookRequest multiGetBookRequest = MultiGetBookRequest.builder()
+                .bookIds(List.of(2, 99, 1))
+                .isbns(List.of(9780062315007L, 9780000000001L))
+                .build();
+
+        //given
+        if (store == Store.EMBEDDED) {
+            stored(bookModel, secondBook);
+        }
+        BookResponse alchemist = BookServiceImpl.toBookResponse(bookModel);
+        BookResponse sorcerersStone = BookServiceImpl.toBookResponse(secondBook);
+        if (store == Store.JPA) {
+            when(bookRepository.findAllBookResponsesByBookIdInOrIsbnIn(Set.of(2, 99, 1), Set.of(9780062315007L, 9780000000001L)))
+                    .thenReturn(List.of(alchemist, sorcerersStone));
+        }
+
+        //when
+        DataResponse<Object> response = bookServiceImpl.multiGetBooks(multiGetBookRequest);
+
+        //then
+        verify(bookRepository, times(1)).findAllBookResponsesByBookIdInOrIsbnIn(any(), any());
+        verify(bookRepository, never()).findById(any());
+        assertEquals(MultiGetBookResponse.builder()
+                .books(List.of(sorcerersStone, alchemist, alchemist))
+                .missingBookIds(List.of(99))
+                .missingIsbns(List.of(9780000000001L))
+                .build(), response.getData());
+    }
+
+    //test multiGetBooks method answers cached bookIds without a query
+    @Test
+    void multiGetBooks_cacheHit() {
+        BookResponse alchemist = BookServiceImpl.toBookResponse(bookModel);
+        bookCache.putIfUnchanged(bookCache.stamp(), alchemist);
+
+        //when
+        DataResponse<Object> response = bookServiceImpl.multiGetBooks(MultiGetBookRequest.builder()
+                .bookIds(List.of(1))
+                .build());
+
+        //then
+        verifyNoInteractions(bookRepository);
+        assertEquals(List.of(alchemist), ((MultiGetBookResponse) response.getData()).getBooks());
+    }
+
+    //test multiGetBooks method rejects an empty or too large request
+    @Test
+    void multiGetBooks_badRequest() {
+        List<Integer> tooManyBookIds = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            tooManyBookIds.add(i);
+        }
+        List<Long> tooManyIsbns = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            tooManyIsbns.add(9780000000000L + i);
+        }
+
+        ResponseStatusException empty = assertThrows(ResponseStatusException.class,
+                () -> bookServiceImpl.multiGetBooks(MultiGetBookRequest.builder().build()));
+        ResponseStatusException tooMany = assertThrows(ResponseStatusException.class,
+                () -> bookServiceImpl.multiGetBooks(MultiGetBookRequest.builder()
+                        .bookIds(tooManyBookIds)
+                        .isbns(tooManyIsbns)
+                        .build()));
+
+        assertEquals(HttpStatus.BAD_REQUEST, empty.getStatus());
+        assertEquals(HttpStatus.BAD_REQUEST, tooMany.getStatus());
+        verifyNoInteractions(bookRepository);
+    }
+
+    //test applyBatch method applies operations in order and reports skipped ones without failing the batch
+    @ParameterizedTest
+    @EnumSource(Store.class)
+    void applyBatch_success(Store store) {
+        use(store);
+
+        Book secondBook = Book.builder()
+                .bookId(2)
+                .isbn(9780439708180L)
+                .bookTitle("Harry Potter and the Sorcerer's Stone (#1)")
+                .bookAuthor("J.K. Rowling")
+                .build();
+        isbnBloomFilter.put(bookModel.getIsbn());
+        isbnBloomFilter.put(secondBook.getIsbn());
+        BatchBookRequest batchBookRequest = BatchBookRequest.builder()
+                .operations(List.of(
+                        BatchOperationRequest.builder()
+                                .operation(BatchOperationRequest.Operation.UPDATE)
+                                .bookId(1)
+                                .isbn(bookModel.getIsbn())
+                                .bookTitle("The Alchemist (25th Anniversary)")
+                                .bookAuthor(bookModel.getBookAuthor())
+                                .build(),
+                        BatchOperationRequest.builder()
+                                .operation(BatchOperationRequest.Operation.ADD)
+                                .isbn(secondBook.getIsbn())
+                                .bookTitle(secondBook.getBookTitle())
+                                .bookAuthor(secondBook.getBookAuthor())
+                                .build(),
+                        BatchOperationRequest.builder()
+                                .operation(BatchOperationRequest.Operation.DELETE)
+                                .bookId(2)
+                                .build(),
+                        BatchOperationRequest.builder()
+                                .operation(BatchOperationRequest.Operation.DELETE)
+                                .bookId(99)
+                                .build()))
+                .build();
+
+        //given
+        if (store == Store.JPA) {
+            when(bookRepository.findAllById(Set.of(1, 2, 99))).thenReturn(List.of(bookModel, secondBook));
+            when(bookRepository.findExistingIsbns(Set.of(bookModel.getIsbn(), secondBook.getIsbn())))
+                    .thenReturn(List.of(bookModel.getIsbn(), secondBook.getIsbn()));
+            when(bookRepository.save(bookModel)).thenReturn(bookModel);
+        } else {
+            stored(bookModel, secondBook);
+        }
+
+        //when
+        DataResponse<Object> response = bookServiceImpl.applyBatch(batchBookRequest);
+
+        //then
+        List<BatchOperationResponse> results = ((BatchBookResponse) response.getData()).getResults();
+        assertEquals(List.of("updated", "duplicate", "deleted", "not_found"),
+                results.stream().map(BatchOperationResponse::getOutcome).collect(Collectors.toList()));
+        assertEquals("The Alchemist (25th Anniversary)", results.get(0).getBook().getBookTitle());
+        verify(bookRepository, times(1)).save(argThat(book -> book.getBookId() == 1));
+        verify(bookRepository, times(1)).delete(secondBook);
+        verify(applicationEventPublisher, times(2)).publishEvent(any(BookChangedEvent.class));
+    }
+
+    //test applyBatch method flushes before a new book takes the isbn of a book deleted earlier in the batch
+    @ParameterizedTest
+    @EnumSource(Store.class)
+    void applyBatch_reuseDeletedIsbn(Store store) {
+        use(store);
+
+        isbnBloomFilter.put(bookModel.getIsbn());
+        Book savedBook = Book.builder()
+                .bookId(2)
+                .isbn(bookModel.getIsbn())
+                .bookTitle(bookModel.getBookTitle())
+                .bookAuthor(bookModel.getBookAuthor())
+                .build();
+        BatchBookRequest batchBookRequest = BatchBookRequest.builder()
+                .operations(List.of(
+                        BatchOperationRequest.builder()
+                                .operation(BatchOperationRequest.Operation.DELETE)
+                                .bookId(1)
+                                .build(),
+                        BatchOperationRequest.builder()
+                                .operation(BatchOperationRequest.Operation.ADD)
+                                .isbn(bookModel.getIsbn())
+                                .bookTitle(bookModel.getBookTitle())
+                                .bookAuthor(bookModel.getBookAuthor())
+                                .build()))
+                .build();
+
+        //given
+        if (store == Store.JPA) {
+            when(bookRepository.findAllById(Set.of(1))).thenReturn(List.of(bookModel));
+            when(bookRepository.findExistingIsbns(Set.of(bookModel.getIsbn()))).thenReturn(List.of(bookModel.getIsbn()));
+            when(bookRepository.save(any(Book.class))).thenReturn(savedBook);
+        } else {
+            stored(bookModel);
+        }
+
+        //when
+        DataResponse<Object> response = bookServiceImpl.applyBatch(batchBookRequest);
+
+        //then
+        InOrder inOrder = inOrder(bookRepository);
+        inOrder.verify(bookRepository).delete(bookModel);
+        inOrder.verify(bookRepository).flush();
+        inOrder.verify(bookRepository).save(any(Book.class));
+        assertEquals(2, ((BatchBookResponse) response.getData()).getResults().get(1).getBook().getBookId());
+    }
+
+    //test applyBatch method answers an update with the version the flush gave it, not the one loaded
+    @ParameterizedTest
+    @EnumSource(Store.class)
+    void applyBatch_updateReturnsFlushedVersion(Store store) {
+        use(store);
+
+        isbnBloomFilter.put(bookModel.getIsbn());
+        BatchBookRequest batchBookRequest = BatchBookRequest.builder()
+                .operations(List.of(BatchOperationRequest.builder()
+                        .operation(BatchOperationRequest.Operation.UPDATE)
+                        .bookId(1)
+                        .isbn(bookModel.getIsbn())
+                        .bookTitle("The Alchemist (25th Anniversary)")
+                        .bookAuthor(bookModel.getBookAuthor())
+                        .version(0)
+                        .build()))
+                .build();
+
+        //given
+        if (store == Store.JPA) {
+            bookModel.setVersion(0);
+            when(bookRepository.findAllById(Set.of(1))).thenReturn(List.of(bookModel));
+            when(bookRepository.findExistingIsbns(Set.of(bookModel.getIsbn()))).thenReturn(List.of(bookModel.getIsbn()));
+            when(bookRepository.save(bookModel)).thenReturn(bookModel);
+            //as hibernate, the version of the managed entity only moves when it is flushed
+            doAnswer(invocation -> {
+                bookModel.setVersion(bookModel.getVersion() + 1);
+                return null;
+            }).when(bookRepository).flush();
+        } else {
+            stored(bookModel);
+        }
+
+        //when
+        DataResponse<Object> response = bookServiceImpl.applyBatch(batchBookRequest);
+
+        //then
+        BookResponse updated = ((BatchBookResponse) response.getData()).getResults().get(0).getBook();
+        assertEquals(1, updated.getVersion());
+        verify(applicationEventPublisher).publishEvent(BookChangedEvent.builder()
+                .type(BookChangedEvent.Type.UPDATED)
+                .bookId(1)
+                .book(updated)
+                .build());
+    }
+
+    //test applyBatch method on the embedded store keeps the writes before a failure: it applies each write when it
+    //is made and its transaction manager has nothing to roll back, where jpa would undo the whole batch
+    @Test
+    void applyBatch_embeddedFailureKeepsEarlierWrites() {
+        use(Store.EMBEDDED);
+
+        //given
+        //an isbn taken behind the service's back, so neither the isbn filter nor the batch lookup knows about it
+        embeddedStore.insertIfAbsent(9780439708180L, "Harry Potter and the Sorcerer's Stone (#1)", "J.K. Rowling");
+        BatchBookRequest batchBookRequest = BatchBookRequest.builder()
+                .operations(List.of(
+                        BatchOperationRequest.builder()
+                                .operation(BatchOperationRequest.Operation.ADD)
+                                .isbn(bookModel.getIsbn())
+                                .bookTitle(bookModel.getBookTitle())
+                                .bookAuthor(bookModel.getBookAuthor())
+                                .build(),
+                        BatchOperationRequest.builder()
+                                .operation(BatchOperationRequest.Operation.ADD)
+                                .isbn(9780439708180L)
+                                .bookTitle("Other")
+                                .bookAuthor("Other")
+                                .build()))
+                .build();
+
+        //when
+        assertThrows(DataIntegrityViolationException.class, () -> bookServiceImpl.applyBatch(batchBookRequest));
+
+        //then
+        assertTrue(embeddedStore.findByIsbn(bookModel.getIsbn()).isPresent());
+        assertEquals("J.K. Rowling", embeddedStore.findByIsbn(9780439708180L).orElseThrow().getBookAuthor());
+    }
+
+    //test applyBatch method rejects an operation missing its fields before touching the database
+    @Test
+    void applyBatch_badRequest() {
+        BatchBookRequest batchBookRequest = BatchBookRequest.builder()
+                .operations(List.of(BatchOperationRequest.builder()
+                        .operation(BatchOperationRequest.Operation.UPDATE)
+                        .bookId(1)
+                        .build()))
+                .build();
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> bookServiceImpl.applyBatch(batchBookRequest));
+
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getStatus());
+        verifyNoInteractions(bookRepository);
+    }
+
+    //test updateBook method when the given version is stale
+    @ParameterizedTest
+    @EnumSource(Store.class)
+    void updateBook_failStaleVersion(Store store) {
+        use(store);
+
+        //create update book request object
+        UpdateBookRequest updateBookRequest = UpdateBookRequest.builder()
+                .bookId(bookModel.getBookId())
+                .isbn(bookModel.getIsbn())
+                .bookTitle(bookModel.getBookTitle())
+                .bookAuthor(bookModel.getBookAuthor())
+                .version(3)
+                .build();
+
+        //given
+        if (store == Store.JPA) {
+            when(bookRepository.updateBook(bookModel.getBookId(), 3, bookModel.getIsbn(),
+                    bookModel.getBookTitle(), bookModel.getBookAuthor())).thenReturn(Optional.empty());
+            when(bookRepository.existsById(bookModel.getBookId())).thenReturn(true);
+        } else {
+            stored(bookModel);
+        }
+
+        //when
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> bookServiceImpl.updateBook(updateBookRequest));
+
+        //then
+        assertEquals(HttpStatus.CONFLICT, exception.getStatus());
+        verify(applicationEventPublisher, never()).publishEvent(any());
+        assertEquals(1, meterRegistry.counter("book.outcome", "operation", "update", "outcome", "conflict").count());
+    }
+
+    //test updateBook method when the new isbn belongs to another book
+    @ParameterizedTest
+    @EnumSource(Store.class)
+    void updateBook_failDuplicateIsbn(Store store) {
+        use(store);
+
+        //create update book request object
+        UpdateBookRequest updateBookRequest = UpdateBookRequest.builder()
+                .bookId(bookModel.getBookId())
+                .isbn(9780439708180L)
+                .bookTitle(bookModel.getBookTitle())
+                .bookAuthor(bookModel.getBookAuthor())
+                .build();
+
+        //given
+        if (store == Store.JPA) {
+            when(bookRepository.updateBook(any(), any(), any(), any(), any()))
+                    .thenThrow(duplicateIsbn());
+        } else {
+            stored(bookModel, Book.builder()
+                    .isbn(9780439708180L)
+                    .bookTitle("Harry Potter and the Sorcerer's Stone (#1)")
+                    .bookAuthor("J.K. Rowling")
+                    .build());
+        }
+
+        //when
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> bookServiceImpl.updateBook(updateBookRequest));
+
+        //then
+        assertEquals(HttpStatus.CONFLICT, exception.getStatus());
+        verify(bookRepository, never()).existsById(any());
+    }
+
+    //test patchBook method writes only the given columns
+    @ParameterizedTest
+    @EnumSource(Store.class)
+    void patchBook_success(Store store) {
+        use(store);
+
+        //create patch book request object
+        PatchBookRequest patchBookRequest = PatchBookRequest.builder()
+                .bookTitle("Brida")
+                .version(0)
+                .build();
+
+        //given
+        if (store == Store.JPA) {
+            //simulate book object returned by the update
+            bookModel.setBookTitle(patchBookRequest.getBookTitle());
+            bookModel.setVersion(1);
+            when(bookRepository.updateBook(bookModel.getBookId(), 0, null, "Brida", null))
+                    .thenReturn(Optional.of(bookModel));
+        } else {
+            stored(bookModel);
+        }
+
+        //when
+        DataResponse<Object> response = bookServiceImpl.patchBook(bookModel.getBookId(), patchBookRequest);
+
+        //then
+        BookResponse bookResponse = (BookResponse) response.getData();
+        assertEquals("Brida", bookResponse.getBookTitle());
+        assertEquals(bookModel.getBookAuthor(), bookResponse.getBookAuthor());
+        assertEquals(1, bookResponse.getVersion());
+        verify(bookRepository, times(1)).updateBook(bookModel.getBookId(), 0, null, "Brida", null);
+    }
+
+    //test patchBook method when no field is given
+    @Test
+    void patchBook_failNothingToPatch() {
+        //when
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> bookServiceImpl.patchBook(bookModel.getBookId(), PatchBookRequest.builder().version(0).build()));
+
+        //then
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getStatus());
+        verify(bookRepository, never()).updateBook(any(), any(), any(), any(), any());
+    }
+
+    //test deleteBook method when the given version is stale
+    @ParameterizedTest
+    @EnumSource(Store.class)
+    void deleteBook_failStaleVersion(Store store) {
+        use(store);
+
+        //given
+        if (store == Store.JPA) {
+            when(bookRepository.deleteReturningBookId(bookModel.getBookId(), 3)).thenReturn(Optional.empty());
+            when(bookRepository.existsById(bookModel.getBookId())).thenReturn(true);
+        } else {
+            stored(bookModel);
+        }
+
+        //when
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> bookServiceImpl.deleteBook(bookModel.getBookId(), 3));
+
+        //then
+        assertEquals(HttpStatus.CONFLICT, exception.getStatus());
+        verify(bookRepository, never()).deleteReturningBookId(bookModel.getBookId());
+        verify(applicationEventPublisher, never()).publishEvent(any());
+    }
+
+
+    //test addBook method waits on the group commit writer instead of saving itself when it is enabled, and leaves the
+    //change event to its flusher
+    @Test
+    void addBook_successThroughGroupCommit() {
+        //create add book request object
+        AddBookRequest addBookRequest = AddBookRequest.builder()
+                .isbn(9780439708180L)
+                .bookTitle("Harry Potter and the Sorcerer's Stone (#1)")
+                .bookAuthor("J.K. Rowling")
+                .build();
+        BookResponse bookResponse = BookResponse.builder()
+                .bookId(2)
+                .isbn(addBookRequest.getIsbn())
+                .bookTitle(addBookRequest.getBookTitle())
+                .bookAuthor(addBookRequest.getBookAuthor())
+                .version(0)
+                .build();
+
+        //given
+        when(groupCommitBookWriter.isEnabled()).thenReturn(true);
+        when(groupCommitBookWriter.add(addBookRequest)).thenReturn(Optional.of(bookResponse));
+
+        //when
+        DataResponse<Object> response = bookServiceImpl.addBook(addBookRequest);
+
+        //then
+        assertEquals(bookResponse, response.getData());
+        verify(bookRepository, never()).save(any());
+        verify(bookRepository, never()).insertIfAbsent(any(), any(), any());
+        verify(applicationEventPublisher, never()).publishEvent(any());
+    }
+
+    //test getChanges method numbers pending changes and pages after since
+    @Test
+    void getChanges_hasMore() {
+        BookChangeResponse added = BookChangeResponse.builder()
+                .seq(4L)
+                .type(BookChangedEvent.Type.ADDED)
+                .bookId(bookModel.getBookId())
+                .book(BookServiceImpl.toBookResponse(bookModel))
+                .build();
+        BookChangeResponse deleted = BookChangeResponse.builder()
+                .seq(5L)
+                .type(BookChangedEvent.Type.DELETED)
+                .bookId(bookModel.getBookId())
+                .build();
+
+        //given
+        when(bookRepository.supportsChangeFeed()).thenReturn(true);
+        when(bookRepository.findChangesAfter(3L, 2)).thenReturn(List.of(added, deleted));
+
+        //when
+        DataResponse<Object> response = bookServiceImpl.getChanges(3L, 1);
+
+        //then
+        InOrder inOrder = inOrder(bookRepository);
+        inOrder.verify(bookRepository).sequenceChanges();
+        inOrder.verify(bookRepository).findChangesAfter(3L, 2);
+        assertEquals(BookChangePageResponse.builder()
+                .changes(List.of(added))
+                .nextSince(4L)
+                .hasMore(true)
+                .build(), response.getData());
+    }
+
+    //test getChanges method keeps since when nothing changed
+    @Test
+    void getChanges_noChange() {
+        //given
+        when(bookRepository.supportsChangeFeed()).thenReturn(true);
+        when(bookRepository.findChangesAfter(7L, BookServiceImpl.DEFAULT_PAGE_LIMIT + 1)).thenReturn(List.of());
+
+        //when
+        DataResponse<Object> response = bookServiceImpl.getChanges(7L, null);
+
+        //then
+        assertEquals(BookChangePageResponse.builder()
+                .changes(List.of())
+                .nextSince(7L)
+                .hasMore(false)
+                .build(), response.getData());
+    }
+
+    //test getChanges method when fail because of invalid since or limit, or a store without a feed
+    @ParameterizedTest
+    @EnumSource(Store.class)
+    void getChanges_badRequest(Store store) {
+        use(store);
+
+        assertThrows(ResponseStatusException.class, () -> bookServiceImpl.getChanges(-1L, null));
+        assertThrows(ResponseStatusException.class,
+                () -> bookServiceImpl.getChanges(0L, BookServiceImpl.MAX_PAGE_LIMIT + 1));
+        verifyNoInteractions(bookRepository);
+
+        if (store == Store.JPA) {
+            when(bookRepository.supportsChangeFeed()).thenReturn(false);
+        }
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> bookServiceImpl.getChanges(null, 10));
+        assertEquals(HttpStatus.NOT_IMPLEMENTED, exception.getStatus());
+        verify(bookRepository, never()).sequenceChanges();
+        verify(bookRepository, never()).findChangesAfter(anyLong(), anyInt());
+    }
+
+    //test getStats method answers from the author counts without touching the repository
+    @Test
+    void getStats_success() {
+        //given
+        authorStatsIndex.index(BookServiceImpl.toBookResponse(bookModel));
+        authorStatsIndex.index(BookResponse.builder()
+                .bookId(2)
+                .isbn(9780439708180L)
+                .bookTitle("Harry Potter and the Sorcerer's Stone (#1)")
+                .bookAuthor("J.K. Rowling")
+                .build());
+        authorStatsIndex.index(BookResponse.builder()
+                .bookId(3)
+                .isbn(9780439064873L)
+                .bookTitle("Harry Potter and the Chamber of Secrets (#2)")
+                .bookAuthor("J.K. Rowling")
+                .build());
+
+        //when
+        DataResponse<Object> response = bookServiceImpl.getStats(1, "Paulo Coelho");
+
+        //then
+        assertEquals(BookStatsResponse.builder()
+                .totalBooks(3L)
+                .distinctAuthors(2)
+                .topAuthors(List.of(AuthorCountResponse.builder()
+                        .bookAuthor("J.K. Rowling")
+                        .bookCount(2)
+                        .build()))
+                .author(AuthorCountResponse.builder()
+                        .bookAuthor("Paulo Coelho")
+                        .bookCount(1)
+                        .build())
+                .build(), response.getData());
+        verifyNoInteractions(bookRepository);
+    }
+
+    //test getStats method when fail because of invalid top or a blank author
+    @Test
+    void getStats_badRequest() {
+        assertThrows(ResponseStatusException.class, () -> bookServiceImpl.getStats(-1, null));
+        assertThrows(ResponseStatusException.class,
+                () -> bookServiceImpl.getStats(BookServiceImpl.MAX_TOP_AUTHORS + 1, null));
+        assertThrows(ResponseStatusException.class, () -> bookServiceImpl.getStats(null, " "));
+    }
+
+    //JPA keeps the @Mock repository; EMBEDDED swaps in a mock delegating to a fresh store in the test's temp dir
+    private void use(Store store) {
+        if (store == Store.JPA) {
+            return;
+        }
+        try {
+            embeddedStore = new MappedBookRepository(tempDir.resolve("books.log"), 4096, Duration.ZERO, Duration.ZERO);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        bookRepository = mock(BookRepository.class, delegatesTo(embeddedStore));
+        ReflectionTestUtils.setField(bookServiceImpl, "bookRepository", bookRepository);
+    }
+
+    //straight into the embedded store, not through the mock, so verify only counts the calls of the service; each
+    //book gets the next bookId, a version and dates as it would from the jpa entity
+    private void stored(Book... books) {
+        for (Book book : books) {
+            embeddedStore.save(book);
+        }
+    }
+
+    //as hibernate and the postgres driver report a second row for an isbn
+    static DataIntegrityViolationException duplicateIsbn() {
+        return new DataIntegrityViolationException("could not execute statement", new SQLException(
+                "ERROR: duplicate key value violates unique constraint \"book_isbn_key\"", "23505"));
+    }
+}
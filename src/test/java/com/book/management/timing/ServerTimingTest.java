@@ -0,0 +1,41 @@
+package com.book.management.timing;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ServerTimingTest {
+
+    @AfterEach
+    void tearDown() {
+        ServerTiming.end();
+    }
+
+    //test stages are only recorded while a request is timed
+    @Test
+    void start_notTimed() {
+        assertEquals(0, ServerTiming.start());
+
+        ServerTiming.record(ServerTiming.Stage.DB, TimeUnit.MILLISECONDS.toNanos(5));
+        ServerTiming serverTiming = ServerTiming.begin();
+
+        assertTrue(serverTiming.toHeader(System.nanoTime()).startsWith("db;dur=0.000;desc=\"0 calls\""));
+    }
+
+    //test the header sums repeated stages and splits handler from serialization time
+    @Test
+    void toHeader_stages() {
+        ServerTiming serverTiming = new ServerTiming(0);
+        ServerTiming.resume(serverTiming);
+
+        ServerTiming.record(ServerTiming.Stage.DB, TimeUnit.MICROSECONDS.toNanos(1200));
+        ServerTiming.record(ServerTiming.Stage.DB, TimeUnit.MICROSECONDS.toNanos(300));
+        ServerTiming.record(ServerTiming.Stage.MAP, TimeUnit.MICROSECONDS.toNanos(25));
+
+        assertEquals("db;dur=1.500;desc=\"2 calls\", map;dur=0.025, app;dur=4.000, total;dur=4.000",
+                serverTiming.toHeader(TimeUnit.MILLISECONDS.toNanos(4)));
+    }
+}